@@ -0,0 +1,159 @@
+package com.pagamentos.archive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.model.ArchivedPayment;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentGatewayResponse;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.ArchivedPaymentRepository;
+import com.pagamentos.repository.PaymentGatewayResponseRepository;
+import com.pagamentos.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+// Mantém payments com o conjunto quente: pagamentos finalizados há mais de min-age vão para
+// payment_archive (registro completo em gzip) junto com a resposta do gateway. As consultas
+// pontuais do PaymentService caem aqui quando o pagamento não está mais na tabela principal.
+// Reembolsos de pagamentos arquivados não são aceitos: min-age deve passar da janela de reembolso do gateway.
+@Service
+@Slf4j
+public class PaymentArchive {
+
+    // Nenhum evento externo muda mais estes status depois de min-age
+    private static final List<PaymentStatus> SETTLED = List.of(
+            PaymentStatus.SUCCESS, PaymentStatus.PARTIALLY_REFUNDED, PaymentStatus.REFUNDED,
+            PaymentStatus.FAILED, PaymentStatus.CANCELLED);
+
+    private static final String INSERT_ARCHIVE = "INSERT INTO payment_archive (id, payment_id, customer_id, status, "
+            + "gateway, currency, payment_method, amount, refunded_amount, created_at, archived_at, payload, gateway_response) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentGatewayResponseRepository gatewayResponseRepository;
+    private final ArchivedPaymentRepository archivedPaymentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.payment.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.payment.archive.min-age:P365D}")
+    private Duration minAge;
+
+    @Value("${app.payment.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.payment.archive.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    public PaymentArchive(PaymentRepository paymentRepository,
+                          PaymentGatewayResponseRepository gatewayResponseRepository,
+                          ArchivedPaymentRepository archivedPaymentRepository,
+                          JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          ObjectMapper objectMapper) {
+        this.paymentRepository = paymentRepository;
+        this.gatewayResponseRepository = gatewayResponseRepository;
+        this.archivedPaymentRepository = archivedPaymentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Scheduled(initialDelayString = "${app.payment.archive.interval-ms:3600000}",
+            fixedDelayString = "${app.payment.archive.interval-ms:3600000}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        long start = System.nanoTime();
+        int archived = 0;
+
+        for (PaymentStatus status : SETTLED) {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                Integer moved = transactionTemplate.execute(tx -> archiveBatch(status, cutoff));
+                archived += moved;
+                if (moved < batchSize) {
+                    break;
+                }
+            }
+        }
+
+        if (archived > 0) {
+            log.info("{} pagamentos anteriores a {} arquivados em {} ms", archived, cutoff,
+                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+        }
+    }
+
+    public Optional<PaymentResponseDTO> findResponseById(Long id) {
+        return archivedPaymentRepository.findById(id).map(this::toResponse);
+    }
+
+    public Optional<PaymentResponseDTO> findResponseByPaymentId(String paymentId) {
+        return archivedPaymentRepository.findByPaymentId(paymentId).map(this::toResponse);
+    }
+
+    public Optional<String> findGatewayResponse(Long id) {
+        return archivedPaymentRepository.findById(id).map(ArchivedPayment::getGatewayResponseAsString);
+    }
+
+    // Cópia e remoção na mesma transação: o pagamento está sempre em exatamente uma das tabelas
+    private int archiveBatch(PaymentStatus status, LocalDateTime cutoff) {
+        List<Payment> payments = paymentRepository.lockArchivable(status, cutoff, Limit.of(batchSize));
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = payments.stream().map(Payment::getId).toList();
+        Map<Long, byte[]> responses = gatewayResponseRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(PaymentGatewayResponse::getId, PaymentGatewayResponse::getPayload));
+
+        List<Object[]> rows = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            ArchivedPayment archived = ArchivedPayment.of(payment, toJson(payment), responses.get(payment.getId()));
+            rows.add(new Object[] {archived.getId(), archived.getPaymentId(), archived.getCustomerId(),
+                    archived.getStatus().name(), archived.getGateway(), archived.getCurrency(),
+                    archived.getPaymentMethod(), archived.getAmount(), archived.getRefundedAmount(), Timestamp.valueOf(archived.getCreatedAt()),
+                    Timestamp.valueOf(archived.getArchivedAt()), archived.getPayload(), archived.getGatewayResponse()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_ARCHIVE, rows);
+
+        gatewayResponseRepository.deleteAllByIdInBatch(responses.keySet());
+        paymentRepository.deleteAllByIdInBatch(ids);
+        return payments.size();
+    }
+
+    private String toJson(Payment payment) {
+        try {
+            return objectMapper.writeValueAsString(payment);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private PaymentResponseDTO toResponse(ArchivedPayment archived) {
+        try {
+            return PaymentResponseDTO.from(objectMapper.readValue(archived.getPayloadAsString(), Payment.class));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
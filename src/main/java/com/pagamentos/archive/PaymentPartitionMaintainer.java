@@ -0,0 +1,104 @@
+package com.pagamentos.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Partições mensais de payments por created_at (MySQL, RANGE COLUMNS; conversão inicial em db/partition-payments.sql).
+// Cria com antecedência as partições dos próximos meses dividindo p_future, e remove as partições
+// antigas que o PaymentArchive já esvaziou: DROP PARTITION devolve o espaço sem DELETE linha a linha.
+@Component
+@ConditionalOnProperty(name = "app.payment.partitioning.enabled", havingValue = "true")
+@Slf4j
+public class PaymentPartitionMaintainer {
+
+    private static final String FUTURE = "p_future";
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.payment.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${app.payment.archive.min-age:P365D}")
+    private Duration archiveMinAge;
+
+    public PaymentPartitionMaintainer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Scheduled(fixedDelayString = "${app.payment.partitioning.interval-ms:86400000}")
+    public void maintain() {
+        List<Partition> partitions = jdbcTemplate.query(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payments' AND PARTITION_NAME IS NOT NULL "
+                        + "ORDER BY PARTITION_ORDINAL_POSITION",
+                (rs, row) -> Partition.of(rs.getString(1), rs.getString(2)));
+        if (partitions.stream().noneMatch(partition -> FUTURE.equals(partition.name()))) {
+            log.warn("Tabela payments sem a partição {}: aplique db/partition-payments.sql", FUTURE);
+            return;
+        }
+
+        createAhead(partitions);
+        dropArchived(partitions);
+    }
+
+    private void createAhead(List<Partition> partitions) {
+        LocalDate target = LocalDate.now().withDayOfMonth(1).plusMonths(monthsAhead + 1L);
+        LocalDate bound = partitions.stream()
+                .map(Partition::lessThan)
+                .filter(lessThan -> lessThan != null)
+                .max(LocalDate::compareTo)
+                .orElse(LocalDate.now().withDayOfMonth(1));
+
+        List<String> created = new ArrayList<>();
+        while (bound.isBefore(target)) {
+            created.add("PARTITION " + NAME.format(bound) + " VALUES LESS THAN ('" + bound.plusMonths(1) + "')");
+            bound = bound.plusMonths(1);
+        }
+        if (created.isEmpty()) {
+            return;
+        }
+        // p_future só recebe linhas com data futura: a reorganização não move dados na prática
+        jdbcTemplate.execute("ALTER TABLE payments REORGANIZE PARTITION " + FUTURE + " INTO ("
+                + String.join(", ", created) + ", PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE))");
+        log.info("Partições criadas em payments: {}", created.size());
+    }
+
+    private void dropArchived(List<Partition> partitions) {
+        LocalDate cutoff = LocalDate.now().minus(archiveMinAge);
+        for (Partition partition : partitions) {
+            // Só partições inteiras abaixo do corte do arquivamento e já vazias
+            if (partition.lessThan() == null || partition.lessThan().isAfter(cutoff)) {
+                continue;
+            }
+            boolean empty = jdbcTemplate.queryForList(
+                    "SELECT 1 FROM payments PARTITION (" + partition.name() + ") LIMIT 1").isEmpty();
+            if (empty) {
+                jdbcTemplate.execute("ALTER TABLE payments DROP PARTITION " + partition.name());
+                log.info("Partição {} de payments removida após o arquivamento", partition.name());
+            }
+        }
+    }
+
+    // lessThan nulo = MAXVALUE
+    private record Partition(String name, LocalDate lessThan) {
+
+        static Partition of(String name, String description) {
+            // RANGE COLUMNS descreve o limite como '2026-11-01 00:00:00' ou '2026-11-01'
+            if (description == null || "MAXVALUE".equalsIgnoreCase(description)) {
+                return new Partition(name, null);
+            }
+            return new Partition(name, LocalDate.parse(description.replace("'", "").substring(0, 10)));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.pagamentos.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pagamentos.dto.PaymentResponseDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+@Component
+@ConditionalOnProperty(name = "app.cache.payments.backend", havingValue = "local", matchIfMissing = true)
+public class CaffeinePaymentCache implements PaymentCache {
+
+    private final Cache<String, PaymentResponseDTO> cache;
+
+    public CaffeinePaymentCache(@Value("${app.cache.payments.max-size:50000}") long maxSize,
+                                @Value("${app.cache.payments.ttl:PT30S}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public PaymentResponseDTO get(String key, Function<String, PaymentResponseDTO> loader) {
+        // Caffeine agrupa misses concorrentes da mesma chave em uma única carga
+        return cache.get(key, loader);
+    }
+
+    @Override
+    public void evict(String key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public PaymentCacheStatistics statistics() {
+        CacheStats stats = cache.stats();
+        return new PaymentCacheStatistics(stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                cache.estimatedSize());
+    }
+}
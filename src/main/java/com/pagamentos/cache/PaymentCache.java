@@ -0,0 +1,25 @@
+package com.pagamentos.cache;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+
+import java.util.function.Function;
+
+// Backend do cache de leitura de pagamentos. Hoje em memória local;
+// uma implementação compartilhada (ex: Redis) pode substituí-la sem mudar o serviço.
+public interface PaymentCache {
+
+    static String byId(Long id) {
+        return "id:" + id;
+    }
+
+    static String byPaymentId(String paymentId) {
+        return "pid:" + paymentId;
+    }
+
+    // Retorna o valor em cache ou carrega via loader; resultados null não são guardados
+    PaymentResponseDTO get(String key, Function<String, PaymentResponseDTO> loader);
+
+    void evict(String key);
+
+    PaymentCacheStatistics statistics();
+}
@@ -0,0 +1,20 @@
+package com.pagamentos.cache;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+@RequiredArgsConstructor
+public class PaymentCacheInvalidator {
+
+    private final PaymentCache paymentCache;
+
+    // Depois do commit: uma leitura concorrente não consegue recolocar o valor antigo
+    @TransactionalEventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        paymentCache.evict(PaymentCache.byId(event.id()));
+        paymentCache.evict(PaymentCache.byPaymentId(event.paymentId()));
+    }
+}
@@ -0,0 +1,83 @@
+package com.pagamentos.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
+import jakarta.persistence.metamodel.EntityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+
+// Bases anteriores aos geradores de tabela têm IDs AUTO_INCREMENT: sem a linha em id_generators o Hibernate
+// começaria do valor inicial e o primeiro INSERT colidiria com um ID existente. Depende do
+// EntityManagerFactory para rodar depois do ddl-auto e antes de requisições e tarefas agendadas.
+@Component
+@Slf4j
+public class IdGeneratorInitializer {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorInitializer(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void seed() {
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            Table table = type.getAnnotation(Table.class);
+            TableGenerator generator = findGenerator(type);
+            if (table != null && generator != null) {
+                seed(table.name(), generator);
+            }
+        }
+    }
+
+    // O otimizador pooled trata o valor como topo do bloco: com MAX(id) + allocationSize o próximo bloco
+    // começa logo depois do maior ID gravado. Só aumenta o valor: blocos já reservados por outros nós
+    // ficam sempre abaixo do que está na tabela
+    private void seed(String table, TableGenerator generator) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        long next = maxId + generator.allocationSize();
+        String update = "UPDATE " + generator.table() + " SET " + generator.valueColumnName() + " = ? WHERE "
+                + generator.pkColumnName() + " = ? AND " + generator.valueColumnName() + " < ?";
+
+        int updated = jdbcTemplate.update(update, next, generator.pkColumnValue(), next);
+        if (updated == 0 && !exists(generator)) {
+            try {
+                jdbcTemplate.update("INSERT INTO " + generator.table() + " (" + generator.pkColumnName() + ", "
+                        + generator.valueColumnName() + ") VALUES (?, ?)", generator.pkColumnValue(), next);
+                updated = 1;
+            } catch (DuplicateKeyException e) {
+                // Outro nó inseriu a linha ao mesmo tempo
+                updated = jdbcTemplate.update(update, next, generator.pkColumnValue(), next);
+            }
+        }
+        if (updated > 0) {
+            log.info("Gerador de IDs {} ajustado para {} (maior ID em {}: {})",
+                    generator.pkColumnValue(), next, table, maxId);
+        }
+    }
+
+    private boolean exists(TableGenerator generator) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + generator.table() + " WHERE "
+                + generator.pkColumnName() + " = ?", Integer.class, generator.pkColumnValue());
+        return count != null && count > 0;
+    }
+
+    private static TableGenerator findGenerator(Class<?> type) {
+        for (Field field : type.getDeclaredFields()) {
+            TableGenerator generator = field.getAnnotation(TableGenerator.class);
+            if (generator != null) {
+                return generator;
+            }
+        }
+        return null;
+    }
+}
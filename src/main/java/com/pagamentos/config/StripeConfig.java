@@ -5,6 +5,8 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 public class StripeConfig {
 
@@ -17,9 +19,28 @@ public class StripeConfig {
     @Value("${app.payment.webhook-secret}")
     private String webhookSecret;
 
+    // Sobrescrito em testes para apontar os clientes bloqueante e assíncrono para um stub local
+    @Value("${app.gateway.stripe.api-base:" + Stripe.LIVE_API_BASE + "}")
+    private String apiBase;
+
+    // Padrão do cliente é 30s de conexão e 80s de leitura: longo demais para prender uma requisição
+    @Value("${app.gateway.stripe.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    @Value("${app.gateway.stripe.read-timeout:PT10S}")
+    private Duration readTimeout;
+
+    // Retentativas ficam com o ResilientPaymentGatewayService, que só repete consultas
+    @Value("${app.gateway.stripe.max-network-retries:0}")
+    private int maxNetworkRetries;
+
     @PostConstruct
     public void init() {
         Stripe.apiKey = stripeSecretKey;
+        Stripe.overrideApiBase(apiBase);
+        Stripe.setConnectTimeout((int) connectTimeout.toMillis());
+        Stripe.setReadTimeout((int) readTimeout.toMillis());
+        Stripe.setMaxNetworkRetries(maxNetworkRetries);
     }
 
     public String getPublicKey() {
@@ -1,67 +1,172 @@
 package com.pagamentos.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.pagamentos.cache.PaymentCacheStatistics;
+import com.pagamentos.dto.BulkPaymentItemDTO;
+import com.pagamentos.dto.BulkPaymentJobDTO;
+import com.pagamentos.dto.BulkPaymentRequestDTO;
+import com.pagamentos.dto.PaymentPageDTO;
 import com.pagamentos.dto.PaymentRequestDTO;
 import com.pagamentos.dto.PaymentResponseDTO;
 import com.pagamentos.dto.RefundRequestDTO;
+import com.pagamentos.export.ExportFormat;
+import com.pagamentos.export.PaymentExportQuery;
+import com.pagamentos.export.PaymentExportService;
 import com.pagamentos.model.Payment;
+import com.pagamentos.service.BulkPaymentService;
+import com.pagamentos.service.IdempotencyService;
 import com.pagamentos.service.PaymentService;
+import com.pagamentos.service.PaymentStatisticsService;
+import com.pagamentos.subscription.PaymentSubscriptionService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/payments")
 @RequiredArgsConstructor
 public class PaymentController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
+    private final BulkPaymentService bulkPaymentService;
+    private final PaymentExportService paymentExportService;
+    private final PaymentSubscriptionService paymentSubscriptionService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
-    public ResponseEntity<PaymentResponseDTO> createPayment(@Valid @RequestBody PaymentRequestDTO request) {
-        Payment payment = paymentService.processPayment(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(convertToDTO(payment));
+    public ResponseEntity<PaymentResponseDTO> createPayment(
+            @Valid @RequestBody PaymentRequestDTO request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            Payment payment = paymentService.processPayment(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(PaymentResponseDTO.from(payment));
+        }
+
+        PaymentResponseDTO response = idempotencyService.execute(idempotencyKey, request,
+                () -> PaymentResponseDTO.from(paymentService.processPayment(request, idempotencyKey)));
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    // Resposta concluída de forma assíncrona: a thread da requisição é liberada durante a chamada ao gateway.
+    // Sem Idempotency-Key; a referência do pagamento já evita cobrança dupla no gateway.
+    @PostMapping("/async")
+    public CompletableFuture<ResponseEntity<PaymentResponseDTO>> createPaymentAsync(
+            @Valid @RequestBody PaymentRequestDTO request) {
+        return paymentService.processPaymentAsync(request)
+                .thenApply(payment -> ResponseEntity.status(HttpStatus.CREATED).body(PaymentResponseDTO.from(payment)));
+    }
+
+    // Processa em segundo plano; o progresso é consultado pelo jobId
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkPaymentJobDTO> createBulkPayment(@Valid @RequestBody BulkPaymentRequestDTO request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkPaymentService.submit(request.getPayments()));
+    }
+
+    @GetMapping("/bulk/{jobId}")
+    public ResponseEntity<BulkPaymentJobDTO> getBulkPayment(@PathVariable String jobId) {
+        return ResponseEntity.ok(bulkPaymentService.getJob(jobId));
+    }
+
+    @GetMapping("/bulk/{jobId}/results")
+    public ResponseEntity<List<BulkPaymentItemDTO>> getBulkPaymentResults(
+            @PathVariable String jobId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(bulkPaymentService.getResults(jobId, offset, pageSize(limit)));
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<PaymentResponseDTO> getPayment(@PathVariable Long id) {
-        Payment payment = paymentService.getPaymentById(id);
-        return ResponseEntity.ok(convertToDTO(payment));
+        return ResponseEntity.ok(paymentService.getPaymentById(id));
+    }
+
+    @GetMapping(value = "/{id}/gateway-response", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getGatewayResponse(@PathVariable Long id) {
+        return ResponseEntity.ok(paymentService.getGatewayResponse(id));
     }
 
     @GetMapping("/payment/{paymentId}")
     public ResponseEntity<PaymentResponseDTO> getPaymentByPaymentId(@PathVariable String paymentId) {
-        Payment payment = paymentService.getPaymentByPaymentId(paymentId);
-        return ResponseEntity.ok(convertToDTO(payment));
+        return ResponseEntity.ok(paymentService.getPaymentByPaymentId(paymentId));
+    }
+
+    // Alternativas ao polling do endpoint acima enquanto o pagamento aguarda o cliente (PIX, boleto, 3DS)
+    @GetMapping(value = "/payment/{paymentId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribePaymentStatus(@PathVariable String paymentId) {
+        return paymentSubscriptionService.subscribe(paymentId);
+    }
+
+    @GetMapping("/payment/{paymentId}/await")
+    public DeferredResult<ResponseEntity<PaymentResponseDTO>> awaitPaymentStatus(
+            @PathVariable String paymentId,
+            @RequestParam(required = false) String status) {
+        return paymentSubscriptionService.awaitChange(paymentId, status);
     }
 
     @GetMapping("/customer/{customerId}")
     public ResponseEntity<List<PaymentResponseDTO>> getCustomerPayments(@PathVariable String customerId) {
-        List<Payment> payments = paymentService.getPaymentsByCustomer(customerId);
-        List<PaymentResponseDTO> dtos = payments.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(paymentService.getPaymentsByCustomer(customerId));
     }
 
     @GetMapping("/status/{status}")
     public ResponseEntity<List<PaymentResponseDTO>> getPaymentsByStatus(@PathVariable String status) {
-        List<Payment> payments = paymentService.getPaymentsByStatus(status);
-        List<PaymentResponseDTO> dtos = payments.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(paymentService.getPaymentsByStatus(status));
+    }
+
+    @GetMapping("/customer/{customerId}/page")
+    public ResponseEntity<PaymentPageDTO> getCustomerPaymentsPage(
+            @PathVariable String customerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(paymentService.getPaymentsByCustomer(customerId, cursor, pageSize(size)));
+    }
+
+    @GetMapping("/status/{status}/page")
+    public ResponseEntity<PaymentPageDTO> getPaymentsByStatusPage(
+            @PathVariable String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(paymentService.getPaymentsByStatus(status, cursor, pageSize(size)));
+    }
+
+    @GetMapping(value = "/customer/{customerId}/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamCustomerPayments(@PathVariable String customerId) {
+        return ndjson(consumer -> paymentService.streamPaymentsByCustomer(customerId, consumer));
+    }
+
+    @GetMapping(value = "/status/{status}/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamPaymentsByStatus(@PathVariable String status) {
+        return ndjson(consumer -> paymentService.streamPaymentsByStatus(status, consumer));
     }
 
     @PostMapping("/refund")
     public ResponseEntity<PaymentResponseDTO> refundPayment(@Valid @RequestBody RefundRequestDTO request) {
         Payment refund = paymentService.refundPayment(request);
-        return ResponseEntity.ok(convertToDTO(refund));
+        return ResponseEntity.ok(PaymentResponseDTO.from(refund));
     }
 
     @GetMapping("/statistics")
@@ -70,25 +175,85 @@ public class PaymentController {
         return ResponseEntity.ok(stats);
     }
 
+    @GetMapping("/statistics/rollup")
+    public ResponseEntity<List<Map<String, Object>>> getStatisticsRollup(
+            @RequestParam(defaultValue = "HOUR") PaymentStatisticsService.Granularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(1);
+        return ResponseEntity.ok(paymentService.getPaymentStatisticsRollup(granularity, start, end));
+    }
+
+    // Escrita síncrona na resposta: com virtual threads a exportação longa não prende uma thread
+    // de plataforma e não fica sujeita ao timeout das requisições assíncronas
+    @GetMapping("/export")
+    public void exportPayments(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String gateway,
+            @RequestParam(required = false) String currency,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            HttpServletResponse response) throws IOException {
+        PaymentExportQuery query = PaymentExportQuery.of(from, to, status, gateway, currency, format);
+        response.setContentType("application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + query.fileName() + "\"");
+        paymentExportService.export(query, response.getOutputStream());
+    }
+
+    // Gera o arquivo no diretório de exportações do servidor (app.payment.export.directory)
+    @PostMapping("/export/file")
+    public ResponseEntity<Map<String, Object>> exportPaymentsToFile(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String gateway,
+            @RequestParam(required = false) String currency,
+            @RequestParam(defaultValue = "CSV") ExportFormat format) throws IOException {
+        PaymentExportService.ExportFile file = paymentExportService.exportToFile(
+                PaymentExportQuery.of(from, to, status, gateway, currency, format));
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
+                "file", file.path().getFileName().toString(),
+                "rows", file.summary().rows(),
+                "subtotals", file.summary().subtotals()));
+    }
+
+    @GetMapping("/cache/statistics")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        PaymentCacheStatistics stats = paymentService.getCacheStatistics();
+        return ResponseEntity.ok(Map.of(
+                "hits", stats.hits(),
+                "misses", stats.misses(),
+                "evictions", stats.evictions(),
+                "size", stats.size(),
+                "hitRate", stats.hitRate()));
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Payment Service is running!");
     }
 
-    private PaymentResponseDTO convertToDTO(Payment payment) {
-        PaymentResponseDTO dto = new PaymentResponseDTO();
-        dto.setId(payment.getId());
-        dto.setPaymentId(payment.getPaymentId());
-        dto.setCustomerId(payment.getCustomerId());
-        dto.setCustomerEmail(payment.getCustomerEmail());
-        dto.setAmount(payment.getAmount());
-        dto.setCurrency(payment.getCurrency());
-        dto.setPaymentMethod(payment.getPaymentMethod());
-        dto.setStatus(payment.getStatus());
-        dto.setGateway(payment.getGateway());
-        dto.setDescription(payment.getDescription());
-        dto.setCreatedAt(payment.getCreatedAt());
-        // Adicionar URL para PIX/Boleto se necessário
-        return dto;
+    private int pageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    // Cada pagamento é serializado direto na resposta, sem montar a lista em memória
+    private ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<PaymentResponseDTO>> source) {
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(outputStream)) {
+                source.accept(payment -> {
+                    try {
+                        writer.write(payment);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                writer.flush();
+                outputStream.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
     }
 }
\ No newline at end of file
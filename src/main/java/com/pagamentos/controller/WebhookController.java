@@ -1,31 +1,36 @@
 package com.pagamentos.controller;
 
-import com.pagamentos.model.Payment;
 import com.pagamentos.model.PaymentStatus;
-import com.pagamentos.repository.PaymentRepository;
-import com.stripe.Stripe;
+import com.pagamentos.service.WebhookIngestionService;
+import com.stripe.exception.EventDataObjectDeserializationException;
 import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Charge;
 import com.stripe.model.Event;
 import com.stripe.model.EventDataObjectDeserializer;
+import com.stripe.model.PaymentIntent;
 import com.stripe.model.StripeObject;
 import com.stripe.net.Webhook;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Set;
+
 @RestController
 @RequestMapping("/api/webhooks")
 @RequiredArgsConstructor
 @Slf4j
 public class WebhookController {
 
+    private static final Set<String> HANDLED_EVENTS = Set.of(
+            "payment_intent.succeeded", "payment_intent.payment_failed", "charge.refunded");
+
     @Value("${app.payment.webhook-secret}")
     private String webhookSecret;
 
-    private final PaymentRepository paymentRepository;
+    private final WebhookIngestionService webhookIngestionService;
 
     @PostMapping("/stripe")
     public ResponseEntity<String> handleStripeWebhook(
@@ -50,33 +55,60 @@ public class WebhookController {
 
         // Processar o evento
         EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
-        StripeObject stripeObject = null;
-        if (dataObjectDeserializer.getObject().isPresent()) {
-            stripeObject = dataObjectDeserializer.getObject().get();
-        }
-
-        log.info("Received event: {} - {}", event.getId(), event.getType());
+        StripeObject stripeObject = dataObjectDeserializer.getObject().orElse(null);
 
-        switch (event.getType()) {
-            case "payment_intent.succeeded":
-                log.info("Payment succeeded!");
-                // Atualizar status do pagamento no banco
-                break;
+        log.debug("Received event: {} - {}", event.getId(), event.getType());
 
-            case "payment_intent.payment_failed":
-                log.info("Payment failed!");
-                // Atualizar status do pagamento no banco
-                break;
+        // getObject() fica vazio quando a versão da API da conta difere da do SDK: tenta ler mesmo assim.
+        // Se não der, responde erro para o Stripe reenviar em vez de perder a mudança de status
+        if (stripeObject == null && HANDLED_EVENTS.contains(event.getType())) {
+            try {
+                stripeObject = dataObjectDeserializer.deserializeUnsafe();
+            } catch (EventDataObjectDeserializationException e) {
+                log.error("Evento {} ({}) com objeto ilegível na versão de API {}: {}",
+                        event.getId(), event.getType(), event.getApiVersion(), e.getMessage());
+                return ResponseEntity.internalServerError().body("Webhook object not readable");
+            }
+        }
 
-            case "charge.refunded":
-                log.info("Charge refunded!");
-                // Atualizar status para reembolsado
-                break;
+        PaymentStatus targetStatus = targetStatus(event.getType(), stripeObject);
+        if (targetStatus == null) {
+            log.warn("Unhandled event type: {}", event.getType());
+            return ResponseEntity.ok("Webhook received");
+        }
 
-            default:
-                log.warn("Unhandled event type: {}", event.getType());
+        String paymentId = resolvePaymentId(stripeObject);
+        if (paymentId == null) {
+            log.warn("Evento {} sem pagamento associado", event.getId());
+            return ResponseEntity.ok("Webhook received");
         }
 
+        // A atualização é aplicada em lote pelo WebhookEventProcessor; aqui apenas enfileira e confirma
+        webhookIngestionService.enqueue(event.getId(), event.getType(), event.getCreated(), paymentId, targetStatus);
+
         return ResponseEntity.ok("Webhook received");
     }
+
+    private PaymentStatus targetStatus(String eventType, StripeObject stripeObject) {
+        return switch (eventType) {
+            case "payment_intent.succeeded" -> PaymentStatus.SUCCESS;
+            case "payment_intent.payment_failed" -> PaymentStatus.FAILED;
+            // Reembolsos parciais não mudam o status do pagamento
+            case "charge.refunded" -> stripeObject instanceof Charge charge && Boolean.TRUE.equals(charge.getRefunded())
+                    ? PaymentStatus.REFUNDED
+                    : null;
+            default -> null;
+        };
+    }
+
+    // Pagamentos são gravados com o ID da charge
+    private String resolvePaymentId(StripeObject stripeObject) {
+        if (stripeObject instanceof Charge charge) {
+            return charge.getId();
+        }
+        if (stripeObject instanceof PaymentIntent paymentIntent) {
+            return paymentIntent.getLatestCharge();
+        }
+        return null;
+    }
 }
\ No newline at end of file
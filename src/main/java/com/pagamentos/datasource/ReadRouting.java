@@ -0,0 +1,115 @@
+package com.pagamentos.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+// Leituras que aceitam a réplica passam por aqui. Cada leitura informa as chaves que consulta
+// (pagamento, cliente); se alguma foi escrita depois do ponto que a réplica já alcançou, a
+// leitura fica no primário: quem acabou de criar um pagamento sempre o enxerga neste nó. O registro
+// de escritas é local; para buscas por chave, onReplicaOrPrimary cobre o cliente que cai em outro nó.
+// Sem réplica configurada (app.datasource.replica.enabled=false), apenas executa a leitura.
+@Component
+public class ReadRouting {
+
+    private static final ThreadLocal<Boolean> REPLICA_REQUESTED = new ThreadLocal<>();
+    private static final long MAX_TRACKED_WRITES = 100_000;
+
+    private final ReplicaLagMonitor lagMonitor;
+    // Chave -> horário do commit; passado o atraso máximo tolerado, a escrita já está na réplica
+    private final Cache<String, Long> recentWrites;
+
+    public ReadRouting(Optional<ReplicaLagMonitor> lagMonitor) {
+        this.lagMonitor = lagMonitor.orElse(null);
+        this.recentWrites = this.lagMonitor == null ? null : Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_WRITES)
+                .expireAfterWrite(this.lagMonitor.getMaxLag())
+                .executor(Runnable::run)
+                .build();
+    }
+
+    public static String byId(Long id) {
+        return "id:" + id;
+    }
+
+    public static String byPaymentId(String paymentId) {
+        return "pid:" + paymentId;
+    }
+
+    public static String byCustomer(String customerId) {
+        return "cus:" + customerId;
+    }
+
+    public <T> T onReplica(Supplier<T> read, String... keys) {
+        if (lagMonitor == null || writtenSinceReplica(keys)) {
+            return read.get();
+        }
+        return replica(read);
+    }
+
+    // Busca de um registro por chave: um miss na réplica pode ser um pagamento criado há pouco em outro
+    // nó, que este não registrou. Antes de responder "não encontrado", confirma no primário
+    public <T> T onReplicaOrPrimary(Supplier<T> read, String... keys) {
+        if (lagMonitor == null || writtenSinceReplica(keys)) {
+            return read.get();
+        }
+        T result = replica(read);
+        return result != null ? result : read.get();
+    }
+
+    public void runOnReplica(Runnable read, String... keys) {
+        onReplica(() -> {
+            read.run();
+            return null;
+        }, keys);
+    }
+
+    private <T> T replica(Supplier<T> read) {
+        Boolean previous = REPLICA_REQUESTED.get();
+        REPLICA_REQUESTED.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                REPLICA_REQUESTED.remove();
+            } else {
+                REPLICA_REQUESTED.set(previous);
+            }
+        }
+    }
+
+    static boolean isReplicaRequested() {
+        return REPLICA_REQUESTED.get() != null;
+    }
+
+    // Antes do PaymentCacheInvalidator: uma leitura que perca o cache logo após o commit já
+    // encontra a escrita registrada e não recarrega o valor antigo a partir da réplica
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        if (recentWrites == null) {
+            return;
+        }
+        Long committedAt = System.currentTimeMillis();
+        recentWrites.put(byId(event.id()), committedAt);
+        recentWrites.put(byPaymentId(event.paymentId()), committedAt);
+        recentWrites.put(byCustomer(event.customerId()), committedAt);
+    }
+
+    private boolean writtenSinceReplica(String... keys) {
+        for (String key : keys) {
+            Long writtenAt = recentWrites.getIfPresent(key);
+            if (writtenAt != null && !lagMonitor.hasReplicated(writtenAt)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
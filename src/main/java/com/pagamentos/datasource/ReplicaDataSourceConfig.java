@@ -0,0 +1,79 @@
+package com.pagamentos.datasource;
+
+import com.pagamentos.metrics.PaymentMetrics;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Primário (spring.datasource.*) e réplica (app.datasource.replica.*) com pools Hikari separados:
+// leituras de listagem não disputam conexão com as cobranças. O DataSource exposto ao JPA roteia
+// por transação; sem esta configuração fica o DataSource único do Spring Boot.
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    private static final String PREFIX = "app.datasource.replica.";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(Environment environment) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("replica");
+        config.setJdbcUrl(environment.getRequiredProperty(PREFIX + "url"));
+        config.setUsername(environment.getProperty(PREFIX + "username", environment.getProperty("spring.datasource.username")));
+        config.setPassword(environment.getProperty(PREFIX + "password", environment.getProperty("spring.datasource.password")));
+        config.setMaximumPoolSize(environment.getProperty(PREFIX + "maximum-pool-size", Integer.class, 20));
+        config.setConnectionTimeout(DurationStyle.detectAndParse(
+                environment.getProperty(PREFIX + "connection-timeout", "PT2S")).toMillis());
+        config.setReadOnly(true);
+        // Réplica fora do ar não impede a subida: as leituras ficam no primário até ela voltar
+        config.setInitializationFailTimeout(-1);
+        return new HikariDataSource(config);
+    }
+
+    @Bean
+    ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                        @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                        Environment environment,
+                                        PaymentMetrics paymentMetrics) {
+        return new ReplicaLagMonitor(primaryDataSource, replicaDataSource, environment, paymentMetrics);
+    }
+
+    // Lazy: a conexão física só é obtida na primeira instrução, depois que a transação publicou readOnly
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        return routingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor);
+    }
+
+    static DataSource routingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(lagMonitor);
+        routing.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.Target.PRIMARY, primary,
+                ReplicaRoutingDataSource.Target.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,82 @@
+package com.pagamentos.datasource;
+
+import com.pagamentos.metrics.PaymentMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+
+// Atraso da réplica medido por batida: o primário grava o horário atual em replication_heartbeat
+// e a réplica é lida logo em seguida. O último horário visível na réplica diz até onde ela chegou:
+// toda escrita confirmada antes dele já foi replicada.
+@Slf4j
+class ReplicaLagMonitor {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+
+    // Horário (no relógio da aplicação) da última batida já visível na réplica; 0 = réplica inacessível
+    private volatile long visibleUpToMillis;
+
+    ReplicaLagMonitor(DataSource primary, DataSource replica, Environment environment, PaymentMetrics paymentMetrics) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLag = DurationStyle.detectAndParse(
+                environment.getProperty("app.datasource.replica.max-lag", "PT5S"));
+        this.primary.execute("CREATE TABLE IF NOT EXISTS replication_heartbeat ("
+                + "id INT PRIMARY KEY, beat_at TIMESTAMP(6) NOT NULL)");
+        paymentMetrics.registerReplicaLag(() -> visibleUpToMillis == 0 ? Double.NaN : lag().toMillis() / 1000.0);
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.heartbeat-interval-ms:1000}")
+    public void heartbeat() {
+        try {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            if (primary.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", now) == 0) {
+                primary.update("INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, ?)", now);
+            }
+        } catch (DuplicateKeyException e) {
+            // Outra instância criou a linha ao mesmo tempo; a próxima batida atualiza
+        } catch (DataAccessException e) {
+            log.warn("Falha ao gravar batida de replicação no primário: {}", e.getMessage());
+        }
+
+        try {
+            List<Timestamp> beats = replica.queryForList(
+                    "SELECT beat_at FROM replication_heartbeat WHERE id = 1", Timestamp.class);
+            visibleUpToMillis = beats.isEmpty() ? 0 : beats.get(0).getTime();
+        } catch (DataAccessException e) {
+            if (visibleUpToMillis != 0) {
+                log.warn("Réplica inacessível, leituras voltam ao primário: {}", e.getMessage());
+            }
+            visibleUpToMillis = 0;
+        }
+    }
+
+    Duration getMaxLag() {
+        return maxLag;
+    }
+
+    Duration lag() {
+        long visible = visibleUpToMillis;
+        return visible == 0 ? Duration.ofMillis(Long.MAX_VALUE) : Duration.ofMillis(System.currentTimeMillis() - visible);
+    }
+
+    boolean isReplicaUsable() {
+        return lag().compareTo(maxLag) <= 0;
+    }
+
+    // Escrita confirmada em writtenAtMillis já aparece na réplica?
+    boolean hasReplicated(long writtenAtMillis) {
+        return visibleUpToMillis >= writtenAtMillis;
+    }
+}
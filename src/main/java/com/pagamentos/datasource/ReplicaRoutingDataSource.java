@@ -0,0 +1,25 @@
+package com.pagamentos.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Decidido na primeira instrução da transação (atrás do LazyConnectionDataSourceProxy), quando
+// o flag readOnly já está publicado. Só vai para a réplica a leitura que pediu por ReadRouting.
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean replica = ReadRouting.isReplicaRequested()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && lagMonitor.isReplicaUsable();
+        return replica ? Target.REPLICA : Target.PRIMARY;
+    }
+}
@@ -0,0 +1,18 @@
+package com.pagamentos.dto;
+
+import com.pagamentos.model.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentItemDTO {
+    private int index; // Posição na lista enviada
+    private Long id;
+    private String paymentId;
+    private PaymentStatus status;
+    private String error;
+    private boolean retryable; // Não chegou ao gateway: pode ser reenviado sem risco de cobrança dupla
+}
@@ -0,0 +1,22 @@
+package com.pagamentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPaymentJobDTO {
+    private String jobId;
+    private String status; // RUNNING, COMPLETED ou ABORTED
+    private int total;
+    private int processed;
+    private int succeeded;
+    private int failed;
+    private int retryable;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
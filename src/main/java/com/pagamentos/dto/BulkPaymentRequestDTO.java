@@ -0,0 +1,16 @@
+package com.pagamentos.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkPaymentRequestDTO {
+
+    @NotEmpty(message = "Lista de pagamentos é obrigatória")
+    @Size(max = 100000, message = "Máximo de 100000 pagamentos por lote")
+    private List<@Valid PaymentRequestDTO> payments;
+}
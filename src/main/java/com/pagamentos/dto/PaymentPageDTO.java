@@ -0,0 +1,15 @@
+package com.pagamentos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentPageDTO {
+    private List<PaymentResponseDTO> items;
+    private String nextCursor;
+}
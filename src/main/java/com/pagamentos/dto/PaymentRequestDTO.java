@@ -1,5 +1,6 @@
 package com.pagamentos.dto;
 
+import com.pagamentos.model.Money;
 import com.pagamentos.model.PaymentMethod;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -17,6 +18,7 @@ public class PaymentRequestDTO {
 
     @NotNull(message = "Valor é obrigatório")
     @DecimalMin(value = "0.01", message = "Valor deve ser maior que 0")
+    @Digits(integer = 17, fraction = 2, message = "Valor com mais de 2 casas decimais")
     private BigDecimal amount;
 
     @Pattern(regexp = "BRL|USD|EUR", message = "Moeda inválida")
@@ -30,6 +32,12 @@ public class PaymentRequestDTO {
 
     private String description;
 
-    @Pattern(regexp = "STRIPE|PAGSEGURO", message = "Gateway inválido")
-    private String gateway = "STRIPE";
+    // Opcional: sem gateway, o PaymentGatewayRouter escolhe pelas regras e pela saúde dos gateways
+    @Pattern(regexp = "STRIPE|PAGSEGURO|FAKE", message = "Gateway inválido")
+    private String gateway;
+
+    // Valor em unidades mínimas da moeda; é o que os gateways recebem
+    public Money toMoney() {
+        return Money.of(amount, currency);
+    }
 }
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.pagamentos.dto;
 
+import com.pagamentos.model.Payment;
 import com.pagamentos.model.PaymentStatus;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class PaymentResponseDTO {
     private Long id;
     private String paymentId;
@@ -20,4 +23,39 @@ public class PaymentResponseDTO {
     private LocalDateTime createdAt;
     private String paymentUrl; // URL para PIX ou Boleto
     private String qrCode; // QR Code para PIX
+
+    // Usado pelas projeções JPQL, que leem só as colunas exibidas
+    public PaymentResponseDTO(Long id, String paymentId, String customerId, String customerEmail,
+                              BigDecimal amount, String currency, String paymentMethod, PaymentStatus status,
+                              String gateway, String description, LocalDateTime createdAt) {
+        this.id = id;
+        this.paymentId = paymentId;
+        this.customerId = customerId;
+        this.customerEmail = customerEmail;
+        this.amount = amount;
+        this.currency = currency;
+        this.paymentMethod = paymentMethod;
+        this.status = status;
+        this.gateway = gateway;
+        this.description = description;
+        this.createdAt = createdAt;
+    }
+
+    // Mapeamento usado nos caminhos de escrita, onde a entidade já está em memória
+    public static PaymentResponseDTO from(Payment payment) {
+        PaymentResponseDTO dto = new PaymentResponseDTO();
+        dto.setId(payment.getId());
+        dto.setPaymentId(payment.getPaymentId());
+        dto.setCustomerId(payment.getCustomerId());
+        dto.setCustomerEmail(payment.getCustomerEmail());
+        dto.setAmount(payment.getAmount());
+        dto.setCurrency(payment.getCurrency());
+        dto.setPaymentMethod(payment.getPaymentMethod());
+        dto.setStatus(payment.getStatus());
+        dto.setGateway(payment.getGateway());
+        dto.setDescription(payment.getDescription());
+        dto.setCreatedAt(payment.getCreatedAt());
+        // Adicionar URL para PIX/Boleto se necessário
+        return dto;
+    }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.pagamentos.dto;
 
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -12,6 +14,8 @@ public class RefundRequestDTO {
     private String paymentId;
 
     @NotNull(message = "Valor é obrigatório")
+    @DecimalMin(value = "0.01", message = "Valor deve ser maior que 0")
+    @Digits(integer = 17, fraction = 2, message = "Valor com mais de 2 casas decimais")
     private BigDecimal amount;
 
     private String reason;
@@ -0,0 +1,41 @@
+package com.pagamentos.event;
+
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// previousStatus é null quando o pagamento acabou de ser criado. sequence ordena as mudanças de um mesmo
+// pagamento: 0 na criação e, depois, a versão lida na transação + 1. Toda mudança de status incrementa a
+// versão, então a sequência cresce mesmo quando os eventos chegam fora de ordem ao consumidor
+public record PaymentStatusChangedEvent(
+        Long id,
+        String paymentId,
+        String customerId,
+        String gateway,
+        String currency,
+        String paymentMethod,
+        BigDecimal amount,
+        PaymentStatus previousStatus,
+        PaymentStatus newStatus,
+        LocalDateTime createdAt,
+        LocalDateTime occurredAt,
+        long sequence) {
+
+    public static PaymentStatusChangedEvent of(Payment payment, PaymentStatus previousStatus) {
+        return new PaymentStatusChangedEvent(
+                payment.getId(),
+                payment.getPaymentId(),
+                payment.getCustomerId(),
+                payment.getGateway(),
+                payment.getCurrency(),
+                payment.getPaymentMethod(),
+                payment.getAmount(),
+                previousStatus,
+                payment.getStatus(),
+                payment.getCreatedAt(),
+                LocalDateTime.now(),
+                previousStatus == null ? 0 : payment.getVersion() + 1);
+    }
+}
@@ -0,0 +1,23 @@
+package com.pagamentos.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Falha transitória do gateway (rede, timeout, 5xx): o resultado da operação é desconhecido
+@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+@Getter
+public class GatewayTimeoutException extends RuntimeException {
+
+    // Pagamento já gravado em PROCESSING, quando houver: a conciliação define o resultado dele
+    private final Long paymentId;
+
+    public GatewayTimeoutException(String message) {
+        this(message, null);
+    }
+
+    public GatewayTimeoutException(String message, Long paymentId) {
+        super(message);
+        this.paymentId = paymentId;
+    }
+}
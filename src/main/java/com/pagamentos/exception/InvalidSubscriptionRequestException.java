@@ -0,0 +1,12 @@
+package com.pagamentos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidSubscriptionRequestException extends RuntimeException {
+
+    public InvalidSubscriptionRequestException(String message) {
+        super(message);
+    }
+}
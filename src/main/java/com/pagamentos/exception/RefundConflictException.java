@@ -0,0 +1,12 @@
+package com.pagamentos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class RefundConflictException extends RuntimeException {
+
+    public RefundConflictException(String message) {
+        super(message);
+    }
+}
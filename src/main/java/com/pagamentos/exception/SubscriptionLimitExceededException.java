@@ -0,0 +1,13 @@
+package com.pagamentos.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// O cliente volta a consultar GET /api/payments/payment/{paymentId} enquanto o nó está cheio
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class SubscriptionLimitExceededException extends RuntimeException {
+
+    public SubscriptionLimitExceededException(String message) {
+        super(message);
+    }
+}
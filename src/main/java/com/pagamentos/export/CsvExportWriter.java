@@ -0,0 +1,82 @@
+package com.pagamentos.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Pagamentos e subtotais no mesmo arquivo, distinguidos pela coluna record.
+// As colunas do pagamento (id em diante) ficam vazias nas linhas de subtotal.
+class CsvExportWriter implements ExportWriter {
+
+    private static final String HEADER = "record,date,status,gateway,currency,count,amount,refunded_amount,"
+            + "id,payment_id,customer_id,payment_method,created_at\n";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+
+    CsvExportWriter(OutputStream output) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(HEADER);
+    }
+
+    @Override
+    public void writePayment(ExportedPayment payment) throws IOException {
+        writer.write("payment,");
+        writer.write(payment.createdAt().toLocalDate().toString());
+        writer.write(',');
+        field(payment.status());
+        field(payment.gateway());
+        field(payment.currency());
+        writer.write("1,");
+        writer.write(payment.amount().toPlainString());
+        writer.write(',');
+        writer.write(payment.refundedAmount().toPlainString());
+        writer.write(',');
+        writer.write(Long.toString(payment.id()));
+        writer.write(',');
+        field(payment.paymentId());
+        field(payment.customerId());
+        field(payment.paymentMethod());
+        writer.write(payment.createdAt().toString());
+        writer.write('\n');
+    }
+
+    @Override
+    public void writeSubtotal(DailySubtotal subtotal) throws IOException {
+        DailySubtotal.Key key = subtotal.getKey();
+        writer.write("subtotal,");
+        writer.write(key.day().toString());
+        writer.write(',');
+        field(key.status());
+        field(key.gateway());
+        field(key.currency());
+        writer.write(Long.toString(subtotal.getCount()));
+        writer.write(',');
+        writer.write(subtotal.getAmount().toPlainString());
+        writer.write(',');
+        writer.write(subtotal.getRefundedAmount().toPlainString());
+        writer.write(",,,,,\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    // Só campos vindos do cliente podem ter vírgula ou aspas
+    private void field(String value) throws IOException {
+        if (value != null) {
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write(',');
+    }
+}
@@ -0,0 +1,52 @@
+package com.pagamentos.export;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+
+// Totais de um dia por status, gateway e moeda (somar moedas diferentes não faz sentido)
+final class DailySubtotal {
+
+    static final Comparator<Key> ORDER = Comparator.comparing(Key::day)
+            .thenComparing(Key::status)
+            .thenComparing(Key::gateway)
+            .thenComparing(Key::currency);
+
+    private final Key key;
+    private long count;
+    private BigDecimal amount = BigDecimal.ZERO;
+    private BigDecimal refundedAmount = BigDecimal.ZERO;
+
+    DailySubtotal(Key key) {
+        this.key = key;
+    }
+
+    void add(ExportedPayment payment) {
+        count++;
+        amount = amount.add(payment.amount());
+        refundedAmount = refundedAmount.add(payment.refundedAmount());
+    }
+
+    Key getKey() {
+        return key;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    BigDecimal getAmount() {
+        return amount;
+    }
+
+    BigDecimal getRefundedAmount() {
+        return refundedAmount;
+    }
+
+    record Key(LocalDate day, String status, String gateway, String currency) {
+
+        static Key of(ExportedPayment payment) {
+            return new Key(payment.createdAt().toLocalDate(), payment.status(), payment.gateway(), payment.currency());
+        }
+    }
+}
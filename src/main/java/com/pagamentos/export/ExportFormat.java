@@ -0,0 +1,34 @@
+package com.pagamentos.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public enum ExportFormat {
+
+    CSV("csv") {
+        @Override
+        ExportWriter open(OutputStream output, ObjectMapper objectMapper) throws IOException {
+            return new CsvExportWriter(output);
+        }
+    },
+    NDJSON("ndjson") {
+        @Override
+        ExportWriter open(OutputStream output, ObjectMapper objectMapper) throws IOException {
+            return new NdjsonExportWriter(output, objectMapper);
+        }
+    };
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    abstract ExportWriter open(OutputStream output, ObjectMapper objectMapper) throws IOException;
+}
@@ -0,0 +1,12 @@
+package com.pagamentos.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Grava cada linha assim que ela sai do cursor; o buffer do writer define o tamanho dos blocos enviados
+interface ExportWriter extends Closeable {
+
+    void writePayment(ExportedPayment payment) throws IOException;
+
+    void writeSubtotal(DailySubtotal subtotal) throws IOException;
+}
@@ -0,0 +1,26 @@
+package com.pagamentos.export;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+// Uma linha do cursor; lida por posição, na ordem de PaymentExportService.COLUMNS
+record ExportedPayment(long id, String paymentId, String customerId, String status, String gateway,
+                       String currency, String paymentMethod, BigDecimal amount, BigDecimal refundedAmount,
+                       LocalDateTime createdAt) {
+
+    static ExportedPayment from(ResultSet row) throws SQLException {
+        return new ExportedPayment(
+                row.getLong(1),
+                row.getString(2),
+                row.getString(3),
+                row.getString(4),
+                row.getString(5),
+                row.getString(6),
+                row.getString(7),
+                row.getBigDecimal(8),
+                row.getBigDecimal(9),
+                row.getObject(10, LocalDateTime.class));
+    }
+}
@@ -0,0 +1,59 @@
+package com.pagamentos.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Uma linha por pagamento ou subtotal, gerada campo a campo sem montar objetos intermediários
+class NdjsonExportWriter implements ExportWriter {
+
+    private final JsonGenerator generator;
+
+    NdjsonExportWriter(OutputStream output, ObjectMapper objectMapper) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+    }
+
+    @Override
+    public void writePayment(ExportedPayment payment) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("record", "payment");
+        generator.writeStringField("date", payment.createdAt().toLocalDate().toString());
+        generator.writeStringField("status", payment.status());
+        generator.writeStringField("gateway", payment.gateway());
+        generator.writeStringField("currency", payment.currency());
+        generator.writeNumberField("amount", payment.amount());
+        generator.writeNumberField("refundedAmount", payment.refundedAmount());
+        generator.writeNumberField("id", payment.id());
+        generator.writeStringField("paymentId", payment.paymentId());
+        generator.writeStringField("customerId", payment.customerId());
+        generator.writeStringField("paymentMethod", payment.paymentMethod());
+        generator.writeStringField("createdAt", payment.createdAt().toString());
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void writeSubtotal(DailySubtotal subtotal) throws IOException {
+        DailySubtotal.Key key = subtotal.getKey();
+        generator.writeStartObject();
+        generator.writeStringField("record", "subtotal");
+        generator.writeStringField("date", key.day().toString());
+        generator.writeStringField("status", key.status());
+        generator.writeStringField("gateway", key.gateway());
+        generator.writeStringField("currency", key.currency());
+        generator.writeNumberField("count", subtotal.getCount());
+        generator.writeNumberField("amount", subtotal.getAmount());
+        generator.writeNumberField("refundedAmount", subtotal.getRefundedAmount());
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeRaw('\n');
+        generator.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.pagamentos.export;
+
+import com.pagamentos.exception.InvalidExportRequestException;
+import com.pagamentos.model.CurrencyCode;
+import com.pagamentos.model.PaymentStatus;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+// Período em dias inteiros (from e to inclusivos); filtros nulos não restringem
+public record PaymentExportQuery(LocalDate from, LocalDate to, PaymentStatus status, String gateway,
+                                 String currency, ExportFormat format) {
+
+    public static PaymentExportQuery of(LocalDate from, LocalDate to, String status, String gateway,
+                                        String currency, ExportFormat format) {
+        if (from.isAfter(to)) {
+            throw new InvalidExportRequestException("Período inválido: " + from + " é posterior a " + to);
+        }
+        try {
+            return new PaymentExportQuery(from, to,
+                    status != null ? PaymentStatus.valueOf(status.toUpperCase(Locale.ROOT)) : null,
+                    gateway != null ? gateway.toUpperCase(Locale.ROOT) : null,
+                    currency != null ? CurrencyCode.of(currency).name() : null,
+                    format);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidExportRequestException("Filtro de exportação inválido: " + e.getMessage());
+        }
+    }
+
+    public String fileName() {
+        return "payments_" + from + "_" + to + "." + format.getExtension() + ".gz";
+    }
+}
@@ -0,0 +1,154 @@
+package com.pagamentos.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamentos.datasource.ReadRouting;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+// Exportação de pagamentos para conciliação financeira. Cada tabela é lida uma única vez, sem ORDER BY,
+// por um cursor JDBC forward-only: as linhas são gravadas (gzip) assim que chegam e só os subtotais
+// por dia ficam em memória, então o heap não cresce com o número de linhas.
+@Service
+@Slf4j
+public class PaymentExportService {
+
+    // Mesmas colunas em payments e payment_archive, na ordem lida por ExportedPayment.from
+    private static final String COLUMNS = "SELECT id, payment_id, customer_id, status, gateway, currency, "
+            + "payment_method, amount, refunded_amount, created_at FROM ";
+    private static final List<String> TABLES = List.of("payments", "payment_archive");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadRouting readRouting;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.payment.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${app.payment.export.directory:exports}")
+    private Path directory;
+
+    public PaymentExportService(JdbcTemplate jdbcTemplate, ReadRouting readRouting, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readRouting = readRouting;
+        this.objectMapper = objectMapper;
+    }
+
+    // Uma transação para as duas tabelas: um pagamento arquivado durante a exportação não sai
+    // duas vezes nem some (leitura consistente do InnoDB)
+    @Transactional(readOnly = true)
+    public ExportSummary export(PaymentExportQuery query, OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        Map<DailySubtotal.Key, DailySubtotal> subtotals = new TreeMap<>(DailySubtotal.ORDER);
+        long rows;
+
+        try (ExportWriter writer = query.format().open(new GZIPOutputStream(output, GZIP_BUFFER_SIZE), objectMapper)) {
+            try {
+                rows = readRouting.onReplica(() -> {
+                    long total = 0;
+                    for (String table : TABLES) {
+                        total += scan(table, query, writer, subtotals);
+                    }
+                    return total;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (DailySubtotal subtotal : subtotals.values()) {
+                writer.writeSubtotal(subtotal);
+            }
+        }
+
+        log.info("Exportação de {} pagamentos ({} a {}) concluída em {} ms", rows, query.from(), query.to(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return new ExportSummary(rows, subtotals.size());
+    }
+
+    // Grava num arquivo temporário e renomeia no fim: quem lê o diretório nunca vê um arquivo pela metade
+    @Transactional(readOnly = true)
+    public ExportFile exportToFile(PaymentExportQuery query) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(LocalDateTime.now().format(FILE_TIMESTAMP) + "_" + query.fileName());
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+
+        ExportSummary summary;
+        try (OutputStream output = Files.newOutputStream(partial)) {
+            summary = export(query, output);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        return new ExportFile(target, summary);
+    }
+
+    private long scan(String table, PaymentExportQuery query, ExportWriter writer,
+                      Map<DailySubtotal.Key, DailySubtotal> subtotals) {
+        StringBuilder sql = new StringBuilder(COLUMNS).append(table)
+                .append(" WHERE created_at >= ? AND created_at < ?");
+        List<Object> args = new ArrayList<>(5);
+        args.add(query.from().atStartOfDay());
+        args.add(query.to().plusDays(1).atStartOfDay());
+        if (query.status() != null) {
+            sql.append(" AND status = ?");
+            args.add(query.status().name());
+        }
+        if (query.gateway() != null) {
+            sql.append(" AND gateway = ?");
+            args.add(query.gateway());
+        }
+        if (query.currency() != null) {
+            sql.append(" AND currency = ?");
+            args.add(query.currency());
+        }
+
+        long[] rows = {0};
+        jdbcTemplate.query(connection -> {
+            // Com useCursorFetch=true e fetch size positivo o driver do MySQL usa cursor no servidor
+            PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, (ResultSet row) -> {
+            ExportedPayment payment = ExportedPayment.from(row);
+            try {
+                writer.writePayment(payment);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            subtotals.computeIfAbsent(DailySubtotal.Key.of(payment), DailySubtotal::new).add(payment);
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    public record ExportSummary(long rows, int subtotals) {
+    }
+
+    public record ExportFile(Path path, ExportSummary summary) {
+    }
+}
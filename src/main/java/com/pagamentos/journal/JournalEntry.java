@@ -0,0 +1,148 @@
+package com.pagamentos.journal;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.zip.CRC32C;
+
+// Registro do journal. Formato: tamanho do corpo (int) + CRC32C do corpo (int) + corpo com campos
+// de tamanho fixo seguidos das strings (tamanho em unsigned short + UTF-8). Status e tipo vão pelo
+// ordinal; id, status e valor ausentes são gravados como -1.
+public record JournalEntry(long sequence, Instant timestamp, JournalEntryType type, Long id, String paymentId,
+                           PaymentStatus previousStatus, PaymentStatus newStatus, BigDecimal amount,
+                           String currency, String gateway, String reference) {
+
+    static final int HEADER_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 36;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+    private static final JournalEntryType[] TYPES = JournalEntryType.values();
+
+    static JournalEntry transition(PaymentStatusChangedEvent event) {
+        return new JournalEntry(0, event.occurredAt().atZone(ZoneId.systemDefault()).toInstant(),
+                JournalEntryType.of(event.previousStatus(), event.newStatus()), event.id(), event.paymentId(),
+                event.previousStatus(), event.newStatus(), event.amount(), event.currency(), event.gateway(), null);
+    }
+
+    // reference guarda o ID e o tipo do evento do gateway
+    static JournalEntry webhook(String eventId, String eventType, String paymentId, PaymentStatus targetStatus) {
+        return new JournalEntry(0, Instant.now(), JournalEntryType.WEBHOOK_RECEIVED, null, paymentId,
+                null, targetStatus, null, null, null, eventId + " " + eventType);
+    }
+
+    // Registro completo com sequência 0 e cabeçalho vazio; seal preenche os dois ao reservar a posição
+    byte[] encode() {
+        byte[] paymentIdBytes = utf8(paymentId);
+        byte[] currencyBytes = utf8(currency);
+        byte[] gatewayBytes = utf8(gateway);
+        byte[] referenceBytes = utf8(reference);
+        int size = HEADER_SIZE + FIXED_BODY_SIZE + stringSize(paymentIdBytes) + stringSize(currencyBytes)
+                + stringSize(gatewayBytes) + stringSize(referenceBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.position(HEADER_SIZE);
+        buffer.putLong(0);
+        buffer.putLong(timestamp.toEpochMilli());
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(id != null ? id : -1);
+        buffer.put(ordinal(previousStatus));
+        buffer.put(ordinal(newStatus));
+        // DECIMAL(19,2): o valor sem escala sempre cabe em um long
+        buffer.putLong(amount != null ? amount.unscaledValue().longValueExact() : 0);
+        buffer.put((byte) (amount != null ? amount.scale() : -1));
+        putString(buffer, paymentIdBytes);
+        putString(buffer, currencyBytes);
+        putString(buffer, gatewayBytes);
+        putString(buffer, referenceBytes);
+        return buffer.array();
+    }
+
+    static void seal(byte[] record, long sequence) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putLong(HEADER_SIZE, sequence);
+        CRC32C crc = new CRC32C();
+        crc.update(record, HEADER_SIZE, record.length - HEADER_SIZE);
+        buffer.putInt(0, record.length - HEADER_SIZE);
+        buffer.putInt(4, (int) crc.getValue());
+    }
+
+    // Lê o registro em offset; null no fim dos registros ou num registro incompleto (escrita interrompida)
+    static JournalEntry decode(ByteBuffer segment, int offset, int limit) {
+        if (offset + HEADER_SIZE > limit) {
+            return null;
+        }
+        int length = segment.getInt(offset);
+        if (length < FIXED_BODY_SIZE || offset + HEADER_SIZE + length > limit) {
+            return null;
+        }
+        ByteBuffer body = segment.slice(offset + HEADER_SIZE, length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+            return null;
+        }
+
+        long sequence = body.getLong();
+        Instant timestamp = Instant.ofEpochMilli(body.getLong());
+        JournalEntryType type = TYPES[body.get()];
+        long id = body.getLong();
+        PaymentStatus previousStatus = status(body.get());
+        PaymentStatus newStatus = status(body.get());
+        long unscaledAmount = body.getLong();
+        byte scale = body.get();
+        return new JournalEntry(sequence, timestamp, type, id >= 0 ? id : null, getString(body),
+                previousStatus, newStatus, scale >= 0 ? BigDecimal.valueOf(unscaledAmount, scale) : null,
+                getString(body), getString(body), getString(body));
+    }
+
+    static int size(ByteBuffer segment, int offset) {
+        return HEADER_SIZE + segment.getInt(offset);
+    }
+
+    private static byte ordinal(PaymentStatus status) {
+        return (byte) (status != null ? status.ordinal() : -1);
+    }
+
+    private static PaymentStatus status(byte ordinal) {
+        return ordinal >= 0 ? STATUSES[ordinal] : null;
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("Campo do journal excede " + (NULL_STRING - 1) + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return 2 + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_STRING);
+        } else {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
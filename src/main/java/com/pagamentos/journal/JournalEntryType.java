@@ -0,0 +1,25 @@
+package com.pagamentos.journal;
+
+import com.pagamentos.model.PaymentStatus;
+
+// Gravado pelo ordinal: novos tipos só entram no fim
+public enum JournalEntryType {
+    CREATED,
+    SUCCEEDED,
+    FAILED,
+    REFUNDED,
+    STATUS_CHANGED,
+    WEBHOOK_RECEIVED;
+
+    static JournalEntryType of(PaymentStatus previousStatus, PaymentStatus newStatus) {
+        if (previousStatus == null) {
+            return CREATED;
+        }
+        return switch (newStatus) {
+            case SUCCESS -> SUCCEEDED;
+            case FAILED -> FAILED;
+            case REFUNDED, PARTIALLY_REFUNDED -> REFUNDED;
+            default -> STATUS_CHANGED;
+        };
+    }
+}
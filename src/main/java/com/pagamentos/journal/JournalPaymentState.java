@@ -0,0 +1,27 @@
+package com.pagamentos.journal;
+
+import com.pagamentos.model.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// Estado de um pagamento reconstruído só a partir do journal
+public record JournalPaymentState(Long id, String paymentId, PaymentStatus status, BigDecimal amount,
+                                  String currency, String gateway, int transitions, int webhooksReceived,
+                                  long lastSequence, Instant updatedAt) {
+
+    static JournalPaymentState of(JournalEntry entry) {
+        return new JournalPaymentState(entry.id(), entry.paymentId(), entry.newStatus(), entry.amount(),
+                entry.currency(), entry.gateway(), 1, 0, entry.sequence(), entry.timestamp());
+    }
+
+    JournalPaymentState apply(JournalEntry entry) {
+        if (entry.type() == JournalEntryType.WEBHOOK_RECEIVED) {
+            return new JournalPaymentState(id, paymentId, status, amount, currency, gateway,
+                    transitions, webhooksReceived + 1, entry.sequence(), entry.timestamp());
+        }
+        // O paymentId muda de pending_... para o ID do gateway na confirmação
+        return new JournalPaymentState(id, entry.paymentId(), entry.newStatus(), entry.amount(),
+                entry.currency(), entry.gateway(), transitions + 1, webhooksReceived, entry.sequence(), entry.timestamp());
+    }
+}
@@ -0,0 +1,146 @@
+package com.pagamentos.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Arquivo de tamanho fixo mapeado em memória, nomeado pela primeira sequência que contém.
+// O arquivo nasce zerado: um tamanho zero no cabeçalho marca o fim dos registros.
+final class JournalSegment {
+
+    static final String SUFFIX = ".journal";
+
+    private final Path path;
+    private final long firstSequence;
+    private final MappedByteBuffer buffer;
+    private int position;
+    private int forcedPosition;
+    private long lastSequence;
+
+    private JournalSegment(Path path, long firstSequence, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.buffer = buffer;
+        this.lastSequence = firstSequence - 1;
+    }
+
+    static JournalSegment create(Path directory, long firstSequence, int size) throws IOException {
+        Path path = directory.resolve(fileName(firstSequence));
+        // O mapeamento estende o arquivo até size; a área nova vem zerada
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            JournalSegment segment = new JournalSegment(path, firstSequence, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            // Metadados (tamanho) em disco antes dos primeiros registros; depois só o msync dos dados
+            channel.force(true);
+            return segment;
+        }
+    }
+
+    // Reabre o último segmento e continua depois do último registro íntegro. O que vier depois dele
+    // (registro cortado por uma queda) é apagado para não ser confundido com dados na próxima leitura.
+    static JournalSegment recover(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            JournalSegment segment = new JournalSegment(path, firstSequence(path),
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            segment.position = scan(segment.buffer, segment.buffer.capacity(), segment.firstSequence,
+                    entry -> segment.lastSequence = entry.sequence());
+            segment.forcedPosition = segment.position;
+            segment.clearTail();
+            return segment;
+        }
+    }
+
+    static void read(Path path, int limit, Consumer<JournalEntry> consumer) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            scan(buffer, Math.min(limit, buffer.capacity()), firstSequence(path), consumer);
+        } catch (NoSuchFileException e) {
+            // Removido pela retenção depois que a leitura listou os segmentos
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao ler o segmento do journal " + path, e);
+        }
+    }
+
+    static long firstSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    boolean tryAppend(byte[] record) {
+        if (position + record.length > buffer.capacity()) {
+            return false;
+        }
+        buffer.put(position, record);
+        position += record.length;
+        return true;
+    }
+
+    // msync só do trecho ainda não gravado em disco
+    synchronized void force(int end) {
+        if (end > forcedPosition) {
+            buffer.force(forcedPosition, end - forcedPosition);
+            forcedPosition = end;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    void setLastSequence(long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+
+    // Uma queda pode deixar em disco páginas de registros posteriores ao primeiro registro cortado
+    private void clearTail() {
+        byte[] chunk = new byte[64 * 1024];
+        byte[] zeros = new byte[chunk.length];
+        boolean dirty = false;
+        for (int offset = position; offset < buffer.capacity(); offset += chunk.length) {
+            int length = Math.min(chunk.length, buffer.capacity() - offset);
+            buffer.get(offset, chunk, 0, length);
+            if (!Arrays.equals(chunk, 0, length, zeros, 0, length)) {
+                buffer.put(offset, zeros, 0, length);
+                dirty = true;
+            }
+        }
+        if (dirty) {
+            buffer.force();
+        }
+    }
+
+    // Para no primeiro registro ausente, corrompido ou fora de sequência; devolve o offset onde parou
+    private static int scan(MappedByteBuffer buffer, int limit, long firstSequence, Consumer<JournalEntry> consumer) {
+        int offset = 0;
+        long expected = firstSequence;
+        JournalEntry entry;
+        while ((entry = JournalEntry.decode(buffer, offset, limit)) != null && entry.sequence() == expected) {
+            consumer.accept(entry);
+            offset += JournalEntry.size(buffer, offset);
+            expected++;
+        }
+        return offset;
+    }
+
+    private static String fileName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SUFFIX);
+    }
+}
@@ -0,0 +1,373 @@
+package com.pagamentos.journal;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.PaymentStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Trilha de auditoria append-only de todas as transições de status e webhooks recebidos, fora do banco.
+// Os registros são copiados para segmentos mapeados em memória; uma thread faz o fsync em grupo:
+// tudo o que chegou enquanto o fsync anterior rodava vai para disco no mesmo msync.
+@Component
+@ConditionalOnProperty(name = "app.payment.journal.enabled", havingValue = "true")
+@Slf4j
+public class PaymentJournal {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean awaitDurable;
+    private final Duration retention;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final List<Path> sealedSegments = new ArrayList<>();
+    private final Thread flusher;
+
+    private JournalSegment current;
+    private long lastSequence;
+    private long durableSequence;
+    private boolean running = true;
+
+    public PaymentJournal(@Value("${app.payment.journal.directory:journal}") Path directory,
+                          @Value("${app.payment.journal.segment-size:64MB}") DataSize segmentSize,
+                          @Value("${app.payment.journal.await-durable:true}") boolean awaitDurable,
+                          @Value("${app.payment.journal.retention:P365D}") Duration retention) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.awaitDurable = awaitDurable;
+        this.retention = retention;
+
+        Files.createDirectories(directory);
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(JournalSegment::isSegment).sorted().toList();
+        }
+        if (segments.isEmpty()) {
+            current = JournalSegment.create(directory, 1, this.segmentSize);
+        } else {
+            sealedSegments.addAll(segments.subList(0, segments.size() - 1));
+            current = JournalSegment.recover(segments.get(segments.size() - 1));
+        }
+        lastSequence = current.getLastSequence();
+        durableSequence = lastSequence;
+        log.info("Journal de pagamentos aberto em {} na sequência {}", directory, lastSequence);
+
+        flusher = Thread.ofPlatform().name("payment-journal-flusher").daemon().start(this::flushLoop);
+    }
+
+    // Só transições efetivadas entram na trilha. Dentro de uma transação os registros ficam guardados até
+    // o commit e são gravados juntos, com uma única espera pelo fsync: um lote de 500 linhas não vira
+    // 500 fsyncs em série. Fora de transação a alteração já está no banco e é gravada na hora
+    @EventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        JournalEntry entry = JournalEntry.transition(event);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(List.of(entry));
+            return;
+        }
+        TransactionEntries entries = (TransactionEntries) TransactionSynchronizationManager.getResource(this);
+        if (entries == null) {
+            entries = new TransactionEntries();
+            TransactionSynchronizationManager.bindResource(this, entries);
+            TransactionSynchronizationManager.registerSynchronization(entries);
+        }
+        entries.add(entry);
+    }
+
+    public void recordWebhook(String eventId, String eventType, String paymentId, PaymentStatus targetStatus) {
+        record(List.of(JournalEntry.webhook(eventId, eventType, paymentId, targetStatus)));
+    }
+
+    // Devolve a sequência atribuída; com await-durable, só retorna depois do fsync que cobre o registro
+    public long append(JournalEntry entry) {
+        return appendAll(List.of(entry));
+    }
+
+    // Sequências contínuas para todos os registros; devolve a última. Com await-durable, espera um único
+    // fsync que cobre o lote inteiro
+    public long appendAll(List<JournalEntry> entries) {
+        List<byte[]> records = entries.stream().map(JournalEntry::encode).toList();
+        long sequence;
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Journal de pagamentos fechado");
+            }
+            for (byte[] record : records) {
+                write(record);
+            }
+            sequence = lastSequence;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (awaitDurable) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    public void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            // Se a thread de fsync parou por erro de disco, não há mais o que esperar
+            while (durableSequence < sequence && flusher.isAlive()) {
+                flushed.await(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Percorre os registros a partir de fromSequence, em ordem. Segmentos anteriores a fromSequence
+    // não são abertos; no segmento atual, lê só o que já estava gravado no início da leitura
+    public void replay(long fromSequence, Consumer<JournalEntry> consumer) {
+        List<Path> segments;
+        Path active;
+        int activeLimit;
+        lock.lock();
+        try {
+            segments = new ArrayList<>(sealedSegments);
+            active = current.getPath();
+            activeLimit = current.getPosition();
+        } finally {
+            lock.unlock();
+        }
+        segments.add(active);
+
+        Consumer<JournalEntry> filtered = entry -> {
+            if (entry.sequence() >= fromSequence) {
+                consumer.accept(entry);
+            }
+        };
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            if (!last && JournalSegment.firstSequence(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            JournalSegment.read(segment, last ? activeLimit : Integer.MAX_VALUE, filtered);
+        }
+    }
+
+    // Estado atual de cada pagamento pelo ID
+    public Map<Long, JournalPaymentState> rebuildState() {
+        Map<Long, JournalPaymentState> states = new LinkedHashMap<>();
+        replayByPayment((id, entry) -> states.compute(id,
+                (key, state) -> state == null ? JournalPaymentState.of(entry) : state.apply(entry)));
+        return states;
+    }
+
+    public List<JournalEntry> history(Long id) {
+        List<JournalEntry> history = new ArrayList<>();
+        replayByPayment((owner, entry) -> {
+            if (owner.equals(id)) {
+                history.add(entry);
+            }
+        });
+        return history;
+    }
+
+    // Remove os segmentos fechados cuja última escrita passou da retenção. Só apaga a partir do mais
+    // antigo e para no primeiro ainda retido: a trilha que sobra continua sem lacunas
+    @Scheduled(fixedDelayString = "${app.payment.journal.retention-interval-ms:3600000}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        List<Path> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Path segment : sealedSegments) {
+                if (!Files.getLastModifiedTime(segment).toInstant().isBefore(cutoff)) {
+                    break;
+                }
+                expired.add(segment);
+            }
+            sealedSegments.subList(0, expired.size()).clear();
+        } catch (IOException e) {
+            log.warn("Erro ao verificar a retenção dos segmentos do journal em {}", directory, e);
+            return;
+        } finally {
+            lock.unlock();
+        }
+
+        for (Path segment : expired) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.warn("Erro ao remover o segmento {} do journal", segment, e);
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.info("Journal de pagamentos: {} segmentos removidos pela retenção de {}", expired.size(), retention);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        current.force(current.getPosition());
+    }
+
+    // Uma falha do journal não desfaz uma transição já efetivada no banco
+    private void record(List<JournalEntry> entries) {
+        try {
+            appendAll(entries);
+        } catch (RuntimeException e) {
+            JournalEntry first = entries.get(0);
+            log.error("Erro ao gravar no journal: {} registros, a partir de {} do pagamento {}",
+                    entries.size(), first.type(), first.paymentId(), e);
+        }
+    }
+
+    // Chamado com o lock
+    private void write(byte[] record) {
+        long sequence = lastSequence + 1;
+        JournalEntry.seal(record, sequence);
+        if (!current.tryAppend(record)) {
+            roll(sequence);
+            if (!current.tryAppend(record)) {
+                throw new IllegalArgumentException("Registro de " + record.length + " bytes maior que o segmento");
+            }
+        }
+        current.setLastSequence(sequence);
+        lastSequence = sequence;
+    }
+
+    // Webhooks só carregam o paymentId do gateway: vão para o pagamento que tinha esse paymentId
+    // quando chegaram. Webhooks de pagamentos que o journal não conhece são ignorados
+    private void replayByPayment(BiConsumer<Long, JournalEntry> consumer) {
+        Map<String, Long> idsByPaymentId = new HashMap<>();
+        replay(1, entry -> {
+            Long id = entry.id();
+            if (entry.type() == JournalEntryType.WEBHOOK_RECEIVED) {
+                id = idsByPaymentId.get(entry.paymentId());
+            } else {
+                idsByPaymentId.put(entry.paymentId(), id);
+            }
+            if (id != null) {
+                consumer.accept(id, entry);
+            }
+        });
+    }
+
+    private void flushLoop() {
+        while (true) {
+            JournalSegment segment;
+            int end;
+            long target;
+            lock.lock();
+            try {
+                while (running && durableSequence == lastSequence) {
+                    pending.awaitUninterruptibly();
+                }
+                if (durableSequence == lastSequence) {
+                    return;
+                }
+                segment = current;
+                end = current.getPosition();
+                target = lastSequence;
+            } finally {
+                lock.unlock();
+            }
+
+            // Fora do lock: novos registros continuam sendo copiados durante o fsync
+            try {
+                segment.force(end);
+            } catch (RuntimeException e) {
+                log.error("Journal de pagamentos parou de gravar em disco em {}", segment.getPath(), e);
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableSequence = target;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Chamado com o lock: o segmento cheio vai inteiro para disco antes de o próximo receber registros
+    private void roll(long nextSequence) {
+        try {
+            current.force(current.getPosition());
+            JournalSegment next = JournalSegment.create(directory, nextSequence, segmentSize);
+            sealedSegments.add(current.getPath());
+            current = next;
+            log.info("Journal de pagamentos: novo segmento {}", current.getPath().getFileName());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao criar segmento do journal em " + directory, e);
+        }
+    }
+
+    // Registros de uma transação, gravados depois do commit. Ligado à transação como recurso para ser
+    // encontrado pelos eventos seguintes; sai do thread enquanto uma transação interna (REQUIRES_NEW) roda
+    private class TransactionEntries implements TransactionSynchronization {
+
+        private final List<JournalEntry> entries = new ArrayList<>();
+
+        void add(JournalEntry entry) {
+            entries.add(entry);
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(PaymentJournal.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(PaymentJournal.this, this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PaymentJournal.this);
+            if (status == STATUS_COMMITTED) {
+                record(entries);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.pagamentos.metrics;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Métricas de negócio e do gateway, expostas em /actuator/prometheus.
+// Tempos do banco (spring.data.repository.invocations), do pool (hikaricp.*) e dos
+// endpoints (http.server.requests) vêm da auto-configuração do Spring Boot.
+@Component
+public class PaymentMetrics {
+
+    public static final String CHARGE = "charge";
+    public static final String REFUND = "refund";
+    public static final String STATUS = "status";
+
+    private final MeterRegistry registry;
+    private final AtomicInteger paymentsInFlight = new AtomicInteger();
+    private final ConcurrentMap<String, AtomicInteger> gatewayInFlight = new ConcurrentHashMap<>();
+
+    public PaymentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("payment.processing.in_flight", paymentsInFlight, AtomicInteger::get)
+                .description("Pagamentos em processamento neste nó")
+                .register(registry);
+    }
+
+    // Latência por gateway e operação; o outcome é o status devolvido ou "error"
+    public Payment recordGatewayCall(String gateway, String operation, Supplier<Payment> call) {
+        String gatewayTag = gateway.toUpperCase();
+        AtomicInteger inFlight = gatewayInFlight.computeIfAbsent(gatewayTag, this::registerInFlightGauge);
+
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        Payment result = null;
+        try {
+            result = call.get();
+            return result;
+        } finally {
+            inFlight.decrementAndGet();
+            recordGatewayTime(gatewayTag, operation, result, start);
+        }
+    }
+
+    public CompletableFuture<Payment> recordGatewayCallAsync(String gateway, String operation,
+                                                             Supplier<CompletableFuture<Payment>> call) {
+        String gatewayTag = gateway.toUpperCase();
+        AtomicInteger inFlight = gatewayInFlight.computeIfAbsent(gatewayTag, this::registerInFlightGauge);
+
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<Payment> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            recordGatewayTime(gatewayTag, operation, null, start);
+            throw e;
+        }
+        return future.whenComplete((result, error) -> {
+            inFlight.decrementAndGet();
+            recordGatewayTime(gatewayTag, operation, result, start);
+        });
+    }
+
+    public <T> T trackInFlight(Supplier<T> processing) {
+        paymentsInFlight.incrementAndGet();
+        try {
+            return processing.get();
+        } finally {
+            paymentsInFlight.decrementAndGet();
+        }
+    }
+
+    public <T> CompletableFuture<T> trackInFlightAsync(Supplier<CompletableFuture<T>> processing) {
+        paymentsInFlight.incrementAndGet();
+        try {
+            return processing.get().whenComplete((result, error) -> paymentsInFlight.decrementAndGet());
+        } catch (RuntimeException e) {
+            paymentsInFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // Estado do circuit breaker (0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN) e limite adaptativo atual
+    public void registerGatewayResilience(String gateway, Supplier<Number> circuitState, Supplier<Number> concurrencyLimit) {
+        Gauge.builder("payment.gateway.circuit.state", circuitState)
+                .description("Estado do circuit breaker do gateway")
+                .tag("gateway", gateway)
+                .register(registry);
+        Gauge.builder("payment.gateway.concurrency.limit", concurrencyLimit)
+                .description("Limite de chamadas simultâneas calculado para o gateway")
+                .tag("gateway", gateway)
+                .register(registry);
+    }
+
+    // Atraso da réplica de leitura em segundos; NaN enquanto ela está inacessível
+    public void registerReplicaLag(Supplier<Number> lagSeconds) {
+        Gauge.builder("payment.datasource.replica.lag", lagSeconds)
+                .description("Atraso da réplica de leitura medido pela batida de replicação")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    // Assinaturas de status (SSE e long-poll) abertas neste nó
+    public void registerSubscriptions(Supplier<Number> open) {
+        Gauge.builder("payment.subscriptions.open", open)
+                .description("Clientes aguardando mudança de status de pagamento")
+                .register(registry);
+    }
+
+    // Divergências corrigidas pelo reconciliador: sinal de webhooks perdidos ou fluxos interrompidos
+    public void recordReconciliation(String gateway, PaymentStatus from, PaymentStatus to) {
+        Counter.builder("payment.reconciliation.corrections")
+                .description("Pagamentos corrigidos pela reconciliação com o gateway")
+                .tags("gateway", gateway.toUpperCase(), "from", from.name(), "to", to.name())
+                .register(registry)
+                .increment();
+    }
+
+    // Conta as transições efetivadas, por status de destino, método e gateway
+    @TransactionalEventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        Counter.builder("payment.status.changes")
+                .description("Transições de status de pagamento")
+                .tags("status", event.newStatus().name(),
+                        "payment_method", String.valueOf(event.paymentMethod()),
+                        "gateway", String.valueOf(event.gateway()))
+                .register(registry)
+                .increment();
+    }
+
+    private void recordGatewayTime(String gateway, String operation, Payment result, long start) {
+        String outcome = result != null && result.getStatus() != null ? result.getStatus().name() : "error";
+        Timer.builder("payment.gateway.calls")
+                .description("Chamadas ao gateway de pagamento")
+                .tags("gateway", gateway, "operation", operation, "outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private AtomicInteger registerInFlightGauge(String gateway) {
+        AtomicInteger inFlight = new AtomicInteger();
+        Gauge.builder("payment.gateway.in_flight", inFlight, AtomicInteger::get)
+                .description("Chamadas em andamento no gateway")
+                .tag("gateway", gateway)
+                .register(registry);
+        return inFlight;
+    }
+}
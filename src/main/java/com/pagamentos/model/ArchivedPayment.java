@@ -0,0 +1,92 @@
+package com.pagamentos.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Pagamento finalizado movido de payments pelo PaymentArchive. Ficam em colunas só a chave de busca
+// e as dimensões das estatísticas; o registro completo e a resposta do gateway vão comprimidos.
+@Entity
+@Table(name = "payment_archive", indexes = {
+        @Index(name = "idx_payment_archive_payment_id", columnList = "payment_id", unique = true),
+        @Index(name = "idx_payment_archive_customer_created", columnList = "customer_id, created_at"),
+        @Index(name = "idx_payment_archive_created", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+public class ArchivedPayment {
+
+    // Mesmo ID de payments: links e referências antigas continuam válidos
+    @Id
+    private Long id;
+
+    @Column(name = "payment_id", nullable = false)
+    private String paymentId;
+
+    @Column(name = "customer_id", nullable = false)
+    private String customerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 50)
+    private PaymentStatus status;
+
+    @Column(nullable = false, length = 50)
+    private String gateway;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(name = "payment_method", nullable = false, length = 50)
+    private String paymentMethod;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "refunded_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal refundedAmount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    // JSON do Payment completo, em gzip
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] payload;
+
+    // Copiada de payment_gateway_responses sem descomprimir
+    @Lob
+    @Column(name = "gateway_response", columnDefinition = "MEDIUMBLOB")
+    private byte[] gatewayResponse;
+
+    public static ArchivedPayment of(Payment payment, String paymentJson, byte[] gatewayResponse) {
+        ArchivedPayment archived = new ArchivedPayment();
+        archived.setId(payment.getId());
+        archived.setPaymentId(payment.getPaymentId());
+        archived.setCustomerId(payment.getCustomerId());
+        archived.setStatus(payment.getStatus());
+        archived.setGateway(payment.getGateway());
+        archived.setCurrency(payment.getCurrency());
+        archived.setPaymentMethod(payment.getPaymentMethod());
+        archived.setAmount(payment.getAmount());
+        archived.setRefundedAmount(payment.getRefundedAmount());
+        archived.setCreatedAt(payment.getCreatedAt());
+        archived.setArchivedAt(LocalDateTime.now());
+        archived.setPayload(PaymentGatewayResponse.compress(paymentJson));
+        archived.setGatewayResponse(gatewayResponse);
+        return archived;
+    }
+
+    public String getPayloadAsString() {
+        return PaymentGatewayResponse.decompress(payload);
+    }
+
+    public String getGatewayResponseAsString() {
+        return gatewayResponse != null ? PaymentGatewayResponse.decompress(gatewayResponse) : null;
+    }
+}
@@ -0,0 +1,38 @@
+package com.pagamentos.model;
+
+import java.util.Locale;
+
+// Moedas aceitas pela API. A constante substitui a String da requisição em todo o fluxo:
+// um único objeto por moeda, e o código em minúsculas (formato do Stripe) já pronto.
+public enum CurrencyCode {
+
+    BRL(2),
+    USD(2),
+    EUR(2);
+
+    private final int fractionDigits;
+    private final String lowerCase;
+
+    CurrencyCode(int fractionDigits) {
+        this.fractionDigits = fractionDigits;
+        this.lowerCase = name().toLowerCase(Locale.ROOT);
+    }
+
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    public String getLowerCase() {
+        return lowerCase;
+    }
+
+    // Sem toUpperCase no caso comum: requisições e respostas do gateway já vêm em maiúsculas ou minúsculas
+    public static CurrencyCode of(String code) {
+        return switch (code) {
+            case "BRL", "brl" -> BRL;
+            case "USD", "usd" -> USD;
+            case "EUR", "eur" -> EUR;
+            default -> valueOf(code.toUpperCase(Locale.ROOT));
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.pagamentos.model;
+
+import java.math.BigDecimal;
+
+// Valor em unidades mínimas da moeda (centavos para BRL), o formato que os gateways recebem.
+// A conversão é exata: valores com mais casas decimais que a moeda são rejeitados, nunca truncados.
+public record Money(long minorUnits, CurrencyCode currency) {
+
+    public static Money of(BigDecimal amount, CurrencyCode currency) {
+        try {
+            return new Money(amount.movePointRight(currency.getFractionDigits()).longValueExact(), currency);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Valor " + amount.toPlainString() + " não é representável em "
+                    + currency + " com " + currency.getFractionDigits() + " casas decimais");
+        }
+    }
+
+    public static Money of(BigDecimal amount, String currency) {
+        return of(amount, CurrencyCode.of(currency));
+    }
+
+    public static Money ofMinor(long minorUnits, CurrencyCode currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    public BigDecimal toDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getFractionDigits());
+    }
+}
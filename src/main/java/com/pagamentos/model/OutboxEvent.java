@@ -0,0 +1,55 @@
+package com.pagamentos.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Outbox de mudanças de status: uma linha por evento e por consumidor, gravada na mesma
+// transação da mudança e publicada pelo OutboxRelay
+@Entity
+@Table(name = "payment_outbox", indexes = {
+        @Index(name = "idx_payment_outbox_pending", columnList = "consumer, status, id")
+})
+@Data
+@NoArgsConstructor
+public class OutboxEvent {
+
+    // IDs em blocos, como em payments: os INSERTs do outbox saem no mesmo batch da transação
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "payment_outbox_id")
+    @TableGenerator(name = "payment_outbox_id", table = "id_generators", pkColumnName = "name",
+            valueColumnName = "next_value", pkColumnValue = "payment_outbox", allocationSize = 100)
+    private Long id;
+
+    // Igual em todas as cópias do evento: é a chave de deduplicação do consumidor
+    @Column(name = "event_id", nullable = false, length = 36)
+    private String eventId;
+
+    @Column(nullable = false, length = 100)
+    private String consumer;
+
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    // PaymentStatusChangedEvent.sequence; nula nas linhas anteriores à coluna
+    @Column(name = "aggregate_sequence")
+    private Long aggregateSequence;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboxStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+}
@@ -0,0 +1,6 @@
+package com.pagamentos.model;
+
+public enum OutboxStatus {
+    PENDING,
+    PUBLISHED
+}
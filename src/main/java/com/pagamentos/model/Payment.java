@@ -6,18 +6,27 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_customer_created", columnList = "customer_id, created_at"),
+        @Index(name = "idx_payments_status_created", columnList = "status, created_at"),
+        @Index(name = "idx_payments_status_updated", columnList = "status, updated_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Payment {
 
+    // IDENTITY desliga o batch de INSERTs do Hibernate; a tabela reserva blocos de IDs em memória
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "payments_id")
+    @TableGenerator(name = "payments_id", table = "id_generators", pkColumnName = "name",
+            valueColumnName = "next_value", pkColumnValue = "payments", allocationSize = 100)
     private Long id;
 
+    // O UNIQUE só é removido por db/partition-payments.sql (tabela particionada exige created_at em toda chave única)
     @Column(name = "payment_id", nullable = false, unique = true)
     private String paymentId;
 
@@ -30,6 +39,10 @@ public class Payment {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal amount;
 
+    // Soma dos reembolsos concluídos e em andamento (reservados antes da chamada ao gateway)
+    @Column(name = "refunded_amount", nullable = false, precision = 19, scale = 2)
+    private BigDecimal refundedAmount = BigDecimal.ZERO;
+
     @Column(nullable = false, length = 3)
     private String currency = "BRL";
 
@@ -46,7 +59,8 @@ public class Payment {
     @Column(length = 500)
     private String description;
 
-    @Column(name = "gateway_response", columnDefinition = "TEXT")
+    // Persistida em payment_gateway_responses; aqui apenas transporta a resposta do gateway
+    @Transient
     private String gatewayResponse;
 
     @Column(name = "created_at", nullable = false)
@@ -58,9 +72,17 @@ public class Payment {
     @Column(name = "processed_at")
     private LocalDateTime processedAt;
 
+    // Lock otimista: duas reservas de reembolso no mesmo pagamento conflitam no commit
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // Mesma precisão da coluna, para que o cursor (createdAt, id) compare igual ao valor gravado
+        createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        // Preenchido já no INSERT: o reconciliador varre por (status, updated_at)
+        updatedAt = createdAt;
         if (status == null) {
             status = PaymentStatus.PENDING;
         }
@@ -70,4 +92,8 @@ public class Payment {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
+
+    public Money toMoney() {
+        return Money.of(amount, currency);
+    }
 }
\ No newline at end of file
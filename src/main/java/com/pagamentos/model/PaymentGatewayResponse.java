@@ -0,0 +1,81 @@
+package com.pagamentos.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Resposta bruta do gateway, separada da tabela payments e gravada comprimida.
+// Só é lida quando alguém pede explicitamente.
+@Entity
+@Table(name = "payment_gateway_responses")
+@Data
+@NoArgsConstructor
+public class PaymentGatewayResponse implements Persistable<Long> {
+
+    // Mesmo ID do pagamento
+    @Id
+    private Long id;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] payload;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Gravada uma única vez por pagamento: INSERT direto, sem o SELECT do merge
+    @Transient
+    private boolean newRecord = true;
+
+    public static PaymentGatewayResponse of(Long paymentId, String response) {
+        PaymentGatewayResponse gatewayResponse = new PaymentGatewayResponse();
+        gatewayResponse.setId(paymentId);
+        gatewayResponse.setPayload(compress(response));
+        gatewayResponse.setUpdatedAt(LocalDateTime.now());
+        return gatewayResponse;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        newRecord = false;
+    }
+
+    public String getPayloadAsString() {
+        return decompress(payload);
+    }
+
+    // Compartilhados com ArchivedPayment, que guarda o mesmo formato
+    static String decompress(byte[] payload) {
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static byte[] compress(String response) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(response.length() / 4 + 32);
+        try (GZIPOutputStream output = new GZIPOutputStream(buffer)) {
+            output.write(response.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
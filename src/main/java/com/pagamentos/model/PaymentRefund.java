@@ -0,0 +1,60 @@
+package com.pagamentos.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Razão de reembolsos: uma linha por pedido de reembolso, criada PENDING antes da chamada ao gateway
+@Entity
+@Table(name = "payment_refunds", indexes = {
+        @Index(name = "idx_payment_refunds_payment", columnList = "original_payment_id, status"),
+        @Index(name = "idx_payment_refunds_status_created", columnList = "status, created_at")
+})
+@Data
+@NoArgsConstructor
+public class PaymentRefund {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "payment_refunds_id")
+    @TableGenerator(name = "payment_refunds_id", table = "id_generators", pkColumnName = "name",
+            valueColumnName = "next_value", pkColumnValue = "payment_refunds", allocationSize = 100)
+    private Long id;
+
+    // payments.id do pagamento reembolsado
+    @Column(name = "original_payment_id", nullable = false)
+    private Long originalPaymentId;
+
+    // ID da charge no gateway, enviado na chamada de reembolso
+    @Column(name = "charge_id", nullable = false)
+    private String chargeId;
+
+    @Column(nullable = false, length = 50)
+    private String gateway;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    // Moeda do pagamento original, para enviar o valor em unidades mínimas ao gateway
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(length = 500)
+    private String reason;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RefundStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public Money toMoney() {
+        return Money.of(amount, currency);
+    }
+}
@@ -6,6 +6,25 @@ public enum PaymentStatus {
     SUCCESS,
     FAILED,
     REFUNDED,
+    PARTIALLY_REFUNDED,
     CANCELLED,
-    REQUIRES_ACTION
-}
\ No newline at end of file
+    REQUIRES_ACTION;
+
+    // Transições aceitas de eventos externos (webhooks, reconciliação); evita regressões
+    // como um "succeeded" atrasado desfazendo um reembolso
+    public boolean canTransitionTo(PaymentStatus next) {
+        return switch (this) {
+            case PENDING -> next != PENDING;
+            case PROCESSING -> next == SUCCESS || next == FAILED || next == CANCELLED || next == REQUIRES_ACTION;
+            case REQUIRES_ACTION -> next == PROCESSING || next == SUCCESS || next == FAILED || next == CANCELLED;
+            case SUCCESS -> next == REFUNDED || next == PARTIALLY_REFUNDED;
+            case PARTIALLY_REFUNDED -> next == REFUNDED;
+            case FAILED -> next == SUCCESS;
+            case REFUNDED, CANCELLED -> false;
+        };
+    }
+
+    public boolean isRefundable() {
+        return this == SUCCESS || this == PARTIALLY_REFUNDED;
+    }
+}
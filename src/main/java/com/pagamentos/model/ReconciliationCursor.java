@@ -0,0 +1,30 @@
+package com.pagamentos.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Posição do PaymentReconciler em cada status, para retomar a varredura depois de um restart
+@Entity
+@Table(name = "reconciliation_cursors")
+@Data
+@NoArgsConstructor
+public class ReconciliationCursor {
+
+    // Nome do status varrido
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    // Último (updated_at, id) visto; a próxima página começa logo depois
+    @Column(name = "last_updated_at", nullable = false)
+    private LocalDateTime lastUpdatedAt;
+
+    @Column(name = "last_id", nullable = false)
+    private long lastId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,7 @@
+package com.pagamentos.model;
+
+public enum RefundStatus {
+    PENDING,
+    SUCCEEDED,
+    FAILED
+}
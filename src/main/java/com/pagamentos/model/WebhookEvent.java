@@ -0,0 +1,75 @@
+package com.pagamentos.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+// Fila durável de webhooks: gravada no recebimento e consumida pelo WebhookEventProcessor
+@Entity
+@Table(name = "webhook_events", indexes = {
+        @Index(name = "idx_webhook_events_pending", columnList = "status, partition_key, available_at")
+})
+@Data
+@NoArgsConstructor
+public class WebhookEvent implements Persistable<String> {
+
+    // ID do evento no Stripe: a chave primária descarta reenvios duplicados
+    @Id
+    @Column(name = "event_id", length = 255)
+    private String eventId;
+
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    @Column(name = "payment_id", nullable = false)
+    private String paymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_status", nullable = false, length = 50)
+    private PaymentStatus targetStatus;
+
+    // Eventos de um mesmo pagamento caem sempre na mesma partição e são aplicados em ordem
+    @Column(name = "partition_key", nullable = false)
+    private int partitionKey;
+
+    @Column(name = "event_created", nullable = false)
+    private long eventCreated;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private WebhookEventStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @Transient
+    private boolean newRecord = true;
+
+    @Override
+    public String getId() {
+        return eventId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        newRecord = false;
+    }
+}
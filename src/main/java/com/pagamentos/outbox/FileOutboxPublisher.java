@@ -0,0 +1,72 @@
+package com.pagamentos.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Publica os eventos como NDJSON num arquivo local (uma linha por evento), útil para
+// desenvolvimento e para integrar consumidores que leem arquivos
+@Component
+@ConditionalOnProperty(name = "app.outbox.file.enabled", havingValue = "true")
+@Slf4j
+public class FileOutboxPublisher implements OutboxPublisher {
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+
+    public FileOutboxPublisher(ObjectMapper objectMapper,
+                               @Value("${app.outbox.file.path:outbox/payment-events.ndjson}") Path path) {
+        this.objectMapper = objectMapper;
+        this.path = path;
+    }
+
+    @Override
+    public String name() {
+        return "file";
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxMessage> messages) {
+        StringBuilder lines = new StringBuilder(messages.size() * 512);
+        try {
+            for (OutboxMessage message : messages) {
+                ObjectNode line = objectMapper.createObjectNode()
+                        .put("eventId", message.eventId())
+                        .put("eventType", message.eventType())
+                        .put("aggregateId", message.aggregateId())
+                        .put("aggregateSequence", message.aggregateSequence())
+                        .put("createdAt", message.createdAt().toString());
+                line.set("payload", objectMapper.readTree(message.payload()));
+                lines.append(objectMapper.writeValueAsString(line)).append('\n');
+            }
+
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            // Um write e um fsync por lote: o lote só é confirmado no outbox depois de estar em disco
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao gravar eventos do outbox em " + path, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.pagamentos.outbox;
+
+import java.time.LocalDateTime;
+
+// eventId é o mesmo em todas as entregas do evento: o consumidor descarta o que já recebeu.
+// A ordem de entrega não é garantida entre eventos do mesmo pagamento: o consumidor guarda o maior
+// aggregateSequence visto por aggregateId e descarta os eventos com sequência menor
+public record OutboxMessage(
+        String eventId,
+        String eventType,
+        Long aggregateId,
+        Long aggregateSequence,
+        String payload,
+        LocalDateTime createdAt) {
+}
@@ -0,0 +1,14 @@
+package com.pagamentos.outbox;
+
+import java.util.List;
+
+// Destino dos eventos do outbox. Cada publisher é um consumidor com fila própria na tabela
+// payment_outbox; um lote pode ser reentregue se a confirmação falhar depois do publish, e eventos
+// do mesmo pagamento podem chegar fora de ordem (ver OutboxMessage.aggregateSequence).
+public interface OutboxPublisher {
+
+    String name();
+
+    // Lança exceção para que o lote inteiro seja tentado de novo
+    void publish(List<OutboxMessage> messages);
+}
@@ -0,0 +1,138 @@
+package com.pagamentos.outbox;
+
+import com.pagamentos.model.OutboxEvent;
+import com.pagamentos.repository.OutboxEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Drena o outbox em lotes, um worker por consumidor. O lote fica travado (SKIP LOCKED) enquanto
+// é publicado e só é marcado como PUBLISHED na mesma transação: um lote que falha volta inteiro
+// para a fila sem atrasar os outros consumidores. A entrega é pelo menos uma vez e sem ordem garantida:
+// com vários nós, outro relay publica o lote seguinte enquanto este está travado, e os IDs em bloco
+// não seguem a ordem de commit. O consumidor ordena pelo aggregateSequence de cada pagamento.
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final List<OutboxPublisher> publishers;
+    private final Map<String, Instant> retryAt = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+
+    @Value("${app.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.outbox.retry-delay:PT5S}")
+    private Duration retryDelay;
+
+    @Value("${app.outbox.retention:P7D}")
+    private Duration retention;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       JdbcTemplate jdbcTemplate,
+                       TransactionTemplate transactionTemplate,
+                       List<OutboxPublisher> publishers) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.publishers = publishers;
+        this.workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("outbox-relay-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:200}")
+    public void relay() {
+        List<Future<?>> running = new ArrayList<>(publishers.size());
+        for (OutboxPublisher publisher : publishers) {
+            running.add(workers.submit(() -> drain(publisher)));
+        }
+
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("Erro ao publicar eventos do outbox: {}", e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.cleanup-interval-ms:3600000}")
+    public void purgePublished() {
+        int removed = outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minus(retention));
+        if (removed > 0) {
+            log.info("Removidos {} eventos publicados do outbox", removed);
+        }
+    }
+
+    private void drain(OutboxPublisher publisher) {
+        Instant next = retryAt.get(publisher.name());
+        if (next != null && Instant.now().isBefore(next)) {
+            return;
+        }
+
+        Integer published;
+        try {
+            do {
+                published = transactionTemplate.execute(status -> publishBatch(publisher));
+            } while (published != null && published == batchSize);
+            retryAt.remove(publisher.name());
+        } catch (RuntimeException e) {
+            // Rollback devolve o lote à fila; a próxima tentativa recomeça pelo mesmo evento
+            retryAt.put(publisher.name(), Instant.now().plus(retryDelay));
+            log.warn("Falha ao publicar outbox para {}, nova tentativa em {}: {}",
+                    publisher.name(), retryDelay, e.getMessage());
+        }
+    }
+
+    private int publishBatch(OutboxPublisher publisher) {
+        List<OutboxEvent> events = outboxEventRepository.lockPending(publisher.name(), Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        publisher.publish(events.stream()
+                .map(event -> new OutboxMessage(event.getEventId(), event.getEventType(),
+                        event.getAggregateId(), event.getAggregateSequence(), event.getPayload(),
+                        event.getCreatedAt()))
+                .toList());
+
+        Timestamp publishedAt = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "UPDATE payment_outbox SET status = 'PUBLISHED', published_at = ? WHERE id = ?",
+                events, events.size(), (ps, event) -> {
+                    ps.setTimestamp(1, publishedAt);
+                    ps.setLong(2, event.getId());
+                });
+
+        log.debug("Outbox: {} eventos publicados para {}", events.size(), publisher.name());
+        return events.size();
+    }
+}
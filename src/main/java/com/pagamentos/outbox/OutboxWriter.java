@@ -0,0 +1,72 @@
+package com.pagamentos.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.OutboxEvent;
+import com.pagamentos.model.OutboxStatus;
+import com.pagamentos.repository.OutboxEventRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Grava o evento no outbox dentro da transação que mudou o status: se ela sofrer rollback,
+// o evento some junto; se commitar, o OutboxRelay garante a entrega
+@Component
+public class OutboxWriter {
+
+    public static final String STATUS_CHANGED = "PAYMENT_STATUS_CHANGED";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final List<String> consumers;
+
+    public OutboxWriter(OutboxEventRepository outboxEventRepository,
+                        ObjectMapper objectMapper,
+                        List<OutboxPublisher> publishers) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.consumers = publishers.stream().map(OutboxPublisher::name).toList();
+    }
+
+    // MANDATORY: uma mudança de status publicada fora de transação é erro de programação
+    @EventListener
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        if (consumers.isEmpty() || event.previousStatus() == event.newStatus()) {
+            return;
+        }
+
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Erro ao serializar evento do pagamento " + event.id(), e);
+        }
+
+        // Uma linha por consumidor: cada um avança na sua fila sem depender dos outros.
+        // Os INSERTs entram no batch do flush da transação (IDs em bloco, order_inserts)
+        String eventId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> rows = new ArrayList<>(consumers.size());
+        for (String consumer : consumers) {
+            OutboxEvent row = new OutboxEvent();
+            row.setEventId(eventId);
+            row.setConsumer(consumer);
+            row.setEventType(STATUS_CHANGED);
+            row.setAggregateId(event.id());
+            row.setAggregateSequence(event.sequence());
+            row.setPayload(payload);
+            row.setStatus(OutboxStatus.PENDING);
+            row.setCreatedAt(now);
+            rows.add(row);
+        }
+        outboxEventRepository.saveAll(rows);
+    }
+}
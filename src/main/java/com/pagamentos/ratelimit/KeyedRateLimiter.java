@@ -0,0 +1,34 @@
+package com.pagamentos.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// Um balde por chave, em memória limitada: chaves ociosas expiram e o total é limitado por maxKeys.
+// Uma chave removida volta com o balde cheio, o que só concede a rajada inicial de novo.
+class KeyedRateLimiter {
+
+    private final Cache<String, TokenBucket> buckets;
+    private final Function<String, TokenBucket> factory;
+
+    KeyedRateLimiter(Function<String, TokenBucket> factory, long maxKeys, Duration idleTimeout) {
+        this.factory = factory;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout)
+                // Manutenção do cache no próprio chamador: nada de tarefas no ForkJoinPool comum
+                .executor(Runnable::run)
+                .build();
+    }
+
+    long tryAcquire(String key) {
+        return buckets.get(key, factory).tryAcquire(System.nanoTime());
+    }
+
+    long size() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
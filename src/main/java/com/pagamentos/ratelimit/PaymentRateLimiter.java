@@ -0,0 +1,62 @@
+package com.pagamentos.ratelimit;
+
+import com.pagamentos.exception.RateLimitExceededException;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Limites de requisições por cliente (protege o pool do banco de uma integração abusiva)
+// e por gateway (protege a cota do gateway para todos os clientes)
+@Component
+public class PaymentRateLimiter {
+
+    private static final String PREFIX = "app.rate-limit.";
+
+    private final boolean enabled;
+    private final KeyedRateLimiter customers;
+    private final KeyedRateLimiter gateways;
+
+    public PaymentRateLimiter(Environment environment) {
+        this.enabled = environment.getProperty(PREFIX + "enabled", Boolean.class, true);
+        long maxKeys = environment.getProperty(PREFIX + "max-keys", Long.class, 100_000L);
+        Duration idleTimeout = DurationStyle.detectAndParse(environment.getProperty(PREFIX + "idle-timeout", "PT10M"));
+
+        double customerRate = environment.getProperty(PREFIX + "customer.requests-per-second", Double.class, 10.0);
+        int customerBurst = environment.getProperty(PREFIX + "customer.burst", Integer.class, 20);
+        this.customers = new KeyedRateLimiter(key -> new TokenBucket(customerRate, customerBurst), maxKeys, idleTimeout);
+
+        // app.rate-limit.gateway.<gateway>.* sobrescreve o padrão de app.rate-limit.gateway.*
+        double gatewayRate = environment.getProperty(PREFIX + "gateway.requests-per-second", Double.class, 100.0);
+        int gatewayBurst = environment.getProperty(PREFIX + "gateway.burst", Integer.class, 100);
+        this.gateways = new KeyedRateLimiter(gateway -> {
+            String prefix = PREFIX + "gateway." + gateway.toLowerCase() + ".";
+            return new TokenBucket(
+                    environment.getProperty(prefix + "requests-per-second", Double.class, gatewayRate),
+                    environment.getProperty(prefix + "burst", Integer.class, gatewayBurst));
+        }, maxKeys, idleTimeout);
+    }
+
+    public void checkCustomer(String customerId) {
+        if (!enabled) {
+            return;
+        }
+        long waitNanos = customers.tryAcquire(customerId);
+        if (waitNanos > 0) {
+            throw new RateLimitExceededException("Limite de requisições excedido para o cliente " + customerId,
+                    Duration.ofNanos(waitNanos));
+        }
+    }
+
+    public void checkGateway(String gateway) {
+        if (!enabled) {
+            return;
+        }
+        long waitNanos = gateways.tryAcquire(gateway.toUpperCase());
+        if (waitNanos > 0) {
+            throw new RateLimitExceededException("Limite de requisições excedido para o gateway " + gateway,
+                    Duration.ofNanos(waitNanos));
+        }
+    }
+}
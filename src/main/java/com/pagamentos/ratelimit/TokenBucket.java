@@ -0,0 +1,33 @@
+package com.pagamentos.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket na formulação GCRA: o estado inteiro é um único long (o instante teórico da
+// próxima chegada), atualizado com CAS. Sem lock e sem thread de reabastecimento.
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    // burst = tokens disponíveis com o balde cheio; ratePerSecond = reabastecimento
+    TokenBucket(double ratePerSecond, int burst) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.toleranceNanos = intervalNanos * Math.max(1, burst);
+    }
+
+    // 0 quando o token foi consumido; senão, quantos nanos esperar até haver um token
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long backlog = next - nowNanos;
+            if (backlog > toleranceNanos) {
+                return backlog - toleranceNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.ArchivedPayment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ArchivedPaymentRepository extends JpaRepository<ArchivedPayment, Long> {
+
+    Optional<ArchivedPayment> findByPaymentId(String paymentId);
+
+    // Mesma forma de PaymentRepository.aggregateByDimensions: os totais somam as duas tabelas
+    @Query("SELECT a.status AS status, a.gateway AS gateway, a.currency AS currency, " +
+            "a.paymentMethod AS paymentMethod, COUNT(a) AS totalCount, SUM(a.amount) AS totalAmount " +
+            "FROM ArchivedPayment a GROUP BY a.status, a.gateway, a.currency, a.paymentMethod")
+    List<PaymentAggregate> aggregateByDimensions();
+}
@@ -0,0 +1,33 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // SKIP LOCKED (-2): vários nós drenam o outbox do mesmo consumidor sem disputar as mesmas linhas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e WHERE e.consumer = :consumer " +
+            "AND e.status = com.pagamentos.model.OutboxStatus.PENDING ORDER BY e.id ASC")
+    List<OutboxEvent> lockPending(String consumer, Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = com.pagamentos.model.OutboxStatus.PUBLISHED " +
+            "AND e.publishedAt < :before")
+    int deletePublishedBefore(LocalDateTime before);
+}
@@ -0,0 +1,20 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.PaymentStatus;
+
+import java.math.BigDecimal;
+
+public interface PaymentAggregate {
+
+    PaymentStatus getStatus();
+
+    String getGateway();
+
+    String getCurrency();
+
+    String getPaymentMethod();
+
+    Long getTotalCount();
+
+    BigDecimal getTotalAmount();
+}
@@ -0,0 +1,9 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.PaymentGatewayResponse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PaymentGatewayResponseRepository extends JpaRepository<PaymentGatewayResponse, Long> {
+}
@@ -0,0 +1,24 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.PaymentRefund;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentRefundRepository extends JpaRepository<PaymentRefund, Long> {
+
+    @Query("SELECT COALESCE(SUM(r.amount), 0) FROM PaymentRefund r WHERE r.originalPaymentId = :originalPaymentId " +
+            "AND r.status = com.pagamentos.model.RefundStatus.SUCCEEDED")
+    BigDecimal sumSucceeded(Long originalPaymentId);
+
+    // Reservas sem desfecho, das mais antigas para as mais novas (idx_payment_refunds_status_created)
+    @Query("SELECT r FROM PaymentRefund r WHERE r.status = com.pagamentos.model.RefundStatus.PENDING " +
+            "AND r.createdAt < :before ORDER BY r.createdAt ASC, r.id ASC")
+    List<PaymentRefund> findPendingBefore(LocalDateTime before, Limit limit);
+}
@@ -1,22 +1,133 @@
 package com.pagamentos.repository;
 
+import com.pagamentos.dto.PaymentResponseDTO;
 import com.pagamentos.model.Payment;
 import com.pagamentos.model.PaymentStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
+    // Projeção das colunas exibidas na API, sem hidratar a entidade
+    String SELECT_RESPONSE = "SELECT new com.pagamentos.dto.PaymentResponseDTO(p.id, p.paymentId, p.customerId, " +
+            "p.customerEmail, p.amount, p.currency, p.paymentMethod, p.status, p.gateway, p.description, " +
+            "p.createdAt) FROM Payment p ";
+
     Optional<Payment> findByPaymentId(String paymentId);
 
+    // Só o cliente, para o rate limit do reembolso antes de reservar o valor
+    @Query("SELECT p.customerId FROM Payment p WHERE p.paymentId = :paymentId")
+    Optional<String> findCustomerIdByPaymentId(String paymentId);
+
+    // Incrementa a versão no commit mesmo sem alteração: quem decide a partir do estado lido
+    // (ex: soma dos reembolsos) conflita com qualquer escrita concorrente no mesmo pagamento
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("SELECT p FROM Payment p WHERE p.id = :id")
+    Optional<Payment> findByIdForceIncrement(Long id);
+
     List<Payment> findByCustomerId(String customerId);
 
     List<Payment> findByStatus(PaymentStatus status);
 
+    @Query(SELECT_RESPONSE + "WHERE p.id = :id")
+    Optional<PaymentResponseDTO> findResponseById(Long id);
+
+    @Query(SELECT_RESPONSE + "WHERE p.paymentId = :paymentId")
+    Optional<PaymentResponseDTO> findResponseByPaymentId(String paymentId);
+
+    @Query(SELECT_RESPONSE + "WHERE p.id IN :ids")
+    List<PaymentResponseDTO> findResponsesByIdIn(Collection<Long> ids);
+
+    @Query(SELECT_RESPONSE + "WHERE p.customerId = :customerId")
+    List<PaymentResponseDTO> findResponsesByCustomerId(String customerId);
+
+    @Query(SELECT_RESPONSE + "WHERE p.status = :status")
+    List<PaymentResponseDTO> findResponsesByStatus(PaymentStatus status);
+
+    @Query(SELECT_RESPONSE + "WHERE p.customerId = :customerId ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentResponseDTO> findFirstPageByCustomerId(String customerId, Limit limit);
+
+    @Query(SELECT_RESPONSE + "WHERE p.customerId = :customerId " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentResponseDTO> findPageByCustomerIdAfter(String customerId, LocalDateTime createdAt, Long id, Limit limit);
+
+    @Query(SELECT_RESPONSE + "WHERE p.status = :status ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentResponseDTO> findFirstPageByStatus(PaymentStatus status, Limit limit);
+
+    @Query(SELECT_RESPONSE + "WHERE p.status = :status " +
+            "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+            "ORDER BY p.createdAt DESC, p.id DESC")
+    List<PaymentResponseDTO> findPageByStatusAfter(PaymentStatus status, LocalDateTime createdAt, Long id, Limit limit);
+
+    // Cursor JDBC com fetch size: as linhas chegam aos poucos em vez de materializar o resultado
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_RESPONSE + "WHERE p.customerId = :customerId ORDER BY p.createdAt DESC, p.id DESC")
+    Stream<PaymentResponseDTO> streamByCustomerId(String customerId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_RESPONSE + "WHERE p.status = :status ORDER BY p.createdAt DESC, p.id DESC")
+    Stream<PaymentResponseDTO> streamByStatus(PaymentStatus status);
+
+    // Somente leitura: alterações na entidade não geram UPDATE no flush
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<Payment> findByPaymentIdIn(Collection<String> paymentIds);
+
     List<Payment> findByGatewayAndStatus(String gateway, PaymentStatus status);
 
     boolean existsByPaymentId(String paymentId);
+
+    @Query("SELECT p.status AS status, p.gateway AS gateway, p.currency AS currency, " +
+            "p.paymentMethod AS paymentMethod, COUNT(p) AS totalCount, SUM(p.amount) AS totalAmount " +
+            "FROM Payment p GROUP BY p.status, p.gateway, p.currency, p.paymentMethod")
+    List<PaymentAggregate> aggregateByDimensions();
+
+    @Query("SELECT extract(date from p.createdAt) AS day, 0 AS hour, 0 AS minute, p.status AS status, " +
+            "COUNT(p) AS totalCount, SUM(p.amount) AS totalAmount FROM Payment p " +
+            "WHERE p.createdAt >= :since GROUP BY extract(date from p.createdAt), p.status")
+    List<PaymentTimeAggregate> aggregateByDay(LocalDateTime since);
+
+    @Query("SELECT extract(date from p.createdAt) AS day, extract(hour from p.createdAt) AS hour, 0 AS minute, " +
+            "p.status AS status, COUNT(p) AS totalCount, SUM(p.amount) AS totalAmount FROM Payment p " +
+            "WHERE p.createdAt >= :since " +
+            "GROUP BY extract(date from p.createdAt), extract(hour from p.createdAt), p.status")
+    List<PaymentTimeAggregate> aggregateByHour(LocalDateTime since);
+
+    @Query("SELECT extract(date from p.createdAt) AS day, extract(hour from p.createdAt) AS hour, " +
+            "extract(minute from p.createdAt) AS minute, p.status AS status, " +
+            "COUNT(p) AS totalCount, SUM(p.amount) AS totalAmount FROM Payment p " +
+            "WHERE p.createdAt >= :since " +
+            "GROUP BY extract(date from p.createdAt), extract(hour from p.createdAt), " +
+            "extract(minute from p.createdAt), p.status")
+    List<PaymentTimeAggregate> aggregateByMinute(LocalDateTime since);
+
+    // Keyset em (status, updated_at, id), coberto por idx_payments_status_updated (o InnoDB anexa o id ao índice).
+    // Somente leitura: o reconciliador aplica as correções com UPDATEs em batch
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT p FROM Payment p WHERE p.status = :status AND p.updatedAt < :before " +
+            "AND (p.updatedAt > :updatedAt OR (p.updatedAt = :updatedAt AND p.id > :id)) " +
+            "ORDER BY p.updatedAt ASC, p.id ASC")
+    List<Payment> findForReconciliation(PaymentStatus status, LocalDateTime before,
+                                        LocalDateTime updatedAt, Long id, Limit limit);
+
+    // Mais antigos primeiro, na ordem de idx_payments_status_created. SKIP LOCKED (-2): um pagamento
+    // em alteração fica para a próxima rodada e dois nós arquivando não disputam as mesmas linhas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT p FROM Payment p WHERE p.status = :status AND p.createdAt < :before " +
+            "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Payment> lockArchivable(PaymentStatus status, LocalDateTime before, Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface PaymentTimeAggregate {
+
+    LocalDate getDay();
+
+    Integer getHour();
+
+    Integer getMinute();
+
+    PaymentStatus getStatus();
+
+    Long getTotalCount();
+
+    BigDecimal getTotalAmount();
+}
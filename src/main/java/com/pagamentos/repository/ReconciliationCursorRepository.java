@@ -0,0 +1,9 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.ReconciliationCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReconciliationCursorRepository extends JpaRepository<ReconciliationCursor, String> {
+}
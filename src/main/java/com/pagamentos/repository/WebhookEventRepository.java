@@ -0,0 +1,39 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.WebhookEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, String> {
+
+    // SKIP LOCKED (-2): vários nós consomem a fila sem disputar as mesmas linhas.
+    // Somente leitura: o processador grava o desfecho com UPDATEs em batch, sem flush por entidade
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints({
+            @QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e FROM WebhookEvent e WHERE e.status = com.pagamentos.model.WebhookEventStatus.RECEIVED " +
+            "AND e.partitionKey = :partition AND e.availableAt <= :now " +
+            "ORDER BY e.eventCreated ASC, e.receivedAt ASC")
+    List<WebhookEvent> lockPending(int partition, LocalDateTime now, Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM WebhookEvent e WHERE e.status <> com.pagamentos.model.WebhookEventStatus.RECEIVED " +
+            "AND e.processedAt < :before")
+    int deleteProcessedBefore(LocalDateTime before);
+}
@@ -0,0 +1,83 @@
+package com.pagamentos.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Limite de concorrência AIMD guiado pela latência: cresce de um em um enquanto a latência
+// fica perto da mínima observada e encolhe 10% quando ela sobe ou a chamada falha.
+// Quando o gateway degrada, o limite cai e as chamadas excedentes falham na hora em vez de enfileirar.
+class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SMOOTHING = 0.1;
+    // A mínima é recalculada de tempos em tempos para acompanhar mudanças de patamar
+    private static final int MIN_RTT_RESET_SAMPLES = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private long minRttNanos = Long.MAX_VALUE;
+    private double smoothedRttNanos;
+    private long lastDecreaseNanos;
+    private int samples;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    void onSample(long rttNanos, boolean failed) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (++samples >= MIN_RTT_RESET_SAMPLES) {
+                samples = 0;
+                minRttNanos = rttNanos;
+            }
+            minRttNanos = Math.min(minRttNanos, rttNanos);
+            // Média móvel: um pico isolado não derruba o limite
+            smoothedRttNanos = smoothedRttNanos == 0
+                    ? rttNanos
+                    : smoothedRttNanos * (1 - SMOOTHING) + rttNanos * SMOOTHING;
+
+            if (failed || smoothedRttNanos > minRttNanos * latencyTolerance) {
+                // No máximo uma redução por "RTT", como no controle de congestionamento do TCP
+                if (now - lastDecreaseNanos >= smoothedRttNanos) {
+                    limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+                    lastDecreaseNanos = now;
+                }
+            } else if (inFlightAtCompletion * 2 >= limit) {
+                // Só cresce quando o limite está de fato sendo usado
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,312 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.BulkPaymentItemDTO;
+import com.pagamentos.dto.BulkPaymentJobDTO;
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.GatewayUnavailableException;
+import com.pagamentos.exception.RateLimitExceededException;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Cobranças em lote (ex: assinaturas): grava cada bloco com INSERT em batch, dispara as
+// chamadas ao gateway em paralelo e finaliza o bloco com UPDATEs em batch.
+// Os jobs ficam em memória no nó que recebeu o lote.
+@Service
+@Slf4j
+public class BulkPaymentService {
+
+    private final PaymentStateService paymentStateService;
+    private final PaymentGatewayRouter paymentGatewayRouter;
+    private final GatewayBulkhead gatewayBulkhead;
+    private final PaymentMetrics paymentMetrics;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentMap<String, BulkPaymentJob> jobs = new ConcurrentHashMap<>();
+
+    // Limite próprio por gateway: um lote não pode ocupar todo o bulkhead do tráfego online
+    private final ConcurrentMap<String, Semaphore> gatewayPermits = new ConcurrentHashMap<>();
+
+    @Value("${app.payment.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.payment.bulk.max-concurrent-per-gateway:20}")
+    private int maxConcurrentPerGateway;
+
+    @Value("${app.payment.bulk.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${app.payment.bulk.retry-backoff:PT1S}")
+    private Duration retryBackoff;
+
+    @Value("${app.payment.bulk.job-retention:PT24H}")
+    private Duration jobRetention;
+
+    public BulkPaymentService(PaymentStateService paymentStateService,
+                              PaymentGatewayRouter paymentGatewayRouter,
+                              GatewayBulkhead gatewayBulkhead,
+                              PaymentMetrics paymentMetrics) {
+        this.paymentStateService = paymentStateService;
+        this.paymentGatewayRouter = paymentGatewayRouter;
+        this.gatewayBulkhead = gatewayBulkhead;
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public BulkPaymentJobDTO submit(List<PaymentRequestDTO> requests) {
+        // Falha antes de aceitar o lote se algum pagamento não tiver gateway que o atenda
+        requests.forEach(paymentGatewayRouter::route);
+
+        BulkPaymentJob job = new BulkPaymentJob(UUID.randomUUID().toString(), requests.size());
+        jobs.put(job.jobId, job);
+
+        log.info("Lote {} recebido com {} pagamentos", job.jobId, requests.size());
+        executor.submit(() -> run(job, List.copyOf(requests)));
+        return job.toDTO();
+    }
+
+    public BulkPaymentJobDTO getJob(String jobId) {
+        return findJob(jobId).toDTO();
+    }
+
+    public List<BulkPaymentItemDTO> getResults(String jobId, int offset, int limit) {
+        BulkPaymentJob job = findJob(jobId);
+        List<BulkPaymentItemDTO> results = new ArrayList<>(Math.min(limit, job.total));
+        for (int i = Math.max(offset, 0); i < job.total && results.size() < limit; i++) {
+            BulkPaymentItemDTO item = job.results.get(i);
+            if (item != null) {
+                results.add(item);
+            }
+        }
+        return results;
+    }
+
+    @Scheduled(fixedDelayString = "${app.payment.bulk.cleanup-interval-ms:3600000}")
+    public void purgeCompletedJobs() {
+        LocalDateTime limit = LocalDateTime.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.completedAt != null && job.completedAt.isBefore(limit));
+    }
+
+    private BulkPaymentJob findJob(String jobId) {
+        BulkPaymentJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Lote não encontrado");
+        }
+        return job;
+    }
+
+    private void run(BulkPaymentJob job, List<PaymentRequestDTO> requests) {
+        long start = System.nanoTime();
+        try {
+            for (int from = 0; from < requests.size() && !job.aborted; from += chunkSize) {
+                int to = Math.min(from + chunkSize, requests.size());
+                processChunk(job, requests.subList(from, to), from);
+            }
+        } catch (RuntimeException e) {
+            job.aborted = true;
+            log.error("Erro ao processar lote {}: {}", job.jobId, e.getMessage(), e);
+        } finally {
+            job.completedAt = LocalDateTime.now();
+            log.info("Lote {} finalizado em {} ms: {} aprovados, {} falhas", job.jobId,
+                    Duration.ofNanos(System.nanoTime() - start).toMillis(), job.succeeded.get(), job.failed.get());
+        }
+    }
+
+    private void processChunk(BulkPaymentJob job, List<PaymentRequestDTO> chunk, int offset) {
+        // Roteado por bloco: a saúde dos gateways é reavaliada a cada bloco, sem failover por item
+        List<String> gateways = new ArrayList<>(chunk.size());
+        for (PaymentRequestDTO request : chunk) {
+            gateways.add(paymentGatewayRouter.route(request).get(0).getGateway());
+        }
+
+        // Fase 1: um INSERT em batch para o bloco inteiro
+        List<Payment> pending = paymentStateService.createProcessingBatch(chunk, gateways);
+
+        // Fase 2: chamadas ao gateway em paralelo, sem transação aberta. Rejeições do bulkhead,
+        // do circuit breaker ou do rate limit acontecem antes do envio: o item volta para a fila do bloco
+        Map<Long, Payment> gatewayResults = new HashMap<>(chunk.size() * 2);
+        List<Integer> queued = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            queued.add(i);
+        }
+
+        RuntimeException rejection = null;
+        for (int attempt = 1; !queued.isEmpty() && attempt <= maxAttempts; attempt++) {
+            if (attempt > 1 && !pause(retryBackoff.multipliedBy(attempt - 1))) {
+                break;
+            }
+
+            List<Future<Payment>> calls = new ArrayList<>(queued.size());
+            for (Integer i : queued) {
+                PaymentRequestDTO request = chunk.get(i);
+                Payment payment = pending.get(i);
+                calls.add(executor.submit(() -> callGateway(request, payment)));
+            }
+
+            List<Integer> rejected = new ArrayList<>();
+            for (int k = 0; k < queued.size(); k++) {
+                Integer i = queued.get(k);
+                try {
+                    gatewayResults.put(pending.get(i).getId(), await(calls.get(k)));
+                } catch (GatewayUnavailableException | RateLimitExceededException e) {
+                    rejected.add(i);
+                    rejection = e;
+                }
+            }
+            queued = rejected;
+        }
+
+        // Gateway indisponível mesmo após as tentativas: nada foi cobrado, então o pagamento é encerrado
+        // como falha e o item pode ser reenviado. Os blocos seguintes nem são iniciados
+        Set<Integer> notSent = new HashSet<>(queued);
+        if (!notSent.isEmpty()) {
+            String reason = "Não enviado ao gateway: " + (rejection != null ? rejection.getMessage() : "lote interrompido");
+            for (Integer i : notSent) {
+                gatewayResults.put(pending.get(i).getId(), failure(reason));
+            }
+            job.aborted = true;
+            log.warn("Lote {} interrompido: {} pagamentos não enviados ao gateway", job.jobId, notSent.size());
+        }
+
+        // Fase 3: UPDATEs em batch com o resultado de cada cobrança
+        Map<Long, Payment> completed = new HashMap<>(chunk.size() * 2);
+        for (Payment payment : paymentStateService.completeBatch(gatewayResults)) {
+            completed.put(payment.getId(), payment);
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Long id = pending.get(i).getId();
+            Payment payment = completed.getOrDefault(id, pending.get(i));
+            Payment gatewayResult = gatewayResults.get(id);
+            String error = payment.getStatus() == PaymentStatus.FAILED ? gatewayResult.getGatewayResponse() : null;
+            boolean retryable = notSent.contains(i);
+
+            job.results.set(offset + i, new BulkPaymentItemDTO(offset + i, payment.getId(),
+                    payment.getPaymentId(), payment.getStatus(), error, retryable));
+            if (retryable) {
+                job.retryable.incrementAndGet();
+            } else if (payment.getStatus() == PaymentStatus.FAILED) {
+                job.failed.incrementAndGet();
+            } else if (payment.getStatus() == PaymentStatus.SUCCESS) {
+                job.succeeded.incrementAndGet();
+            }
+            job.processed.incrementAndGet();
+        }
+    }
+
+    private Payment callGateway(PaymentRequestDTO request, Payment pending) {
+        String gateway = pending.getGateway();
+        Semaphore permits = gatewayPermits.computeIfAbsent(gateway, g -> new Semaphore(maxConcurrentPerGateway));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure("Lote interrompido");
+        }
+
+        try {
+            PaymentGatewayService gatewayService = paymentGatewayRouter.getGateway(gateway);
+            return gatewayBulkhead.execute(gateway, () -> paymentMetrics.recordGatewayCall(gateway, PaymentMetrics.CHARGE,
+                    () -> gatewayService.processPayment(request, pending.getPaymentId())));
+        } catch (GatewayTimeoutException e) {
+            // Sem resposta: o pagamento segue em PROCESSING até a recuperação consultar o gateway
+            Payment unknown = new Payment();
+            unknown.setStatus(PaymentStatus.PROCESSING);
+            return unknown;
+        } catch (GatewayUnavailableException | RateLimitExceededException e) {
+            // Rejeitado antes do envio: o bloco tenta de novo
+            throw e;
+        } catch (RuntimeException e) {
+            return failure("Erro no gateway: " + e.getMessage());
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Payment await(Future<Payment> call) {
+        try {
+            return call.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GatewayUnavailableException rejected) {
+                throw rejected;
+            }
+            if (e.getCause() instanceof RateLimitExceededException rejected) {
+                throw rejected;
+            }
+            return failure("Erro no gateway: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure("Lote interrompido");
+        }
+    }
+
+    private boolean pause(Duration delay) {
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Payment failure(String reason) {
+        Payment result = new Payment();
+        result.setStatus(PaymentStatus.FAILED);
+        result.setGatewayResponse(reason);
+        return result;
+    }
+
+    private static final class BulkPaymentJob {
+        private final String jobId;
+        private final int total;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicReferenceArray<BulkPaymentItemDTO> results;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger retryable = new AtomicInteger();
+        private volatile boolean aborted;
+        private volatile LocalDateTime completedAt;
+
+        BulkPaymentJob(String jobId, int total) {
+            this.jobId = jobId;
+            this.total = total;
+            this.results = new AtomicReferenceArray<>(total);
+        }
+
+        BulkPaymentJobDTO toDTO() {
+            String status = completedAt == null ? "RUNNING" : aborted ? "ABORTED" : "COMPLETED";
+            return new BulkPaymentJobDTO(jobId, status, total, processed.get(), succeeded.get(), failed.get(),
+                    retryable.get(), createdAt, completedAt);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Gateway local para desenvolvimento e testes de roteamento sem rede (gateway "FAKE").
+// Latência, falhas transitórias e recusas são configuráveis em app.gateway.fake.*
+@Service("fakeService")
+@ConditionalOnProperty(name = "app.gateway.fake.enabled", havingValue = "true")
+@Slf4j
+public class FakeGatewayService implements PaymentGatewayService {
+
+    private final Duration latency;
+    private final double failureRate;
+    private final double declineRate;
+
+    // Charges por ID e por referência, para a recuperação conseguir reconciliar
+    private final Map<String, Payment> charges = new ConcurrentHashMap<>();
+    private final Map<String, String> chargesByReference = new ConcurrentHashMap<>();
+    private final Map<String, Payment> refundsByReference = new ConcurrentHashMap<>();
+
+    public FakeGatewayService(@Value("${app.gateway.fake.latency:PT0.05S}") Duration latency,
+                              @Value("${app.gateway.fake.failure-rate:0}") double failureRate,
+                              @Value("${app.gateway.fake.decline-rate:0}") double declineRate) {
+        this.latency = latency;
+        this.failureRate = failureRate;
+        this.declineRate = declineRate;
+    }
+
+    @Override
+    public Payment processPayment(PaymentRequestDTO request) {
+        return processPayment(request, null);
+    }
+
+    @Override
+    public Payment processPayment(PaymentRequestDTO request, String paymentReference) {
+        simulateNetwork();
+
+        if (paymentReference != null && chargesByReference.containsKey(paymentReference)) {
+            // Mesma referência: devolve a charge existente, como a Idempotency-Key do Stripe
+            return charges.get(chargesByReference.get(paymentReference));
+        }
+
+        Payment payment = new Payment();
+        payment.setPaymentId("fake_" + UUID.randomUUID());
+        payment.setCustomerId(request.getCustomerId());
+        payment.setCustomerEmail(request.getCustomerEmail());
+        Money money = request.toMoney();
+        payment.setAmount(money.toDecimal());
+        payment.setCurrency(money.currency().name());
+        payment.setPaymentMethod(request.getPaymentMethod().toString());
+        payment.setGateway("FAKE");
+        payment.setDescription(request.getDescription());
+
+        if (ThreadLocalRandom.current().nextDouble() < declineRate) {
+            payment.setStatus(PaymentStatus.FAILED);
+            payment.setGatewayResponse("{\"status\":\"declined\"}");
+        } else {
+            payment.setStatus(PaymentStatus.SUCCESS);
+            payment.setProcessedAt(LocalDateTime.now());
+            payment.setGatewayResponse("{\"status\":\"succeeded\"}");
+        }
+
+        charges.put(payment.getPaymentId(), payment);
+        if (paymentReference != null) {
+            chargesByReference.put(paymentReference, payment.getPaymentId());
+        }
+        log.debug("Charge fake {} criada com status {}", payment.getPaymentId(), payment.getStatus());
+        return payment;
+    }
+
+    @Override
+    public Payment getPaymentStatus(String paymentId) {
+        simulateNetwork();
+        String chargeId = paymentId.startsWith(PaymentStateService.PENDING_PREFIX)
+                ? chargesByReference.get(paymentId)
+                : paymentId;
+        return chargeId != null ? charges.get(chargeId) : null;
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason) {
+        return refundPayment(paymentId, amount, reason, null);
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason, String refundReference) {
+        simulateNetwork();
+        if (!charges.containsKey(paymentId)) {
+            return null;
+        }
+        if (refundReference != null && refundsByReference.containsKey(refundReference)) {
+            return refundsByReference.get(refundReference);
+        }
+
+        Payment refund = new Payment();
+        refund.setPaymentId(paymentId);
+        refund.setStatus(PaymentStatus.REFUNDED);
+        refund.setGatewayResponse("{\"status\":\"refunded\"}");
+        if (refundReference != null) {
+            refundsByReference.put(refundReference, refund);
+        }
+        return refund;
+    }
+
+    @Override
+    public Payment getRefundStatus(String paymentId, String refundReference) {
+        simulateNetwork();
+        return refundsByReference.get(refundReference);
+    }
+
+    @Override
+    public String generatePaymentMethodToken(PaymentRequestDTO request) {
+        return "tok_fake_" + UUID.randomUUID();
+    }
+
+    private void simulateNetwork() {
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayTimeoutException("Interrompido aguardando o gateway FAKE");
+        }
+        if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+            throw new GatewayTimeoutException("Falha simulada no gateway FAKE");
+        }
+    }
+}
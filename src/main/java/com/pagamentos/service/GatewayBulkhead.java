@@ -0,0 +1,92 @@
+package com.pagamentos.service;
+
+import com.pagamentos.exception.GatewayUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Limita chamadas simultâneas por gateway. Com virtual threads não há mais
+// teto de threads, então é este limite que protege o pool do banco e a cota do gateway.
+@Component
+@Slf4j
+public class GatewayBulkhead {
+
+    private static final String PREFIX = "app.gateway.bulkhead.";
+
+    private final Environment environment;
+    private final int defaultMaxConcurrentCalls;
+    private final Duration maxWait;
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public GatewayBulkhead(Environment environment) {
+        this.environment = environment;
+        this.defaultMaxConcurrentCalls = environment.getProperty(PREFIX + "max-concurrent-calls", Integer.class, 50);
+        this.maxWait = DurationStyle.detectAndParse(environment.getProperty(PREFIX + "max-wait", "PT2S"));
+    }
+
+    public <T> T execute(String gateway, Supplier<T> call) {
+        Semaphore semaphore = permits.computeIfAbsent(gateway.toUpperCase(), this::createSemaphore);
+
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayUnavailableException("Interrompido aguardando o gateway " + gateway);
+        }
+
+        if (!acquired) {
+            log.warn("Bulkhead do gateway {} saturado", gateway);
+            throw new GatewayUnavailableException("Gateway " + gateway + " sobrecarregado, tente novamente");
+        }
+
+        try {
+            return call.get();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    // Versão assíncrona: não espera por vaga, para não bloquear a thread que dispara a chamada.
+    // A vaga fica ocupada até o future terminar.
+    public <T> CompletableFuture<T> executeAsync(String gateway, Supplier<CompletableFuture<T>> call) {
+        Semaphore semaphore = permits.computeIfAbsent(gateway.toUpperCase(), this::createSemaphore);
+
+        if (!semaphore.tryAcquire()) {
+            log.warn("Bulkhead do gateway {} saturado", gateway);
+            throw new GatewayUnavailableException("Gateway " + gateway + " sobrecarregado, tente novamente");
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+        return future.whenComplete((result, error) -> semaphore.release());
+    }
+
+    public int availablePermits(String gateway) {
+        Semaphore semaphore = permits.get(gateway.toUpperCase());
+        return semaphore != null ? semaphore.availablePermits() : maxConcurrentCalls(gateway.toUpperCase());
+    }
+
+    private Semaphore createSemaphore(String gateway) {
+        return new Semaphore(maxConcurrentCalls(gateway), true);
+    }
+
+    private int maxConcurrentCalls(String gateway) {
+        return environment.getProperty(PREFIX + gateway.toLowerCase() + ".max-concurrent-calls",
+                Integer.class, defaultMaxConcurrentCalls);
+    }
+}
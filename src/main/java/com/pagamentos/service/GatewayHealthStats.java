@@ -0,0 +1,30 @@
+package com.pagamentos.service;
+
+// Latência e taxa de sucesso recentes de um gateway, em média móvel exponencial.
+// Só falhas do gateway (rede, timeout, 5xx) contam; recusas de cartão são respostas normais.
+class GatewayHealthStats {
+
+    private static final double SMOOTHING = 0.1;
+
+    private double latencyNanos;
+    private double successRate = 1.0;
+    private long samples;
+
+    synchronized void record(long rttNanos, boolean failed) {
+        latencyNanos = samples == 0 ? rttNanos : latencyNanos * (1 - SMOOTHING) + rttNanos * SMOOTHING;
+        successRate = successRate * (1 - SMOOTHING) + (failed ? 0 : SMOOTHING);
+        samples++;
+    }
+
+    synchronized double getLatencyMillis() {
+        return latencyNanos / 1_000_000;
+    }
+
+    synchronized double getSuccessRate() {
+        return successRate;
+    }
+
+    synchronized long getSamples() {
+        return samples;
+    }
+}
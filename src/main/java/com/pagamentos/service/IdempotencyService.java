@@ -0,0 +1,218 @@
+package com.pagamentos.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.IdempotencyConflictException;
+import com.pagamentos.exception.IdempotencyKeyMismatchException;
+import com.pagamentos.model.IdempotencyRecord;
+import com.pagamentos.model.IdempotencyStatus;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.IdempotencyRecordRepository;
+import com.pagamentos.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final PaymentRepository paymentRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    // Respostas recentes: replays locais não tocam no banco nem no gateway
+    private final Cache<String, StoredResponse> responses;
+
+    // Requisições em andamento neste nó: duplicatas concorrentes aguardam a mesma execução
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              PaymentRepository paymentRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${app.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${app.idempotency.cache.max-size:10000}") long maxCacheSize) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.paymentRepository = paymentRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxCacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public PaymentResponseDTO execute(String key, PaymentRequestDTO request, Supplier<PaymentResponseDTO> action) {
+        String requestHash = fingerprint(request);
+
+        StoredResponse cached = responses.getIfPresent(key);
+        if (cached != null) {
+            return cached.replay(requestHash);
+        }
+
+        CompletableFuture<StoredResponse> execution = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = inFlight.putIfAbsent(key, execution);
+        if (existing != null) {
+            log.debug("Aguardando execução em andamento da chave {}", key);
+            return await(existing).replay(requestHash);
+        }
+
+        try {
+            StoredResponse stored = executeOnce(key, requestHash, action);
+            responses.put(key, stored);
+            execution.complete(stored);
+            return stored.replay(requestHash);
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, execution);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        int removed = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            log.info("Removidas {} chaves de idempotência expiradas", removed);
+        }
+    }
+
+    private StoredResponse executeOnce(String key, String requestHash, Supplier<PaymentResponseDTO> action) {
+        Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findById(key);
+        if (existing.isPresent()) {
+            IdempotencyRecord record = existing.get();
+            if (record.getExpiresAt().isAfter(LocalDateTime.now())) {
+                if (record.getStatus() == IdempotencyStatus.IN_PROGRESS) {
+                    return resolvePending(record);
+                }
+                return new StoredResponse(record.getRequestHash(), fromJson(record.getResponseBody()));
+            }
+            idempotencyRecordRepository.delete(record);
+        }
+
+        IdempotencyRecord record = claim(key, requestHash);
+
+        PaymentResponseDTO response;
+        try {
+            response = action.get();
+        } catch (GatewayTimeoutException e) {
+            // A cobrança pode ter sido feita: liberar a chave geraria uma nova referência no gateway e
+            // uma segunda cobrança. A chave fica presa ao pagamento pendente (ligado em createProcessing)
+            throw e;
+        } catch (RuntimeException e) {
+            // Falha conhecida, sem cobrança no gateway: libera a chave para que o cliente possa tentar novamente
+            idempotencyRecordRepository.delete(record);
+            throw e;
+        }
+
+        return complete(record, response);
+    }
+
+    // Chave IN_PROGRESS deixada por um timeout ou por um nó que caiu: responde com o estado do pagamento
+    // assim que a conciliação o tirar de PROCESSING
+    private StoredResponse resolvePending(IdempotencyRecord record) {
+        PaymentResponseDTO payment = record.getPaymentId() != null
+                ? paymentRepository.findResponseById(record.getPaymentId()).orElse(null)
+                : null;
+        if (payment == null || payment.getStatus() == PaymentStatus.PROCESSING) {
+            throw new IdempotencyConflictException("Requisição com esta Idempotency-Key ainda em processamento");
+        }
+        return complete(record, payment);
+    }
+
+    private StoredResponse complete(IdempotencyRecord record, PaymentResponseDTO response) {
+        record.setStatus(IdempotencyStatus.COMPLETED);
+        record.setPaymentId(response.getId());
+        record.setResponseBody(toJson(response));
+        idempotencyRecordRepository.save(record);
+
+        return new StoredResponse(record.getRequestHash(), response);
+    }
+
+    private IdempotencyRecord claim(String key, String requestHash) {
+        try {
+            return idempotencyRecordRepository.saveAndFlush(
+                    new IdempotencyRecord(key, requestHash, LocalDateTime.now().plus(ttl)));
+        } catch (DataIntegrityViolationException e) {
+            // Outro nó registrou a mesma chave ao mesmo tempo
+            throw new IdempotencyConflictException("Requisição com esta Idempotency-Key ainda em processamento");
+        }
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> execution) {
+        try {
+            return execution.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String fingerprint(PaymentRequestDTO request) {
+        String canonical = String.join("|",
+                request.getCustomerId(),
+                request.getCustomerEmail(),
+                request.getAmount().toPlainString(),
+                String.valueOf(request.getCurrency()),
+                String.valueOf(request.getPaymentMethod()),
+                request.getPaymentToken(),
+                String.valueOf(request.getDescription()),
+                String.valueOf(request.getGateway()));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toJson(PaymentResponseDTO response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Erro ao serializar resposta idempotente", e);
+        }
+    }
+
+    private PaymentResponseDTO fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, PaymentResponseDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Erro ao ler resposta idempotente", e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, PaymentResponseDTO response) {
+
+        PaymentResponseDTO replay(String requestHash) {
+            if (!this.requestHash.equals(requestHash)) {
+                throw new IdempotencyKeyMismatchException("Idempotency-Key já utilizada com outra requisição");
+            }
+            return response;
+        }
+    }
+}
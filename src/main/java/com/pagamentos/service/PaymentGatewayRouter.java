@@ -0,0 +1,152 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.exception.GatewayUnavailableException;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.CurrencyCode;
+import com.pagamentos.model.PaymentMethod;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Ponto único para escolher o gateway: por nome (reembolso, recuperação) ou por roteamento.
+// O roteamento filtra pelas regras de cada gateway (moeda, método, faixa de valor) e ordena os
+// candidatos pela saúde atual: primeiro os saudáveis por prioridade e latência, depois os degradados.
+@Component
+public class PaymentGatewayRouter {
+
+    private static final String SERVICE_SUFFIX = "Service";
+    private static final String PREFIX = "app.gateway.routing.";
+
+    private final Map<String, ResilientPaymentGatewayService> gateways = new HashMap<>();
+    private final Map<String, RoutingRule> rules = new HashMap<>();
+    private final double minSuccessRate;
+    private final double maxLatencyMillis;
+    private final long minSamples;
+
+    // Cada gateway é envolvido uma única vez: circuit breaker e limite de concorrência
+    // são compartilhados por todos os fluxos que chamam o mesmo gateway
+    @Autowired
+    public PaymentGatewayRouter(Map<String, PaymentGatewayService> gatewayServices,
+                                Environment environment,
+                                PaymentMetrics paymentMetrics) {
+        gatewayServices.forEach((serviceName, service) -> {
+            String gateway = serviceName.endsWith(SERVICE_SUFFIX)
+                    ? serviceName.substring(0, serviceName.length() - SERVICE_SUFFIX.length()).toUpperCase()
+                    : serviceName.toUpperCase();
+            ResilientPaymentGatewayService resilient = ResilientPaymentGatewayService.wrap(gateway, service, environment);
+            paymentMetrics.registerGatewayResilience(gateway,
+                    () -> resilient.getCircuitState().ordinal(), resilient::getConcurrencyLimit);
+            gateways.put(gateway, resilient);
+            rules.put(gateway, RoutingRule.load(gateway, environment));
+        });
+
+        this.minSuccessRate = environment.getProperty(PREFIX + "min-success-rate", Double.class, 0.8);
+        this.maxLatencyMillis = DurationStyle.detectAndParse(
+                environment.getProperty(PREFIX + "max-latency", "PT5S")).toMillis();
+        this.minSamples = environment.getProperty(PREFIX + "min-samples", Long.class, 20L);
+    }
+
+    public ResilientPaymentGatewayService getGateway(String gatewayName) {
+        ResilientPaymentGatewayService service = gateways.get(gatewayName.toUpperCase());
+
+        if (service == null) {
+            throw new RuntimeException("Gateway não suportado: " + gatewayName);
+        }
+
+        return service;
+    }
+
+    // Candidatos em ordem de preferência; o chamador passa ao próximo quando um recusa a chamada.
+    // Se o cliente escolheu o gateway, ele é o único candidato.
+    public List<ResilientPaymentGatewayService> route(PaymentRequestDTO request) {
+        if (request.getGateway() != null) {
+            return List.of(getGateway(request.getGateway()));
+        }
+
+        List<ResilientPaymentGatewayService> eligible = gateways.entrySet().stream()
+                .filter(entry -> rules.get(entry.getKey()).matches(request))
+                .map(Map.Entry::getValue)
+                .toList();
+        if (eligible.isEmpty()) {
+            throw new RuntimeException("Nenhum gateway atende pagamentos em " + request.getCurrency()
+                    + " via " + request.getPaymentMethod());
+        }
+
+        List<ResilientPaymentGatewayService> healthy = new ArrayList<>(eligible.size());
+        List<ResilientPaymentGatewayService> degraded = new ArrayList<>();
+        for (ResilientPaymentGatewayService gateway : eligible) {
+            if (gateway.getCircuitState() == GatewayCircuitBreaker.State.OPEN) {
+                continue;
+            }
+            (isHealthy(gateway) ? healthy : degraded).add(gateway);
+        }
+        if (healthy.isEmpty() && degraded.isEmpty()) {
+            throw new GatewayUnavailableException("Nenhum gateway disponível para o pagamento");
+        }
+
+        healthy.sort(Comparator
+                .comparingInt((ResilientPaymentGatewayService gateway) -> rules.get(gateway.getGateway()).priority())
+                .thenComparingDouble(gateway -> gateway.getHealthStats().getLatencyMillis()));
+        degraded.sort(Comparator
+                .comparingDouble((ResilientPaymentGatewayService gateway) -> -gateway.getHealthStats().getSuccessRate())
+                .thenComparingDouble(gateway -> gateway.getHealthStats().getLatencyMillis()));
+
+        healthy.addAll(degraded);
+        return healthy;
+    }
+
+    private boolean isHealthy(ResilientPaymentGatewayService gateway) {
+        if (!gateway.isAvailable()) {
+            return false;
+        }
+        GatewayHealthStats stats = gateway.getHealthStats();
+        // Poucas amostras ainda não dizem nada sobre o gateway
+        return stats.getSamples() < minSamples
+                || (stats.getSuccessRate() >= minSuccessRate && stats.getLatencyMillis() <= maxLatencyMillis);
+    }
+
+    // app.gateway.routing.<gateway>.* ; lista vazia ou valor ausente significa sem restrição
+    private record RoutingRule(int priority, Set<String> currencies, Set<PaymentMethod> paymentMethods,
+                               BigDecimal minAmount, BigDecimal maxAmount) {
+
+        static RoutingRule load(String gateway, Environment environment) {
+            String prefix = PREFIX + gateway.toLowerCase() + ".";
+            return new RoutingRule(
+                    environment.getProperty(prefix + "priority", Integer.class, 100),
+                    split(environment.getProperty(prefix + "currencies", "")),
+                    split(environment.getProperty(prefix + "payment-methods", "")).stream()
+                            .map(PaymentMethod::valueOf)
+                            .collect(Collectors.toSet()),
+                    environment.getProperty(prefix + "min-amount", BigDecimal.class),
+                    environment.getProperty(prefix + "max-amount", BigDecimal.class));
+        }
+
+        boolean matches(PaymentRequestDTO request) {
+            return (currencies.isEmpty() || currencies.contains(CurrencyCode.of(request.getCurrency()).name()))
+                    && (paymentMethods.isEmpty() || paymentMethods.contains(request.getPaymentMethod()))
+                    && (minAmount == null || request.getAmount().compareTo(minAmount) >= 0)
+                    && (maxAmount == null || request.getAmount().compareTo(maxAmount) <= 0);
+        }
+
+        private static Set<String> split(String value) {
+            return Arrays.stream(value.split(","))
+                    .map(String::trim)
+                    .filter(item -> !item.isEmpty())
+                    .map(String::toUpperCase)
+                    .collect(Collectors.toSet());
+        }
+    }
+}
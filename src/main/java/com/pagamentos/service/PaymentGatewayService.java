@@ -1,15 +1,37 @@
 package com.pagamentos.service;
 
 import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.model.Money;
 import com.pagamentos.model.Payment;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface PaymentGatewayService {
 
     Payment processPayment(PaymentRequestDTO request);
 
+    // paymentReference identifica o registro local antes de existir um ID do gateway
+    default Payment processPayment(PaymentRequestDTO request, String paymentReference) {
+        return processPayment(request);
+    }
+
+    // Variante não bloqueante da cobrança. O padrão executa a versão bloqueante em uma virtual thread;
+    // gateways com cliente HTTP assíncrono (ex: StripeService) sobrescrevem sem ocupar thread.
+    default CompletableFuture<Payment> processPaymentAsync(PaymentRequestDTO request, String paymentReference) {
+        return CompletableFuture.supplyAsync(() -> processPayment(request, paymentReference), Thread::startVirtualThread);
+    }
+
     Payment getPaymentStatus(String paymentId);
 
-    Payment refundPayment(String paymentId, Double amount, String reason);
+    Payment refundPayment(String paymentId, Money amount, String reason);
+
+    // refundReference identifica o reembolso local (payment_refunds) e vai como chave de idempotência:
+    // a conciliação e as retentativas não reembolsam duas vezes
+    Payment refundPayment(String paymentId, Money amount, String reason, String refundReference);
+
+    // Reembolso feito com refundReference: REFUNDED, PROCESSING (ainda no gateway) ou FAILED; null se
+    // o gateway não o conhece
+    Payment getRefundStatus(String paymentId, String refundReference);
 
     String generatePaymentMethodToken(PaymentRequestDTO request);
 }
\ No newline at end of file
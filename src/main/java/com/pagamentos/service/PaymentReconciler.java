@@ -0,0 +1,346 @@
+package com.pagamentos.service;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.GatewayUnavailableException;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentGatewayResponse;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.model.ReconciliationCursor;
+import com.pagamentos.repository.PaymentGatewayResponseRepository;
+import com.pagamentos.repository.PaymentRepository;
+import com.pagamentos.repository.ReconciliationCursorRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Confere com o gateway os pagamentos parados há algum tempo e corrige o que divergir: pagamentos presos
+// em PENDING/PROCESSING e pagamentos finalizados cujo webhook se perdeu (ex: reembolso feito no dashboard).
+// Varre cada status em ordem de (updated_at, id) e grava a posição, retomando de onde parou após um restart.
+// Para não competir com o tráfego: consultas ao gateway com concorrência e taxa próprias e fora de transação,
+// e uma única transação curta por lote para as correções.
+@Service
+@Slf4j
+public class PaymentReconciler {
+
+    private static final Set<PaymentStatus> IN_FLIGHT =
+            EnumSet.of(PaymentStatus.PENDING, PaymentStatus.PROCESSING, PaymentStatus.REQUIRES_ACTION);
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private final PaymentRepository paymentRepository;
+    private final ReconciliationCursorRepository cursorRepository;
+    private final PaymentGatewayResponseRepository gatewayResponseRepository;
+    private final PaymentGatewayRouter paymentGatewayRouter;
+    private final PaymentMetrics paymentMetrics;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ConcurrentMap<String, GatewayQuota> quotas = new ConcurrentHashMap<>();
+    private final ExecutorService lookups;
+
+    @Value("${app.payment.reconciliation.statuses:PENDING,PROCESSING,REQUIRES_ACTION,SUCCESS,PARTIALLY_REFUNDED}")
+    private List<PaymentStatus> statuses;
+
+    @Value("${app.payment.reconciliation.stale-after:PT2M}")
+    private Duration staleAfter;
+
+    @Value("${app.payment.reconciliation.fail-after:PT30M}")
+    private Duration failAfter;
+
+    @Value("${app.payment.reconciliation.settled-lookback:P30D}")
+    private Duration settledLookback;
+
+    @Value("${app.payment.reconciliation.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.payment.reconciliation.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    @Value("${app.payment.reconciliation.max-concurrent-lookups:4}")
+    private int maxConcurrentLookups;
+
+    @Value("${app.payment.reconciliation.max-lookups-per-second:10}")
+    private int maxLookupsPerSecond;
+
+    public PaymentReconciler(PaymentRepository paymentRepository,
+                             ReconciliationCursorRepository cursorRepository,
+                             PaymentGatewayResponseRepository gatewayResponseRepository,
+                             PaymentGatewayRouter paymentGatewayRouter,
+                             PaymentMetrics paymentMetrics,
+                             JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             ApplicationEventPublisher eventPublisher) {
+        this.paymentRepository = paymentRepository;
+        this.cursorRepository = cursorRepository;
+        this.gatewayResponseRepository = gatewayResponseRepository;
+        this.paymentGatewayRouter = paymentGatewayRouter;
+        this.paymentMetrics = paymentMetrics;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.lookups = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("reconciler-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookups.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${app.payment.reconciliation.interval-ms:60000}")
+    public void reconcile() {
+        for (PaymentStatus status : statuses) {
+            try {
+                reconcileStatus(status);
+            } catch (RuntimeException e) {
+                log.error("Erro ao reconciliar pagamentos em {}: {}", status, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void reconcileStatus(PaymentStatus status) {
+        ReconciliationCursor cursor = cursorRepository.findById(status.name())
+                .orElseGet(() -> newCursor(status, LocalDateTime.now()));
+
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            LocalDateTime now = LocalDateTime.now();
+            List<Payment> payments = paymentRepository.findForReconciliation(status, now.minus(staleAfter),
+                    cursor.getLastUpdatedAt(), cursor.getLastId(), Limit.of(batchSize));
+
+            if (payments.isEmpty()) {
+                // Fim da varredura: a próxima rodada recomeça do início da janela
+                if (cursor.getLastId() != 0) {
+                    cursorRepository.save(newCursor(status, now));
+                }
+                return;
+            }
+
+            int resolved = reconcileBatch(payments, now);
+            if (resolved > 0) {
+                Payment last = payments.get(resolved - 1);
+                cursor.setLastUpdatedAt(last.getUpdatedAt());
+                cursor.setLastId(last.getId());
+                cursor.setUpdatedAt(now);
+                cursor = cursorRepository.save(cursor);
+            }
+
+            // Gateway recusou ou não respondeu: o restante fica para a próxima rodada
+            if (resolved < payments.size() || payments.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    // Devolve quantos pagamentos, do início do lote, foram resolvidos; o cursor avança só até eles
+    private int reconcileBatch(List<Payment> payments, LocalDateTime now) {
+        List<Future<Payment>> results = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            results.add(lookups.submit(() -> lookup(payment)));
+        }
+
+        List<Correction> corrections = new ArrayList<>();
+        int resolved = payments.size();
+        for (int i = 0; i < payments.size(); i++) {
+            Payment payment = payments.get(i);
+            Payment gatewayStatus;
+            try {
+                gatewayStatus = results.get(i).get();
+            } catch (ExecutionException e) {
+                // Sem resposta confiável do gateway o pagamento fica como está e o cursor não passa dele
+                if (!(e.getCause() instanceof GatewayUnavailableException || e.getCause() instanceof GatewayTimeoutException)) {
+                    log.error("Erro ao consultar pagamento {} no gateway: {}", payment.getId(), e.getCause().getMessage());
+                }
+                resolved = Math.min(resolved, i);
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Math.min(resolved, i);
+            }
+
+            Correction correction = correctionFor(payment, gatewayStatus, now);
+            if (correction != null) {
+                corrections.add(correction);
+            }
+        }
+
+        if (!corrections.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> applyCorrections(corrections, now));
+        }
+        return resolved;
+    }
+
+    private Payment lookup(Payment payment) {
+        ResilientPaymentGatewayService gateway = paymentGatewayRouter.getGateway(payment.getGateway());
+        // Gateway sob pressão: o tráfego real tem prioridade
+        if (!gateway.isAvailable()) {
+            throw new GatewayUnavailableException("Gateway " + payment.getGateway() + " sem folga para reconciliação");
+        }
+
+        GatewayQuota quota = quotas.computeIfAbsent(gateway.getGateway(), name -> new GatewayQuota());
+        quota.acquire();
+        try {
+            return paymentMetrics.recordGatewayCall(payment.getGateway(), PaymentMetrics.STATUS,
+                    () -> gateway.getPaymentStatus(payment.getPaymentId()));
+        } finally {
+            quota.release();
+        }
+    }
+
+    private Correction correctionFor(Payment payment, Payment gatewayStatus, LocalDateTime now) {
+        PaymentStatus current = payment.getStatus();
+
+        if (gatewayStatus == null) {
+            // Gateway respondeu sem charge depois de muito tempo: a cobrança nunca aconteceu
+            if (IN_FLIGHT.contains(current) && payment.getCreatedAt().isBefore(now.minus(failAfter))) {
+                return new Correction(payment, PaymentStatus.FAILED, null, null,
+                        "Sem confirmação do gateway após " + failAfter);
+            }
+            return null;
+        }
+
+        String chargeId = gatewayStatus.getPaymentId() != null && !gatewayStatus.getPaymentId().equals(payment.getPaymentId())
+                ? gatewayStatus.getPaymentId()
+                : null;
+        PaymentStatus target = gatewayStatus.getStatus();
+
+        if (target != current && current.canTransitionTo(target)) {
+            return new Correction(payment, target, chargeId, gatewayStatus.getRefundedAmount(),
+                    gatewayStatus.getGatewayResponse());
+        }
+        if (chargeId != null && IN_FLIGHT.contains(current)) {
+            // Charge ainda pendente no gateway: guarda o ID para a próxima rodada
+            return new Correction(payment, current, chargeId, null, null);
+        }
+        return null;
+    }
+
+    private void applyCorrections(List<Correction> corrections, LocalDateTime now) {
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        // A versão lida na varredura protege contra escritas concorrentes (fluxo normal, webhooks, reembolsos)
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "UPDATE payments SET status = ?, payment_id = COALESCE(?, payment_id), "
+                        + "refunded_amount = CASE WHEN ? THEN amount ELSE GREATEST(refunded_amount, ?) END, "
+                        + "processed_at = CASE WHEN ? THEN COALESCE(processed_at, ?) ELSE processed_at END, "
+                        + "updated_at = ?, version = version + 1 WHERE id = ? AND version = ?",
+                corrections, corrections.size(), (ps, correction) -> {
+                    Payment payment = correction.payment();
+                    ps.setString(1, correction.target().name());
+                    ps.setString(2, correction.chargeId());
+                    ps.setBoolean(3, correction.target() == PaymentStatus.REFUNDED);
+                    ps.setBigDecimal(4, correction.refundedAmount() != null ? correction.refundedAmount() : BigDecimal.ZERO);
+                    ps.setBoolean(5, correction.target() == PaymentStatus.SUCCESS);
+                    ps.setTimestamp(6, updatedAt);
+                    ps.setTimestamp(7, updatedAt);
+                    ps.setLong(8, payment.getId());
+                    ps.setLong(9, payment.getVersion());
+                });
+
+        int[] updated = counts[0];
+        List<PaymentGatewayResponse> responses = new ArrayList<>();
+        int changed = 0;
+        for (int i = 0; i < corrections.size(); i++) {
+            if (updated[i] == 0) {
+                continue;
+            }
+            Correction correction = corrections.get(i);
+            Payment payment = correction.payment();
+            PaymentStatus previous = payment.getStatus();
+            if (previous == correction.target()) {
+                continue;
+            }
+
+            // Entidade somente leitura: ajustada só para montar o evento
+            if (correction.chargeId() != null) {
+                payment.setPaymentId(correction.chargeId());
+            }
+            payment.setStatus(correction.target());
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, previous));
+            paymentMetrics.recordReconciliation(payment.getGateway(), previous, correction.target());
+
+            // Pagamentos em andamento ainda não têm resposta gravada; os finalizados já têm
+            if (IN_FLIGHT.contains(previous) && correction.gatewayResponse() != null) {
+                responses.add(PaymentGatewayResponse.of(payment.getId(), correction.gatewayResponse()));
+            }
+            changed++;
+        }
+        gatewayResponseRepository.saveAll(responses);
+
+        if (changed > 0) {
+            log.info("Reconciliação: {} pagamentos corrigidos", changed);
+        }
+    }
+
+    private ReconciliationCursor newCursor(PaymentStatus status, LocalDateTime now) {
+        ReconciliationCursor cursor = new ReconciliationCursor();
+        cursor.setName(status.name());
+        // Pagamentos finalizados só são conferidos dentro da janela; os em andamento, todos
+        cursor.setLastUpdatedAt(IN_FLIGHT.contains(status)
+                ? BEGINNING
+                : now.minus(settledLookback).truncatedTo(ChronoUnit.SECONDS));
+        cursor.setLastId(0);
+        cursor.setUpdatedAt(now);
+        return cursor;
+    }
+
+    private record Correction(Payment payment, PaymentStatus target, String chargeId,
+                              BigDecimal refundedAmount, String gatewayResponse) {
+    }
+
+    // Concorrência e ritmo das consultas de reconciliação, por gateway, separados do bulkhead do tráfego real
+    private class GatewayQuota {
+
+        private final Semaphore permits = new Semaphore(maxConcurrentLookups);
+        private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+        void acquire() {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GatewayUnavailableException("Reconciliação interrompida");
+            }
+
+            // Cada consulta reserva o próximo intervalo livre: no máximo maxLookupsPerSecond por segundo
+            long interval = 1_000_000_000L / Math.max(1, maxLookupsPerSecond);
+            long slot = nextSlot.accumulateAndGet(interval, (previous, step) -> Math.max(previous, System.nanoTime()) + step) - interval;
+            long wait = slot - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(Duration.ofNanos(wait));
+                } catch (InterruptedException e) {
+                    permits.release();
+                    Thread.currentThread().interrupt();
+                    throw new GatewayUnavailableException("Reconciliação interrompida");
+                }
+            }
+        }
+
+        void release() {
+            permits.release();
+        }
+    }
+}
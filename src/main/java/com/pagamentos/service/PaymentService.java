@@ -1,145 +1,303 @@
 package com.pagamentos.service;
 
+import com.pagamentos.archive.PaymentArchive;
+import com.pagamentos.cache.PaymentCache;
+import com.pagamentos.cache.PaymentCacheStatistics;
+import com.pagamentos.datasource.ReadRouting;
+import com.pagamentos.dto.PaymentPageDTO;
 import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.dto.PaymentResponseDTO;
 import com.pagamentos.dto.RefundRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.GatewayUnavailableException;
+import com.pagamentos.exception.RateLimitExceededException;
+import com.pagamentos.metrics.PaymentMetrics;
 import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentGatewayResponse;
 import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.ratelimit.PaymentRateLimiter;
+import com.pagamentos.repository.PaymentGatewayResponseRepository;
 import com.pagamentos.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.util.HashMap;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentService {
 
+    // Finalização das chamadas assíncronas: JDBC bloqueia, então cada uma ganha uma virtual thread
+    private static final Executor COMPLETION_EXECUTOR = Thread::startVirtualThread;
+
     private final PaymentRepository paymentRepository;
-    private final StripeService stripeService;
-    private final Map<String, PaymentGatewayService> gatewayServices;
+    private final PaymentStateService paymentStateService;
+    private final GatewayBulkhead gatewayBulkhead;
+    private final PaymentStatisticsService paymentStatisticsService;
+    private final PaymentGatewayResponseRepository gatewayResponseRepository;
+    private final PaymentCache paymentCache;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentGatewayRouter paymentGatewayRouter;
+    private final RefundService refundService;
+    private final PaymentRateLimiter paymentRateLimiter;
+    private final ReadRouting readRouting;
+    private final PaymentArchive paymentArchive;
 
-    @Transactional
+    // Sem @Transactional: a chamada ao gateway não pode segurar conexão do pool
     public Payment processPayment(PaymentRequestDTO request) {
-        log.info("Processando pagamento para cliente: {}", request.getCustomerEmail());
-
-        // Selecionar o gateway de pagamento
-        PaymentGatewayService gatewayService = getGatewayService(request.getGateway());
+        return processPayment(request, null);
+    }
 
-        // Processar pagamento no gateway
-        Payment payment = gatewayService.processPayment(request);
+    // idempotencyKey, quando presente, é ligada ao pagamento na mesma transação que o cria
+    public Payment processPayment(PaymentRequestDTO request, String idempotencyKey) {
+        log.debug("Processando pagamento para cliente: {}", request.getCustomerEmail());
+        paymentRateLimiter.checkCustomer(request.getCustomerId());
 
-        // Salvar no banco de dados
-        Payment savedPayment = paymentRepository.save(payment);
+        // Gateways que atendem o pagamento, do mais para o menos indicado
+        List<ResilientPaymentGatewayService> candidates = paymentGatewayRouter.route(request);
 
-        log.info("Pagamento salvo com ID: {}", savedPayment.getId());
-        return savedPayment;
+        return paymentMetrics.trackInFlight(() -> processWithFailover(request, idempotencyKey, candidates));
     }
 
-    @Transactional(readOnly = true)
-    public Payment getPaymentById(Long id) {
-        return paymentRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+    private Payment processWithFailover(PaymentRequestDTO request, String idempotencyKey,
+                                        List<ResilientPaymentGatewayService> candidates) {
+        RuntimeException lastRejection = null;
+        for (ResilientPaymentGatewayService gatewayService : candidates) {
+            String gateway = gatewayService.getGateway();
+            AtomicBoolean started = new AtomicBoolean();
+            try {
+                paymentRateLimiter.checkGateway(gateway);
+                // O bulkhead limita os fluxos simultâneos por gateway, incluindo as transações curtas
+                return gatewayBulkhead.execute(gateway, () -> {
+                    if (!gatewayService.isAvailable()) {
+                        throw new GatewayUnavailableException("Gateway " + gateway + " indisponível");
+                    }
+                    started.set(true);
+                    return processWithGateway(request, idempotencyKey, gateway, gatewayService);
+                });
+            } catch (GatewayUnavailableException | RateLimitExceededException e) {
+                if (started.get()) {
+                    throw e;
+                }
+                // Nada foi gravado nem enviado ao gateway: seguro tentar o próximo candidato
+                log.warn("Gateway {} recusou o pagamento ({}), tentando o próximo", gateway, e.getMessage());
+                lastRejection = e;
+            }
+        }
+        throw lastRejection;
     }
 
-    @Transactional(readOnly = true)
-    public Payment getPaymentByPaymentId(String paymentId) {
-        return paymentRepository.findByPaymentId(paymentId)
-                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+    private Payment processWithGateway(PaymentRequestDTO request, String idempotencyKey, String gateway,
+                                       PaymentGatewayService gatewayService) {
+        // Fase 1: registrar o pagamento como PROCESSING em uma transação curta
+        Payment pending = paymentStateService.createProcessing(request, gateway, idempotencyKey);
+
+        // Fase 2: processar pagamento no gateway sem conexão de banco presa
+        Payment gatewayResult;
+        try {
+            gatewayResult = paymentMetrics.recordGatewayCall(gateway, PaymentMetrics.CHARGE,
+                    () -> gatewayService.processPayment(request, pending.getPaymentId()));
+        } catch (GatewayTimeoutException e) {
+            // Resultado desconhecido: fica em PROCESSING e a recuperação consulta o gateway pela referência
+            log.warn("Pagamento {} sem resposta do gateway: {}", pending.getId(), e.getMessage());
+            throw new GatewayTimeoutException(e.getMessage(), pending.getId());
+        } catch (RuntimeException e) {
+            paymentStateService.markFailed(pending.getId(), "Erro no gateway: " + e.getMessage());
+            throw e;
+        }
+
+        // Fase 3: finalizar o status em outra transação curta. A cobrança já pode ter sido feita:
+        // se a gravação falhar, o pagamento fica em PROCESSING como em um timeout
+        Payment savedPayment;
+        try {
+            savedPayment = paymentStateService.complete(pending.getId(), gatewayResult);
+        } catch (RuntimeException e) {
+            log.error("Pagamento {} processado no gateway mas não finalizado: {}", pending.getId(), e.getMessage(), e);
+            throw new GatewayTimeoutException("Resultado do gateway não registrado: " + e.getMessage(), pending.getId());
+        }
+
+        log.debug("Pagamento salvo com ID: {}", savedPayment.getId());
+        return savedPayment;
     }
 
-    @Transactional(readOnly = true)
-    public List<Payment> getPaymentsByCustomer(String customerId) {
-        return paymentRepository.findByCustomerId(customerId);
+    // Variante assíncrona: nenhuma thread fica presa enquanto o gateway responde. As transações curtas
+    // continuam bloqueantes (JDBC) e a finalização roda em virtual thread quando a resposta chega.
+    public CompletableFuture<Payment> processPaymentAsync(PaymentRequestDTO request) {
+        log.debug("Processando pagamento assíncrono para cliente: {}", request.getCustomerEmail());
+        paymentRateLimiter.checkCustomer(request.getCustomerId());
+
+        List<ResilientPaymentGatewayService> candidates = paymentGatewayRouter.route(request);
+
+        return paymentMetrics.trackInFlightAsync(() -> processAsyncWithFailover(request, candidates));
     }
 
-    @Transactional(readOnly = true)
-    public List<Payment> getPaymentsByStatus(String status) {
-        return paymentRepository.findByStatus(PaymentStatus.valueOf(status.toUpperCase()));
+    private CompletableFuture<Payment> processAsyncWithFailover(PaymentRequestDTO request,
+                                                                List<ResilientPaymentGatewayService> candidates) {
+        RuntimeException lastRejection = null;
+        for (ResilientPaymentGatewayService gatewayService : candidates) {
+            String gateway = gatewayService.getGateway();
+            if (!gatewayService.isAvailable()) {
+                lastRejection = new GatewayUnavailableException("Gateway " + gateway + " indisponível");
+                continue;
+            }
+            try {
+                paymentRateLimiter.checkGateway(gateway);
+                // O bulkhead só rejeita antes de iniciar o fluxo: seguro tentar o próximo candidato
+                return gatewayBulkhead.executeAsync(gateway, () -> processWithGatewayAsync(request, gateway, gatewayService));
+            } catch (GatewayUnavailableException | RateLimitExceededException e) {
+                log.warn("Gateway {} recusou o pagamento ({}), tentando o próximo", gateway, e.getMessage());
+                lastRejection = e;
+            }
+        }
+        throw lastRejection;
     }
 
-    @Transactional
-    public Payment refundPayment(RefundRequestDTO request) {
-        log.info("Processando reembolso para pagamento: {}", request.getPaymentId());
+    private CompletableFuture<Payment> processWithGatewayAsync(PaymentRequestDTO request, String gateway,
+                                                               PaymentGatewayService gatewayService) {
+        Payment pending = paymentStateService.createProcessing(request, gateway);
 
-        // Buscar pagamento original
-        Payment originalPayment = getPaymentByPaymentId(request.getPaymentId());
+        return paymentMetrics.recordGatewayCallAsync(gateway, PaymentMetrics.CHARGE,
+                        () -> gatewayService.processPaymentAsync(request, pending.getPaymentId()))
+                .handleAsync((gatewayResult, error) -> {
+                    if (error == null) {
+                        return paymentStateService.complete(pending.getId(), gatewayResult);
+                    }
 
-        // Verificar se o pagamento pode ser reembolsado
-        if (originalPayment.getStatus() != PaymentStatus.SUCCESS) {
-            throw new RuntimeException("Somente pagamentos com status SUCCESS podem ser reembolsados");
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+                    if (cause instanceof GatewayTimeoutException) {
+                        log.warn("Pagamento {} sem resposta do gateway: {}", pending.getId(), cause.getMessage());
+                    } else {
+                        paymentStateService.markFailed(pending.getId(), "Erro no gateway: " + cause.getMessage());
+                    }
+                    throw new CompletionException(cause);
+                }, COMPLETION_EXECUTOR);
+    }
+
+    // Sem @Transactional: um hit no cache não deve abrir transação nem pegar conexão.
+    // Fora de payments, o pagamento pode ter sido movido para o arquivo
+    public PaymentResponseDTO getPaymentById(Long id) {
+        PaymentResponseDTO payment = paymentCache.get(PaymentCache.byId(id),
+                key -> readRouting.onReplicaOrPrimary(() -> paymentRepository.findResponseById(id)
+                        .or(() -> paymentArchive.findResponseById(id))
+                        .orElse(null), ReadRouting.byId(id)));
+        if (payment == null) {
+            throw new RuntimeException("Pagamento não encontrado");
         }
+        return payment;
+    }
 
-        // Selecionar o gateway apropriado
-        PaymentGatewayService gatewayService = getGatewayService(originalPayment.getGateway());
+    public PaymentResponseDTO getPaymentByPaymentId(String paymentId) {
+        PaymentResponseDTO payment = paymentCache.get(PaymentCache.byPaymentId(paymentId),
+                key -> readRouting.onReplicaOrPrimary(() -> paymentRepository.findResponseByPaymentId(paymentId)
+                        .or(() -> paymentArchive.findResponseByPaymentId(paymentId))
+                        .orElse(null), ReadRouting.byPaymentId(paymentId)));
+        if (payment == null) {
+            throw new RuntimeException("Pagamento não encontrado");
+        }
+        return payment;
+    }
 
-        // Processar reembolso no gateway
-        Payment refund = gatewayService.refundPayment(
-                request.getPaymentId(),
-                request.getAmount().doubleValue(),
-                request.getReason()
-        );
+    public PaymentCacheStatistics getCacheStatistics() {
+        return paymentCache.statistics();
+    }
 
-        if (refund == null) {
-            throw new RuntimeException("Falha ao processar reembolso no gateway");
-        }
+    // Listagens vão para a réplica quando ela está em dia; as do cliente ficam no primário
+    // enquanto uma escrita recente dele ainda não foi replicada
+    @Transactional(readOnly = true)
+    public List<PaymentResponseDTO> getPaymentsByCustomer(String customerId) {
+        return readRouting.onReplica(() -> paymentRepository.findResponsesByCustomerId(customerId),
+                ReadRouting.byCustomer(customerId));
+    }
 
-        // Atualizar status do pagamento original
-        originalPayment.setStatus(PaymentStatus.REFUNDED);
-        paymentRepository.save(originalPayment);
+    @Transactional(readOnly = true)
+    public List<PaymentResponseDTO> getPaymentsByStatus(String status) {
+        PaymentStatus paymentStatus = PaymentStatus.valueOf(status.toUpperCase());
+        return readRouting.onReplica(() -> paymentRepository.findResponsesByStatus(paymentStatus));
+    }
 
-        // Salvar registro do reembolso
-        Payment refundPayment = new Payment();
-        refundPayment.setPaymentId(refund.getPaymentId() + "_refund");
-        refundPayment.setCustomerId(originalPayment.getCustomerId());
-        refundPayment.setCustomerEmail(originalPayment.getCustomerEmail());
-        refundPayment.setAmount(request.getAmount().negate()); // Valor negativo para reembolso
-        refundPayment.setCurrency(originalPayment.getCurrency());
-        refundPayment.setPaymentMethod(originalPayment.getPaymentMethod());
-        refundPayment.setGateway(originalPayment.getGateway());
-        refundPayment.setDescription("Reembolso: " + (request.getReason() != null ? request.getReason() : ""));
-        refundPayment.setStatus(PaymentStatus.REFUNDED);
-        refundPayment.setGatewayResponse(refund.getGatewayResponse());
+    @Transactional(readOnly = true)
+    public PaymentPageDTO getPaymentsByCustomer(String customerId, String cursor, int size) {
+        PaymentCursor after = PaymentCursor.decode(cursor);
+        List<PaymentResponseDTO> rows = readRouting.onReplica(() -> after == null
+                ? paymentRepository.findFirstPageByCustomerId(customerId, Limit.of(size + 1))
+                : paymentRepository.findPageByCustomerIdAfter(customerId, after.createdAt(), after.id(), Limit.of(size + 1)),
+                ReadRouting.byCustomer(customerId));
+        return toPage(rows, size);
+    }
 
-        return paymentRepository.save(refundPayment);
+    @Transactional(readOnly = true)
+    public PaymentPageDTO getPaymentsByStatus(String status, String cursor, int size) {
+        PaymentStatus paymentStatus = PaymentStatus.valueOf(status.toUpperCase());
+        PaymentCursor after = PaymentCursor.decode(cursor);
+        List<PaymentResponseDTO> rows = readRouting.onReplica(() -> after == null
+                ? paymentRepository.findFirstPageByStatus(paymentStatus, Limit.of(size + 1))
+                : paymentRepository.findPageByStatusAfter(paymentStatus, after.createdAt(), after.id(), Limit.of(size + 1)));
+        return toPage(rows, size);
     }
 
+    // Projeções não entram no contexto de persistência: a memória fica constante
     @Transactional(readOnly = true)
-    public Map<String, Object> getPaymentStatistics() {
-        List<Payment> allPayments = paymentRepository.findAll();
+    public void streamPaymentsByCustomer(String customerId, Consumer<PaymentResponseDTO> consumer) {
+        readRouting.runOnReplica(() -> {
+            try (Stream<PaymentResponseDTO> payments = paymentRepository.streamByCustomerId(customerId)) {
+                payments.forEach(consumer);
+            }
+        }, ReadRouting.byCustomer(customerId));
+    }
 
-        BigDecimal totalAmount = allPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.SUCCESS)
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    @Transactional(readOnly = true)
+    public void streamPaymentsByStatus(String status, Consumer<PaymentResponseDTO> consumer) {
+        PaymentStatus paymentStatus = PaymentStatus.valueOf(status.toUpperCase());
+        readRouting.runOnReplica(() -> {
+            try (Stream<PaymentResponseDTO> payments = paymentRepository.streamByStatus(paymentStatus)) {
+                payments.forEach(consumer);
+            }
+        });
+    }
 
-        long successfulPayments = allPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.SUCCESS)
-                .count();
+    @Transactional(readOnly = true)
+    public String getGatewayResponse(Long id) {
+        return readRouting.onReplica(() -> gatewayResponseRepository.findById(id)
+                        .map(PaymentGatewayResponse::getPayloadAsString)
+                        .or(() -> paymentArchive.findGatewayResponse(id)), ReadRouting.byId(id))
+                .orElseThrow(() -> new RuntimeException("Resposta do gateway não encontrada"));
+    }
 
-        long failedPayments = allPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.FAILED)
-                .count();
+    // Reserva, chamada ao gateway e finalização ficam no RefundService (lock otimista por pagamento)
+    public Payment refundPayment(RefundRequestDTO request) {
+        return refundService.refundPayment(request);
+    }
 
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalAmount", totalAmount);
-        stats.put("successfulPayments", successfulPayments);
-        stats.put("failedPayments", failedPayments);
-        stats.put("totalTransactions", allPayments.size());
+    public Map<String, Object> getPaymentStatistics() {
+        return paymentStatisticsService.getStatistics();
+    }
 
-        return stats;
+    public List<Map<String, Object>> getPaymentStatisticsRollup(PaymentStatisticsService.Granularity granularity,
+                                                                LocalDateTime from, LocalDateTime to) {
+        return paymentStatisticsService.getRollup(granularity, from, to);
     }
 
-    private PaymentGatewayService getGatewayService(String gateway) {
-        if ("STRIPE".equalsIgnoreCase(gateway)) {
-            return stripeService;
+    private PaymentPageDTO toPage(List<PaymentResponseDTO> rows, int size) {
+        // rows foi buscado com limite size + 1 para detectar a próxima página
+        if (rows.size() <= size) {
+            return new PaymentPageDTO(rows, null);
         }
-        // Adicionar outros gateways aqui (ex: PagSeguroService)
-        throw new RuntimeException("Gateway não suportado: " + gateway);
+        List<PaymentResponseDTO> page = rows.subList(0, size);
+        return new PaymentPageDTO(page, PaymentCursor.of(page.get(size - 1)).encode());
     }
+
 }
\ No newline at end of file
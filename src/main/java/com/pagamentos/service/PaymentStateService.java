@@ -0,0 +1,253 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentGatewayResponse;
+import com.pagamentos.model.PaymentRefund;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.model.RefundStatus;
+import com.pagamentos.repository.IdempotencyRecordRepository;
+import com.pagamentos.repository.PaymentGatewayResponseRepository;
+import com.pagamentos.repository.PaymentRefundRepository;
+import com.pagamentos.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStateService {
+
+    public static final String PENDING_PREFIX = "pending_";
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentGatewayResponseRepository gatewayResponseRepository;
+    private final PaymentRefundRepository refundRepository;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Transações curtas: nenhum método aqui chama o gateway
+    @Transactional
+    public Payment createProcessing(PaymentRequestDTO request, String gateway) {
+        return createProcessing(request, gateway, null);
+    }
+
+    // A chave de idempotência fica ligada ao pagamento no mesmo commit: se o nó cair antes de finalizar,
+    // as retentativas acompanham o pagamento até a conciliação tirá-lo de PROCESSING
+    @Transactional
+    public Payment createProcessing(PaymentRequestDTO request, String gateway, String idempotencyKey) {
+        Payment saved = paymentRepository.save(newProcessingPayment(request, gateway));
+        if (idempotencyKey != null) {
+            idempotencyRecordRepository.bindPayment(idempotencyKey, saved.getId());
+        }
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(saved, null));
+        return saved;
+    }
+
+    // Um INSERT em batch para o lote inteiro (hibernate.jdbc.batch_size); gateways[i] é o escolhido para requests[i]
+    @Transactional
+    public List<Payment> createProcessingBatch(List<PaymentRequestDTO> requests, List<String> gateways) {
+        List<Payment> payments = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            payments.add(newProcessingPayment(requests.get(i), gateways.get(i)));
+        }
+
+        List<Payment> saved = paymentRepository.saveAll(payments);
+        saved.forEach(payment -> eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, null)));
+        return saved;
+    }
+
+    @Transactional
+    public Payment complete(Long id, Payment gatewayResult) {
+        Payment payment = paymentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+
+        if (payment.getStatus() != PaymentStatus.PROCESSING) {
+            // Outro fluxo (ex: recuperação) já finalizou este pagamento
+            log.warn("Pagamento {} já finalizado com status {}", id, payment.getStatus());
+            return payment;
+        }
+
+        applyGatewayResult(payment, gatewayResult);
+        storeGatewayResponse(id, gatewayResult.getGatewayResponse());
+        return payment;
+    }
+
+    // Finaliza um lote: UPDATEs e INSERTs das respostas saem agrupados no flush
+    @Transactional
+    public List<Payment> completeBatch(Map<Long, Payment> gatewayResults) {
+        List<Payment> payments = paymentRepository.findAllById(gatewayResults.keySet());
+        List<PaymentGatewayResponse> responses = new ArrayList<>(payments.size());
+
+        for (Payment payment : payments) {
+            if (payment.getStatus() != PaymentStatus.PROCESSING) {
+                log.warn("Pagamento {} já finalizado com status {}", payment.getId(), payment.getStatus());
+                continue;
+            }
+            Payment gatewayResult = gatewayResults.get(payment.getId());
+            applyGatewayResult(payment, gatewayResult);
+            if (gatewayResult.getGatewayResponse() != null) {
+                responses.add(PaymentGatewayResponse.of(payment.getId(), gatewayResult.getGatewayResponse()));
+            }
+        }
+
+        gatewayResponseRepository.saveAll(responses);
+        return payments;
+    }
+
+    @Transactional
+    public Payment markFailed(Long id, String reason) {
+        Payment payment = paymentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+
+        if (payment.getStatus() != PaymentStatus.PROCESSING) {
+            return payment;
+        }
+
+        payment.setStatus(PaymentStatus.FAILED);
+        storeGatewayResponse(id, reason);
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, PaymentStatus.PROCESSING));
+        return payment;
+    }
+
+    private Payment newProcessingPayment(PaymentRequestDTO request, String gateway) {
+        Payment payment = new Payment();
+        payment.setPaymentId(PENDING_PREFIX + UUID.randomUUID());
+        payment.setCustomerId(request.getCustomerId());
+        payment.setCustomerEmail(request.getCustomerEmail());
+        // Valor normalizado para a escala da moeda e código da moeda como constante do enum
+        Money money = request.toMoney();
+        payment.setAmount(money.toDecimal());
+        payment.setCurrency(money.currency().name());
+        payment.setPaymentMethod(request.getPaymentMethod().toString());
+        payment.setGateway(gateway);
+        payment.setDescription(request.getDescription());
+        payment.setStatus(PaymentStatus.PROCESSING);
+        return payment;
+    }
+
+    private void applyGatewayResult(Payment payment, Payment gatewayResult) {
+        if (gatewayResult.getPaymentId() != null) {
+            payment.setPaymentId(gatewayResult.getPaymentId());
+        }
+        payment.setStatus(gatewayResult.getStatus());
+        if (gatewayResult.getStatus() == PaymentStatus.SUCCESS) {
+            payment.setProcessedAt(gatewayResult.getProcessedAt() != null
+                    ? gatewayResult.getProcessedAt()
+                    : LocalDateTime.now());
+        }
+
+        if (payment.getStatus() != PaymentStatus.PROCESSING) {
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, PaymentStatus.PROCESSING));
+        }
+    }
+
+    // Reserva o valor no saldo do pagamento antes de chamar o gateway. Alterar refundedAmount
+    // incrementa a versão: reservas simultâneas no mesmo pagamento conflitam no commit
+    @Transactional
+    public PaymentRefund reserveRefund(String paymentId, BigDecimal amount, String reason) {
+        Payment payment = paymentRepository.findByPaymentId(paymentId)
+                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+
+        if (!payment.getStatus().isRefundable()) {
+            throw new RuntimeException("Somente pagamentos com status SUCCESS ou PARTIALLY_REFUNDED podem ser reembolsados");
+        }
+
+        BigDecimal available = payment.getAmount().subtract(payment.getRefundedAmount());
+        if (amount.compareTo(available) > 0) {
+            throw new RuntimeException("Valor do reembolso excede o saldo disponível: " + available);
+        }
+        payment.setRefundedAmount(payment.getRefundedAmount().add(amount));
+
+        PaymentRefund refund = new PaymentRefund();
+        refund.setOriginalPaymentId(payment.getId());
+        refund.setChargeId(payment.getPaymentId());
+        refund.setGateway(payment.getGateway());
+        // Rejeita frações abaixo da unidade mínima da moeda do pagamento
+        refund.setAmount(Money.of(amount, payment.getCurrency()).toDecimal());
+        refund.setCurrency(payment.getCurrency());
+        refund.setReason(reason);
+        refund.setStatus(RefundStatus.PENDING);
+        refund.setCreatedAt(LocalDateTime.now());
+        return refundRepository.save(refund);
+    }
+
+    // Confirma o reembolso e grava o lançamento negativo correspondente em payments
+    @Transactional
+    public Payment completeRefund(Long refundId, Payment gatewayResult) {
+        PaymentRefund refund = refundRepository.findById(refundId)
+                .orElseThrow(() -> new RuntimeException("Reembolso não encontrado"));
+        if (refund.getStatus() != RefundStatus.PENDING) {
+            throw new RuntimeException("Reembolso " + refundId + " já finalizado com status " + refund.getStatus());
+        }
+        // Duas finalizações simultâneas não enxergam o SUCCEEDED uma da outra; a versão forçada
+        // faz a segunda repetir e recalcular o status com a soma atualizada
+        Payment payment = paymentRepository.findByIdForceIncrement(refund.getOriginalPaymentId())
+                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+
+        refund.setStatus(RefundStatus.SUCCEEDED);
+        refund.setCompletedAt(LocalDateTime.now());
+
+        // Só os reembolsos concluídos decidem o status; os reservados ainda podem falhar
+        BigDecimal refunded = refundRepository.sumSucceeded(payment.getId());
+        PaymentStatus previous = payment.getStatus();
+        PaymentStatus next = refunded.compareTo(payment.getAmount()) >= 0
+                ? PaymentStatus.REFUNDED
+                : PaymentStatus.PARTIALLY_REFUNDED;
+        if (previous != next && previous.canTransitionTo(next)) {
+            payment.setStatus(next);
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, previous));
+        }
+
+        Payment refundPayment = new Payment();
+        refundPayment.setPaymentId(payment.getPaymentId() + "_refund_" + refund.getId());
+        refundPayment.setCustomerId(payment.getCustomerId());
+        refundPayment.setCustomerEmail(payment.getCustomerEmail());
+        refundPayment.setAmount(refund.getAmount().negate()); // Valor negativo para reembolso
+        refundPayment.setCurrency(payment.getCurrency());
+        refundPayment.setPaymentMethod(payment.getPaymentMethod());
+        refundPayment.setGateway(payment.getGateway());
+        refundPayment.setDescription("Reembolso: " + (refund.getReason() != null ? refund.getReason() : ""));
+        refundPayment.setStatus(PaymentStatus.REFUNDED);
+
+        Payment savedRefund = paymentRepository.save(refundPayment);
+        storeGatewayResponse(savedRefund.getId(), gatewayResult.getGatewayResponse());
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(savedRefund, null));
+        return savedRefund;
+    }
+
+    // O gateway recusou: devolve o valor reservado ao saldo do pagamento
+    @Transactional
+    public void releaseRefund(Long refundId) {
+        PaymentRefund refund = refundRepository.findById(refundId)
+                .orElseThrow(() -> new RuntimeException("Reembolso não encontrado"));
+        if (refund.getStatus() != RefundStatus.PENDING) {
+            return;
+        }
+        Payment payment = paymentRepository.findById(refund.getOriginalPaymentId())
+                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+
+        refund.setStatus(RefundStatus.FAILED);
+        refund.setCompletedAt(LocalDateTime.now());
+        payment.setRefundedAmount(payment.getRefundedAmount().subtract(refund.getAmount()));
+    }
+
+    @Transactional
+    public void storeGatewayResponse(Long id, String response) {
+        if (response != null) {
+            gatewayResponseRepository.save(PaymentGatewayResponse.of(id, response));
+        }
+    }
+}
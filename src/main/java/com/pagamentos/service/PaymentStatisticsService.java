@@ -0,0 +1,267 @@
+package com.pagamentos.service;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.ArchivedPaymentRepository;
+import com.pagamentos.repository.PaymentAggregate;
+import com.pagamentos.repository.PaymentRepository;
+import com.pagamentos.repository.PaymentTimeAggregate;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Estatísticas mantidas em memória: carregadas uma vez por agregação no banco e
+// atualizadas a cada transição de status, sem varrer a tabela de pagamentos.
+@Service
+@Slf4j
+public class PaymentStatisticsService {
+
+    public enum Granularity {
+        MINUTE(ChronoUnit.MINUTES),
+        HOUR(ChronoUnit.HOURS),
+        DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        LocalDateTime truncate(LocalDateTime time) {
+            return time.truncatedTo(unit);
+        }
+    }
+
+    private final PaymentRepository paymentRepository;
+    private final ArchivedPaymentRepository archivedPaymentRepository;
+    private final Map<Granularity, Duration> retention;
+
+    private volatile ConcurrentMap<DimensionKey, Totals> totals = new ConcurrentHashMap<>();
+    private volatile Map<Granularity, ConcurrentNavigableMap<LocalDateTime, Totals[]>> rollups = emptyRollups();
+
+    public PaymentStatisticsService(PaymentRepository paymentRepository,
+                                    ArchivedPaymentRepository archivedPaymentRepository,
+                                    @Value("${app.statistics.retention.minute:PT24H}") Duration minuteRetention,
+                                    @Value("${app.statistics.retention.hour:P7D}") Duration hourRetention,
+                                    @Value("${app.statistics.retention.day:P90D}") Duration dayRetention) {
+        this.paymentRepository = paymentRepository;
+        this.archivedPaymentRepository = archivedPaymentRepository;
+        this.retention = new EnumMap<>(Map.of(
+                Granularity.MINUTE, minuteRetention,
+                Granularity.HOUR, hourRetention,
+                Granularity.DAY, dayRetention));
+    }
+
+    @PostConstruct
+    public void bootstrap() {
+        reload();
+    }
+
+    // Recarrega periodicamente para corrigir divergências entre nós
+    @Scheduled(initialDelayString = "${app.statistics.resync-interval-ms:600000}",
+            fixedDelayString = "${app.statistics.resync-interval-ms:600000}")
+    public void reload() {
+        long start = System.nanoTime();
+
+        // Totais de todo o histórico: tabela quente mais o arquivo. As séries por tempo têm retenção
+        // menor que a idade de arquivamento e vêm só de payments
+        ConcurrentMap<DimensionKey, Totals> loadedTotals = new ConcurrentHashMap<>();
+        addTotals(loadedTotals, paymentRepository.aggregateByDimensions());
+        addTotals(loadedTotals, archivedPaymentRepository.aggregateByDimensions());
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Granularity, ConcurrentNavigableMap<LocalDateTime, Totals[]>> loadedRollups = emptyRollups();
+        loadRollup(loadedRollups, Granularity.DAY, paymentRepository::aggregateByDay, now);
+        loadRollup(loadedRollups, Granularity.HOUR, paymentRepository::aggregateByHour, now);
+        loadRollup(loadedRollups, Granularity.MINUTE, paymentRepository::aggregateByMinute, now);
+
+        this.totals = loadedTotals;
+        this.rollups = loadedRollups;
+
+        log.info("Estatísticas carregadas em {} ms", Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private void addTotals(ConcurrentMap<DimensionKey, Totals> loadedTotals, List<PaymentAggregate> aggregates) {
+        for (PaymentAggregate aggregate : aggregates) {
+            DimensionKey key = new DimensionKey(aggregate.getStatus(), aggregate.getGateway(),
+                    aggregate.getCurrency(), aggregate.getPaymentMethod());
+            loadedTotals.computeIfAbsent(key, k -> new Totals())
+                    .add(aggregate.getTotalCount(), aggregate.getTotalAmount());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.statistics.prune-interval-ms:60000}")
+    public void pruneRollups() {
+        LocalDateTime now = LocalDateTime.now();
+        rollups.forEach((granularity, buckets) ->
+                buckets.headMap(now.minus(retention.get(granularity))).clear());
+    }
+
+    @TransactionalEventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        if (event.previousStatus() == event.newStatus()) {
+            return;
+        }
+
+        BigDecimal amount = event.amount() != null ? event.amount() : BigDecimal.ZERO;
+
+        if (event.previousStatus() != null) {
+            totals.computeIfAbsent(key(event, event.previousStatus()), k -> new Totals()).add(-1, amount.negate());
+            addToRollups(event.createdAt(), event.previousStatus(), -1, amount.negate());
+        }
+        totals.computeIfAbsent(key(event, event.newStatus()), k -> new Totals()).add(1, amount);
+        addToRollups(event.createdAt(), event.newStatus(), 1, amount);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Totals> byStatus = new LinkedHashMap<>();
+        Map<String, Totals> byGateway = new LinkedHashMap<>();
+        Map<String, Totals> byCurrency = new LinkedHashMap<>();
+        Map<String, Totals> byPaymentMethod = new LinkedHashMap<>();
+        long totalTransactions = 0;
+
+        for (Map.Entry<DimensionKey, Totals> entry : totals.entrySet()) {
+            DimensionKey key = entry.getKey();
+            long count = entry.getValue().count.sum();
+            BigDecimal amount = entry.getValue().amount.get();
+            // Por gateway, moeda e método o valor considera apenas pagamentos aprovados
+            BigDecimal successAmount = key.status() == PaymentStatus.SUCCESS ? amount : BigDecimal.ZERO;
+
+            totalTransactions += count;
+            byStatus.computeIfAbsent(key.status().name(), k -> new Totals()).add(count, amount);
+            byGateway.computeIfAbsent(key.gateway(), k -> new Totals()).add(count, successAmount);
+            byCurrency.computeIfAbsent(key.currency(), k -> new Totals()).add(count, successAmount);
+            byPaymentMethod.computeIfAbsent(key.paymentMethod(), k -> new Totals()).add(count, successAmount);
+        }
+
+        Totals success = byStatus.getOrDefault(PaymentStatus.SUCCESS.name(), new Totals());
+        Totals failed = byStatus.getOrDefault(PaymentStatus.FAILED.name(), new Totals());
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalAmount", success.amount.get());
+        stats.put("successfulPayments", success.count.sum());
+        stats.put("failedPayments", failed.count.sum());
+        stats.put("totalTransactions", totalTransactions);
+        stats.put("byStatus", toMap(byStatus));
+        stats.put("byGateway", toMap(byGateway));
+        stats.put("byCurrency", toMap(byCurrency));
+        stats.put("byPaymentMethod", toMap(byPaymentMethod));
+
+        return stats;
+    }
+
+    public List<Map<String, Object>> getRollup(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        List<Map<String, Object>> result = new ArrayList<>();
+
+        rollups.get(granularity).subMap(granularity.truncate(from), true, to, true).forEach((bucketStart, byStatus) -> {
+            Map<String, Totals> statuses = new LinkedHashMap<>();
+            long count = 0;
+            for (PaymentStatus status : PaymentStatus.values()) {
+                Totals totals = byStatus[status.ordinal()];
+                long statusCount = totals.count.sum();
+                if (statusCount != 0) {
+                    statuses.put(status.name(), totals);
+                    count += statusCount;
+                }
+            }
+
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("bucketStart", bucketStart);
+            bucket.put("totalTransactions", count);
+            bucket.put("totalAmount", byStatus[PaymentStatus.SUCCESS.ordinal()].amount.get());
+            bucket.put("byStatus", toMap(statuses));
+            result.add(bucket);
+        });
+
+        return result;
+    }
+
+    private void loadRollup(Map<Granularity, ConcurrentNavigableMap<LocalDateTime, Totals[]>> target,
+                            Granularity granularity,
+                            Function<LocalDateTime, List<PaymentTimeAggregate>> query,
+                            LocalDateTime now) {
+        LocalDateTime since = granularity.truncate(now.minus(retention.get(granularity)));
+        for (PaymentTimeAggregate aggregate : query.apply(since)) {
+            LocalDateTime bucketStart = aggregate.getDay().atTime(aggregate.getHour(), aggregate.getMinute());
+            target.get(granularity).computeIfAbsent(bucketStart, k -> newBucket())[aggregate.getStatus().ordinal()]
+                    .add(aggregate.getTotalCount(), aggregate.getTotalAmount());
+        }
+    }
+
+    private void addToRollups(LocalDateTime createdAt, PaymentStatus status, long count, BigDecimal amount) {
+        if (createdAt == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        rollups.forEach((granularity, buckets) -> {
+            if (createdAt.isAfter(now.minus(retention.get(granularity)))) {
+                buckets.computeIfAbsent(granularity.truncate(createdAt), k -> newBucket())[status.ordinal()]
+                        .add(count, amount);
+            }
+        });
+    }
+
+    private DimensionKey key(PaymentStatusChangedEvent event, PaymentStatus status) {
+        return new DimensionKey(status, event.gateway(), event.currency(), event.paymentMethod());
+    }
+
+    private Map<String, Map<String, Object>> toMap(Map<String, Totals> source) {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        source.forEach((name, totals) -> result.put(name, Map.of(
+                "count", totals.count.sum(),
+                "amount", totals.amount.get())));
+        return result;
+    }
+
+    private static Map<Granularity, ConcurrentNavigableMap<LocalDateTime, Totals[]>> emptyRollups() {
+        Map<Granularity, ConcurrentNavigableMap<LocalDateTime, Totals[]>> rollups = new EnumMap<>(Granularity.class);
+        for (Granularity granularity : Granularity.values()) {
+            rollups.put(granularity, new ConcurrentSkipListMap<>());
+        }
+        return rollups;
+    }
+
+    private static Totals[] newBucket() {
+        Totals[] bucket = new Totals[PaymentStatus.values().length];
+        for (int i = 0; i < bucket.length; i++) {
+            bucket[i] = new Totals();
+        }
+        return bucket;
+    }
+
+    private record DimensionKey(PaymentStatus status, String gateway, String currency, String paymentMethod) {
+    }
+
+    private static final class Totals {
+        private final LongAdder count = new LongAdder();
+        private final AtomicReference<BigDecimal> amount = new AtomicReference<>(BigDecimal.ZERO);
+
+        void add(long delta, BigDecimal value) {
+            count.add(delta);
+            if (value != null && value.signum() != 0) {
+                amount.accumulateAndGet(value, BigDecimal::add);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.RefundRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.RefundConflictException;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentRefund;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.ratelimit.PaymentRateLimiter;
+import com.pagamentos.repository.PaymentRefundRepository;
+import com.pagamentos.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Reembolsos parciais e concorrentes. O valor é reservado no pagamento (lock otimista) antes da
+// chamada ao gateway: reembolsos do mesmo pagamento se serializam só nas transações curtas,
+// e reembolsos de pagamentos diferentes não disputam nenhum lock.
+@Service
+@Slf4j
+public class RefundService {
+
+    private final PaymentStateService paymentStateService;
+    private final PaymentGatewayRouter paymentGatewayRouter;
+    private final GatewayBulkhead gatewayBulkhead;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentRateLimiter paymentRateLimiter;
+    private final PaymentRefundRepository refundRepository;
+    private final PaymentRepository paymentRepository;
+
+    @Value("${app.payment.refund.max-lock-attempts:10}")
+    private int maxLockAttempts;
+
+    @Value("${app.payment.refund.reconciliation.stale-after:PT10M}")
+    private Duration staleAfter;
+
+    @Value("${app.payment.refund.reconciliation.batch-size:100}")
+    private int reconciliationBatchSize;
+
+    public RefundService(PaymentStateService paymentStateService,
+                         PaymentGatewayRouter paymentGatewayRouter,
+                         GatewayBulkhead gatewayBulkhead,
+                         PaymentMetrics paymentMetrics,
+                         PaymentRateLimiter paymentRateLimiter,
+                         PaymentRefundRepository refundRepository,
+                         PaymentRepository paymentRepository) {
+        this.paymentStateService = paymentStateService;
+        this.paymentGatewayRouter = paymentGatewayRouter;
+        this.gatewayBulkhead = gatewayBulkhead;
+        this.paymentMetrics = paymentMetrics;
+        this.paymentRateLimiter = paymentRateLimiter;
+        this.refundRepository = refundRepository;
+        this.paymentRepository = paymentRepository;
+    }
+
+    // Sem @Transactional: a chamada ao gateway não pode segurar conexão do pool
+    public Payment refundPayment(RefundRequestDTO request) {
+        log.debug("Processando reembolso para pagamento: {}", request.getPaymentId());
+
+        // Mesmo limite por cliente das cobranças, antes de reservar qualquer valor
+        paymentRepository.findCustomerIdByPaymentId(request.getPaymentId())
+                .ifPresent(paymentRateLimiter::checkCustomer);
+
+        PaymentRefund refund = withLockRetry(request.getPaymentId(), () ->
+                paymentStateService.reserveRefund(request.getPaymentId(), request.getAmount(), request.getReason()));
+
+        // O reembolso sai sempre pelo gateway que fez a cobrança
+        PaymentGatewayService gatewayService = paymentGatewayRouter.getGateway(refund.getGateway());
+
+        Payment gatewayResult;
+        try {
+            // Acima do limite do gateway a reserva é desfeita e o cliente recebe 429 com Retry-After
+            paymentRateLimiter.checkGateway(refund.getGateway());
+            gatewayResult = gatewayBulkhead.execute(refund.getGateway(), () ->
+                    paymentMetrics.recordGatewayCall(refund.getGateway(), PaymentMetrics.REFUND, () ->
+                            gatewayService.refundPayment(
+                                    refund.getChargeId(),
+                                    refund.toMoney(),
+                                    refund.getReason(),
+                                    refundReference(refund)
+                            )));
+        } catch (GatewayTimeoutException e) {
+            // Resultado desconhecido: a reserva continua PENDING até a conciliação com o gateway
+            log.warn("Reembolso {} sem resposta do gateway: {}", refund.getId(), e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            withLockRetry(request.getPaymentId(), () -> {
+                paymentStateService.releaseRefund(refund.getId());
+                return null;
+            });
+            throw e;
+        }
+
+        if (gatewayResult == null || gatewayResult.getStatus() == PaymentStatus.FAILED) {
+            withLockRetry(request.getPaymentId(), () -> {
+                paymentStateService.releaseRefund(refund.getId());
+                return null;
+            });
+            throw new RuntimeException("Falha ao processar reembolso no gateway");
+        }
+
+        return withLockRetry(request.getPaymentId(), () -> paymentStateService.completeRefund(refund.getId(), gatewayResult));
+    }
+
+    // Reservas que ficaram PENDING: timeout no gateway ou completeRefund sem sucesso após as tentativas
+    // de lock. Consulta o gateway pela referência do reembolso e finaliza ou devolve o valor reservado
+    @Scheduled(fixedDelayString = "${app.payment.refund.reconciliation.interval-ms:60000}")
+    public void reconcilePending() {
+        List<PaymentRefund> pending = refundRepository.findPendingBefore(
+                LocalDateTime.now().minus(staleAfter), Limit.of(reconciliationBatchSize));
+        for (PaymentRefund refund : pending) {
+            try {
+                reconcile(refund);
+            } catch (RuntimeException e) {
+                // Continua PENDING: a próxima execução tenta de novo
+                log.warn("Reembolso {} não conciliado: {}", refund.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void reconcile(PaymentRefund refund) {
+        PaymentGatewayService gatewayService = paymentGatewayRouter.getGateway(refund.getGateway());
+        Payment gatewayResult = gatewayBulkhead.execute(refund.getGateway(), () ->
+                gatewayService.getRefundStatus(refund.getChargeId(), refundReference(refund)));
+
+        // Aceito pelo gateway (mesmo ainda em processamento lá): mesmo desfecho da chamada original
+        if (gatewayResult != null && gatewayResult.getStatus() != PaymentStatus.FAILED) {
+            withLockRetry(refund.getChargeId(), () -> paymentStateService.completeRefund(refund.getId(), gatewayResult));
+            log.info("Reembolso {} conciliado como concluído", refund.getId());
+        } else {
+            withLockRetry(refund.getChargeId(), () -> {
+                paymentStateService.releaseRefund(refund.getId());
+                return null;
+            });
+            log.info("Reembolso {} conciliado como não realizado, valor devolvido ao saldo", refund.getId());
+        }
+    }
+
+    // Estável por reembolso: é a chave de idempotência enviada ao gateway
+    private static String refundReference(PaymentRefund refund) {
+        return "refund_" + refund.getId();
+    }
+
+    // Conflito de versão significa que outro reembolso do mesmo pagamento acabou de commitar:
+    // relê e tenta de novo, com um pequeno atraso aleatório para as tentativas não colidirem em sequência
+    private <T> T withLockRetry(String paymentId, Supplier<T> operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxLockAttempts) {
+                    throw new RefundConflictException("Reembolsos concorrentes para o pagamento " + paymentId
+                            + ", tente novamente");
+                }
+                log.debug("Conflito de versão no pagamento {} (tentativa {})", paymentId, attempt);
+                sleep(ThreadLocalRandom.current().nextLong(1, 5L * attempt + 1));
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RefundConflictException("Interrompido aguardando reembolso concorrente");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.GatewayUnavailableException;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Envolve qualquer PaymentGatewayService com limite de concorrência adaptativo e circuit breaker.
+// Os timeouts de rede ficam no cliente de cada gateway (ex: StripeConfig); aqui só se decide
+// se a chamada sai ou falha na hora. Apenas getPaymentStatus, que é uma leitura, é repetido.
+@Slf4j
+public class ResilientPaymentGatewayService implements PaymentGatewayService {
+
+    private static final String PREFIX = "app.gateway.resilience.";
+
+    private final String gateway;
+    private final PaymentGatewayService delegate;
+    private final GatewayCircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final GatewayHealthStats healthStats = new GatewayHealthStats();
+    private final int statusMaxAttempts;
+    private final Duration statusRetryBackoff;
+
+    ResilientPaymentGatewayService(String gateway, PaymentGatewayService delegate,
+                                   GatewayCircuitBreaker circuitBreaker, AdaptiveConcurrencyLimit concurrencyLimit,
+                                   int statusMaxAttempts, Duration statusRetryBackoff) {
+        this.gateway = gateway;
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimit = concurrencyLimit;
+        this.statusMaxAttempts = statusMaxAttempts;
+        this.statusRetryBackoff = statusRetryBackoff;
+    }
+
+    // Configuração em app.gateway.resilience.*, com sobrescrita por gateway (ex: app.gateway.resilience.stripe.*)
+    static ResilientPaymentGatewayService wrap(String gateway, PaymentGatewayService delegate, Environment environment) {
+        String specific = PREFIX + gateway.toLowerCase() + ".";
+        PropertyReader properties = new PropertyReader(environment, specific);
+
+        GatewayCircuitBreaker circuitBreaker = new GatewayCircuitBreaker(
+                properties.getInt("circuit-breaker.failure-rate-threshold", 50),
+                properties.getInt("circuit-breaker.sliding-window-size", 50),
+                properties.getInt("circuit-breaker.minimum-calls", 20),
+                properties.getDuration("circuit-breaker.open-duration", "PT30S"),
+                properties.getInt("circuit-breaker.half-open-calls", 5));
+
+        AdaptiveConcurrencyLimit concurrencyLimit = new AdaptiveConcurrencyLimit(
+                properties.getInt("concurrency.initial-limit", 20),
+                properties.getInt("concurrency.min-limit", 5),
+                properties.getInt("concurrency.max-limit", 200),
+                properties.getDouble("concurrency.latency-tolerance", 2.0));
+
+        return new ResilientPaymentGatewayService(gateway, delegate, circuitBreaker, concurrencyLimit,
+                properties.getInt("status-retry.max-attempts", 3),
+                properties.getDuration("status-retry.backoff", "PT0.2S"));
+    }
+
+    @Override
+    public Payment processPayment(PaymentRequestDTO request) {
+        return call(() -> delegate.processPayment(request));
+    }
+
+    @Override
+    public Payment processPayment(PaymentRequestDTO request, String paymentReference) {
+        return call(() -> delegate.processPayment(request, paymentReference));
+    }
+
+    // Mesmas regras da versão bloqueante; a amostra de latência é registrada quando a resposta chega
+    @Override
+    public CompletableFuture<Payment> processPaymentAsync(PaymentRequestDTO request, String paymentReference) {
+        return callAsync(() -> delegate.processPaymentAsync(request, paymentReference));
+    }
+
+    @Override
+    public Payment getPaymentStatus(String paymentId) {
+        return read(() -> delegate.getPaymentStatus(paymentId));
+    }
+
+    @Override
+    public Payment getRefundStatus(String paymentId, String refundReference) {
+        return read(() -> delegate.getRefundStatus(paymentId, refundReference));
+    }
+
+    private Payment read(Supplier<Payment> lookup) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call(lookup);
+            } catch (GatewayTimeoutException e) {
+                // Consulta é idempotente: repetir não tem efeito colateral no gateway
+                if (attempt >= statusMaxAttempts) {
+                    throw e;
+                }
+                log.debug("Repetindo consulta de status no gateway {} (tentativa {})", gateway, attempt + 1);
+                backoff(attempt);
+            }
+        }
+    }
+
+    // Cobrança e reembolso nunca são repetidos aqui: a recuperação reconcilia pelo paymentReference
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason) {
+        return call(() -> delegate.refundPayment(paymentId, amount, reason));
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason, String refundReference) {
+        return call(() -> delegate.refundPayment(paymentId, amount, reason, refundReference));
+    }
+
+    @Override
+    public String generatePaymentMethodToken(PaymentRequestDTO request) {
+        return delegate.generatePaymentMethodToken(request);
+    }
+
+    public String getGateway() {
+        return gateway;
+    }
+
+    public GatewayCircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getLimit();
+    }
+
+    // Sem circuito aberto e com vaga no limite de concorrência: uma chamada agora não seria rejeitada
+    boolean isAvailable() {
+        return circuitBreaker.getState() != GatewayCircuitBreaker.State.OPEN
+                && concurrencyLimit.getInFlight() < concurrencyLimit.getLimit();
+    }
+
+    GatewayHealthStats getHealthStats() {
+        return healthStats;
+    }
+
+    private <T> T call(Supplier<T> operation) {
+        acquire();
+        long start = System.nanoTime();
+        try {
+            T result = operation.get();
+            onCompleted(start, false);
+            return result;
+        } catch (RuntimeException e) {
+            onCompleted(start, true);
+            throw e;
+        }
+    }
+
+    // Rejeições e erros síncronos também saem no future, como as falhas da própria chamada
+    private <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> operation) {
+        try {
+            acquire();
+        } catch (GatewayUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            onCompleted(start, true);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> onCompleted(start, error != null));
+    }
+
+    private void acquire() {
+        if (!concurrencyLimit.tryAcquire()) {
+            throw new GatewayUnavailableException("Gateway " + gateway + " no limite de concorrência, tente novamente");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            concurrencyLimit.release();
+            throw new GatewayUnavailableException("Gateway " + gateway + " indisponível (circuito aberto)");
+        }
+    }
+
+    private void onCompleted(long start, boolean failed) {
+        long rtt = System.nanoTime() - start;
+        if (failed) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+        concurrencyLimit.onSample(rtt, failed);
+        healthStats.record(rtt, failed);
+    }
+
+    private void backoff(int attempt) {
+        // Exponencial com jitter para não sincronizar as retentativas de vários nós
+        long base = statusRetryBackoff.toMillis() << (attempt - 1);
+        long delay = ThreadLocalRandom.current().nextLong(base / 2, base + base / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GatewayTimeoutException("Interrompido aguardando o gateway " + gateway);
+        }
+    }
+
+    private record PropertyReader(Environment environment, String specificPrefix) {
+
+        int getInt(String key, int defaultValue) {
+            return environment.getProperty(specificPrefix + key, Integer.class,
+                    environment.getProperty(PREFIX + key, Integer.class, defaultValue));
+        }
+
+        double getDouble(String key, double defaultValue) {
+            return environment.getProperty(specificPrefix + key, Double.class,
+                    environment.getProperty(PREFIX + key, Double.class, defaultValue));
+        }
+
+        Duration getDuration(String key, String defaultValue) {
+            return DurationStyle.detectAndParse(environment.getProperty(specificPrefix + key,
+                    environment.getProperty(PREFIX + key, defaultValue)));
+        }
+    }
+}
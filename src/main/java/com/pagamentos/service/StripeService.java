@@ -1,172 +1,467 @@
 package com.pagamentos.service;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.model.CurrencyCode;
+import com.pagamentos.model.Money;
 import com.pagamentos.model.Payment;
 import com.pagamentos.model.PaymentStatus;
 import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.ApiException;
+import com.stripe.exception.CardException;
+import com.stripe.exception.RateLimitException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Charge;
 import com.stripe.model.Refund;
+import com.stripe.model.StripeError;
+import com.stripe.net.ApiResource;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.ChargeCreateParams;
+import com.stripe.param.ChargeSearchParams;
 import com.stripe.param.RefundCreateParams;
+import com.stripe.param.RefundListParams;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 @Slf4j
 public class StripeService implements PaymentGatewayService {
 
+    private static final String PAYMENT_REFERENCE_METADATA = "payment_ref";
+    private static final String REFUND_REFERENCE_METADATA = "refund_ref";
+
+    // Corpo da charge assíncrona já em application/x-www-form-urlencoded: as chaves são fixas e só
+    // os valores variam, sem ChargeCreateParams, Map intermediário e FormEncoder a cada requisição
+    private static final String FORM_AMOUNT = "amount=";
+    private static final String FORM_CURRENCY = "&currency=";
+    private static final String FORM_SOURCE = "&source=";
+    private static final String FORM_DESCRIPTION = "&description=";
+    private static final String FORM_CUSTOMER_ID = "&metadata%5Bcustomer_id%5D=";
+    private static final String FORM_CUSTOMER_EMAIL = "&metadata%5Bcustomer_email%5D=";
+    private static final String FORM_PAYMENT_REFERENCE = "&metadata%5B" + PAYMENT_REFERENCE_METADATA + "%5D=";
+
     @Value("${stripe.secret.key}")
     private String stripeSecretKey;
 
+    @Value("${app.gateway.stripe.api-base:" + Stripe.LIVE_API_BASE + "}")
+    private String apiBase;
+
+    @Value("${app.gateway.stripe.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    @Value("${app.gateway.stripe.read-timeout:PT10S}")
+    private Duration readTimeout;
+
+    // Threads só para entregar respostas já recebidas; não há uma por charge em andamento
+    @Value("${app.gateway.stripe.async-threads:4}")
+    private int asyncThreads;
+
+    private ExecutorService responseExecutor;
+    private HttpClient httpClient;
+    private URI chargesUri;
+    private String authorization;
+
     @PostConstruct
     public void init() {
         Stripe.apiKey = stripeSecretKey;
+        // HTTP/1.1 com keep-alive: o cliente mantém um pool de conexões reaproveitadas entre charges
+        responseExecutor = Executors.newFixedThreadPool(asyncThreads);
+        chargesUri = URI.create(apiBase + "/v1/charges");
+        authorization = "Bearer " + stripeSecretKey;
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .executor(responseExecutor)
+                .build();
         log.info("Stripe API Key configurada: {}",
                 stripeSecretKey != null && !stripeSecretKey.isEmpty() ? "SIM" : "NÃO");
         log.info("Stripe API Key: {}",
                 stripeSecretKey != null ? maskKey(stripeSecretKey) : "NÃO CONFIGURADA");
+        if (stripeSecretKey == null || stripeSecretKey.isEmpty()) {
+            log.warn("Stripe API Key não configurada");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        httpClient.close();
+        responseExecutor.shutdown();
     }
 
     @Override
     public Payment processPayment(PaymentRequestDTO request) {
+        return processPayment(request, null);
+    }
+
+    @Override
+    public Payment processPayment(PaymentRequestDTO request, String paymentReference) {
+        Money money = request.toMoney();
         try {
-            log.info("Processando pagamento via Stripe para: {}", request.getCustomerEmail());
-            log.info("Valor: {} {}", request.getAmount(), request.getCurrency());
-            log.info("Token: {}", request.getPaymentToken());
+            // Caminho quente: só debug, com no máximo dois argumentos (sem varargs quando desligado).
+            // O token do cartão nunca vai para o log.
+            log.debug("Criando charge no Stripe: {} {}", request.getAmount(), request.getCurrency());
+
+            RequestOptions options = paymentReference != null
+                    ? RequestOptions.builder().setIdempotencyKey(paymentReference).build()
+                    : RequestOptions.getDefault();
+
+            Charge charge = Charge.create(chargeParams(request, money, paymentReference), options);
+            log.debug("Charge {} criada com status {}", charge.getId(), charge.getStatus());
+            return toPayment(request, money, ChargeSummary.from(charge));
 
-            if (stripeSecretKey == null || stripeSecretKey.isEmpty() ||
-                    stripeSecretKey.equals(stripeSecretKey)) {
-                log.warn("Usando chave de teste padrão do Stripe");
+        } catch (StripeException e) {
+            if (isTransient(e)) {
+                // Rede, timeout ou 5xx: não dá para saber se a charge foi criada
+                throw new GatewayTimeoutException("Stripe sem resposta: " + e.getMessage());
             }
+            // Recusas de cartão trazem o ID da charge; nos demais casos mantém a referência pendente
+            return declinedPayment(request, money,
+                    e instanceof CardException cardException ? cardException.getCharge() : null, e.getMessage());
+        }
+    }
 
-            Long amountInCents = convertToCents(request.getAmount());
+    // Mesma charge da versão bloqueante, enviada pelo HttpClient assíncrono: nenhuma thread fica
+    // presa enquanto o Stripe responde. Erros seguem a mesma classificação de isTransient.
+    @Override
+    public CompletableFuture<Payment> processPaymentAsync(PaymentRequestDTO request, String paymentReference) {
+        log.debug("Criando charge assíncrona no Stripe: {} {}", request.getAmount(), request.getCurrency());
+        Money money = request.toMoney();
 
-            log.info("Criando charge no Stripe...");
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder(chargesUri)
+                .timeout(readTimeout)
+                .header("Authorization", authorization)
+                .header("Stripe-Version", Stripe.API_VERSION)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(chargeForm(request, money, paymentReference)));
+        if (paymentReference != null) {
+            httpRequest.header("Idempotency-Key", paymentReference);
+        }
 
-            ChargeCreateParams params = ChargeCreateParams.builder()
-                    .setAmount(amountInCents)
-                    .setCurrency(request.getCurrency().toLowerCase())
-                    .setSource(request.getPaymentToken())
-                    .setDescription(request.getDescription())
-                    .putMetadata("customer_id", request.getCustomerId())
-                    .putMetadata("customer_email", request.getCustomerEmail())
-                    .build();
+        return httpClient.sendAsync(httpRequest.build(), HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw new GatewayTimeoutException("Stripe sem resposta: " + unwrap(error).getMessage());
+                    }
+                    return toPayment(request, money, response);
+                });
+    }
 
-            Charge charge = Charge.create(params);
-            log.info("Charge criada com sucesso: {}", charge.getId());
-            log.info("Status da charge: {}", charge.getStatus());
-            log.info("Charge paga: {}", charge.getPaid());
+    private Payment toPayment(PaymentRequestDTO request, Money money, HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status == 429 || status >= 500) {
+            throw new GatewayTimeoutException("Stripe sem resposta: HTTP " + status);
+        }
+        JsonObject body = JsonParser.parseString(response.body()).getAsJsonObject();
+        if (status == 200) {
+            // Lê só os campos usados, sem mapear a charge inteira para o modelo do SDK
+            ChargeSummary charge = ChargeSummary.from(body);
+            log.debug("Charge {} criada com status {}", charge.id(), charge.status());
+            return toPayment(request, money, charge);
+        }
 
-            Payment payment = new Payment();
-            payment.setPaymentId(charge.getId());
-            payment.setCustomerId(request.getCustomerId());
-            payment.setCustomerEmail(request.getCustomerEmail());
-            payment.setAmount(request.getAmount());
-            payment.setCurrency(request.getCurrency());
-            payment.setPaymentMethod(request.getPaymentMethod().toString());
-            payment.setGateway("STRIPE");
-            payment.setDescription(request.getDescription());
-            payment.setGatewayResponse(charge.toJson());
-
-            if (charge.getPaid()) {
-                payment.setStatus(PaymentStatus.SUCCESS);
-                payment.setProcessedAt(LocalDateTime.ofInstant(
-                        Instant.ofEpochSecond(charge.getCreated()),
-                        ZoneId.systemDefault()
-                ));
-                log.info("Pagamento marcado como SUCCESS");
-            } else {
-                payment.setStatus(PaymentStatus.FAILED);
-                log.warn("Pagamento marcado como FAILED");
-            }
+        // Corpo de erro da API: {"error": {...}}
+        StripeError error = ApiResource.GSON.fromJson(body.get("error"), StripeError.class);
+        return declinedPayment(request, money, error.getCharge(), error.getMessage());
+    }
 
-            return payment;
+    private String chargeForm(PaymentRequestDTO request, Money money, String paymentReference) {
+        StringBuilder form = new StringBuilder(256)
+                .append(FORM_AMOUNT).append(money.minorUnits())
+                .append(FORM_CURRENCY).append(money.currency().getLowerCase())
+                .append(FORM_SOURCE).append(encode(request.getPaymentToken()))
+                .append(FORM_CUSTOMER_ID).append(encode(request.getCustomerId()))
+                .append(FORM_CUSTOMER_EMAIL).append(encode(request.getCustomerEmail()));
+        if (request.getDescription() != null) {
+            form.append(FORM_DESCRIPTION).append(encode(request.getDescription()));
+        }
+        if (paymentReference != null) {
+            form.append(FORM_PAYMENT_REFERENCE).append(encode(paymentReference));
+        }
+        return form.toString();
+    }
 
-        } catch (StripeException e) {
-            log.error("Erro ao processar pagamento no Stripe: {}", e.getMessage(), e);
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
 
-            Payment failedPayment = new Payment();
-            failedPayment.setPaymentId("error_" + System.currentTimeMillis());
-            failedPayment.setCustomerId(request.getCustomerId());
-            failedPayment.setCustomerEmail(request.getCustomerEmail());
-            failedPayment.setAmount(request.getAmount());
-            failedPayment.setCurrency(request.getCurrency());
-            failedPayment.setPaymentMethod(request.getPaymentMethod().toString());
-            failedPayment.setGateway("STRIPE");
-            failedPayment.setDescription(request.getDescription());
-            failedPayment.setStatus(PaymentStatus.FAILED);
-            failedPayment.setGatewayResponse("Stripe Error: " + e.getMessage());
+    private ChargeCreateParams chargeParams(PaymentRequestDTO request, Money money, String paymentReference) {
+        ChargeCreateParams.Builder paramsBuilder = ChargeCreateParams.builder()
+                .setAmount(money.minorUnits())
+                .setCurrency(money.currency().getLowerCase())
+                .setSource(request.getPaymentToken())
+                .setDescription(request.getDescription())
+                .putMetadata("customer_id", request.getCustomerId())
+                .putMetadata("customer_email", request.getCustomerEmail());
 
-            log.info("Pagamento de falha criado com ID: {}", failedPayment.getPaymentId());
-            return failedPayment;
+        if (paymentReference != null) {
+            // Permite localizar a charge na recuperação e evita cobrança dupla em retentativas
+            paramsBuilder.putMetadata(PAYMENT_REFERENCE_METADATA, paymentReference);
         }
+        return paramsBuilder.build();
+    }
+
+    private Payment toPayment(PaymentRequestDTO request, Money money, ChargeSummary charge) {
+        Payment payment = newPayment(request, money);
+        payment.setPaymentId(charge.id());
+        payment.setGatewayResponse(charge.toJson());
+
+        if (charge.paid()) {
+            payment.setStatus(PaymentStatus.SUCCESS);
+            payment.setProcessedAt(LocalDateTime.ofInstant(
+                    Instant.ofEpochSecond(charge.created()),
+                    ZoneId.systemDefault()
+            ));
+        } else {
+            payment.setStatus(PaymentStatus.FAILED);
+            log.debug("Charge {} não foi paga", charge.id());
+        }
+
+        return payment;
+    }
+
+    private Payment declinedPayment(PaymentRequestDTO request, Money money, String chargeId, String message) {
+        log.warn("Pagamento recusado pelo Stripe: {}", message);
+
+        Payment failedPayment = newPayment(request, money);
+        failedPayment.setPaymentId(chargeId);
+        failedPayment.setStatus(PaymentStatus.FAILED);
+        failedPayment.setGatewayResponse("Stripe Error: " + message);
+        return failedPayment;
+    }
+
+    private Payment newPayment(PaymentRequestDTO request, Money money) {
+        Payment payment = new Payment();
+        payment.setCustomerId(request.getCustomerId());
+        payment.setCustomerEmail(request.getCustomerEmail());
+        payment.setAmount(money.toDecimal());
+        payment.setCurrency(money.currency().name());
+        payment.setPaymentMethod(request.getPaymentMethod().toString());
+        payment.setGateway("STRIPE");
+        payment.setDescription(request.getDescription());
+        return payment;
     }
 
     @Override
     public Payment getPaymentStatus(String paymentId) {
         try {
-            log.info("Buscando status do pagamento: {}", paymentId);
-            Charge charge = Charge.retrieve(paymentId);
+            log.debug("Buscando status do pagamento: {}", paymentId);
+            Charge charge = paymentId.startsWith(PaymentStateService.PENDING_PREFIX)
+                    ? findChargeByReference(paymentId)
+                    : Charge.retrieve(paymentId);
 
+            if (charge == null) {
+                log.debug("Nenhuma charge encontrada para a referência: {}", paymentId);
+                return null;
+            }
+
+            ChargeSummary summary = ChargeSummary.from(charge);
             Payment payment = new Payment();
-            payment.setPaymentId(charge.getId());
-            payment.setStatus(charge.getPaid() ? PaymentStatus.SUCCESS : PaymentStatus.FAILED);
-            payment.setGatewayResponse(charge.toJson());
+            payment.setPaymentId(summary.id());
+            if ("pending".equals(summary.status())) {
+                payment.setStatus(PaymentStatus.PROCESSING);
+            } else if (summary.refunded()) {
+                payment.setStatus(PaymentStatus.REFUNDED);
+            } else if (summary.amountRefunded() > 0) {
+                payment.setStatus(PaymentStatus.PARTIALLY_REFUNDED);
+            } else {
+                payment.setStatus(summary.paid() ? PaymentStatus.SUCCESS : PaymentStatus.FAILED);
+            }
+            payment.setRefundedAmount(
+                    Money.ofMinor(summary.amountRefunded(), CurrencyCode.of(summary.currency())).toDecimal());
+            payment.setGatewayResponse(summary.toJson());
 
             return payment;
 
         } catch (StripeException e) {
-            log.error("Erro ao buscar status do pagamento: {}", e.getMessage());
-            return null;
+            if (isTransient(e)) {
+                throw new GatewayTimeoutException("Stripe sem resposta: " + e.getMessage());
+            }
+            // Erro de autenticação ou permissão não é "charge inexistente": null só quando a busca respondeu vazio
+            throw new IllegalStateException("Erro ao buscar status do pagamento " + paymentId + ": " + e.getMessage(), e);
         }
     }
 
     @Override
-    public Payment refundPayment(String paymentId, Double amount, String reason) {
+    public Payment refundPayment(String paymentId, Money amount, String reason) {
+        return refundPayment(paymentId, amount, reason, null);
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason, String refundReference) {
         try {
-            log.info("Processando reembolso para: {}", paymentId);
+            log.debug("Processando reembolso para: {}", paymentId);
 
-            RefundCreateParams params = RefundCreateParams.builder()
+            RefundCreateParams.Builder params = RefundCreateParams.builder()
                     .setCharge(paymentId)
-                    .setAmount(convertToCents(BigDecimal.valueOf(amount)))
+                    .setAmount(amount.minorUnits())
                     .setReason(RefundCreateParams.Reason.REQUESTED_BY_CUSTOMER)
-                    .putMetadata("reason", reason != null ? reason : "Solicitado pelo cliente")
-                    .build();
-
-            Refund refund = Refund.create(params);
+                    .putMetadata("reason", reason != null ? reason : "Solicitado pelo cliente");
+            RequestOptions options = RequestOptions.getDefault();
+            if (refundReference != null) {
+                // Permite localizar o reembolso na conciliação e evita reembolso duplo em retentativas
+                params.putMetadata(REFUND_REFERENCE_METADATA, refundReference);
+                options = RequestOptions.builder().setIdempotencyKey(refundReference).build();
+            }
 
-            Payment payment = new Payment();
-            payment.setPaymentId(refund.getCharge());
-            payment.setStatus(PaymentStatus.REFUNDED);
-            payment.setGatewayResponse(refund.toJson());
+            Refund refund = Refund.create(params.build(), options);
 
-            log.info("Reembolso processado com sucesso: {}", refund.getId());
-            return payment;
+            log.debug("Reembolso processado com sucesso: {}", refund.getId());
+            return toRefundPayment(refund);
 
         } catch (StripeException e) {
+            if (isTransient(e)) {
+                throw new GatewayTimeoutException("Stripe sem resposta: " + e.getMessage());
+            }
             log.error("Erro ao processar reembolso: {}", e.getMessage());
             return null;
         }
     }
 
+    @Override
+    public Payment getRefundStatus(String paymentId, String refundReference) {
+        try {
+            RefundListParams params = RefundListParams.builder()
+                    .setCharge(paymentId)
+                    .setLimit(100L)
+                    .build();
+            for (Refund refund : Refund.list(params).autoPagingIterable()) {
+                if (refund.getMetadata() != null
+                        && refundReference.equals(refund.getMetadata().get(REFUND_REFERENCE_METADATA))) {
+                    return toRefundPayment(refund);
+                }
+            }
+            log.debug("Nenhum reembolso encontrado para a referência: {}", refundReference);
+            return null;
+
+        } catch (StripeException e) {
+            if (isTransient(e)) {
+                throw new GatewayTimeoutException("Stripe sem resposta: " + e.getMessage());
+            }
+            // Sem resposta confiável: a reserva continua PENDING até a próxima conciliação
+            throw new IllegalStateException("Erro ao consultar reembolso " + refundReference + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Payment toRefundPayment(Refund refund) {
+        Payment payment = new Payment();
+        payment.setPaymentId(refund.getCharge());
+        payment.setStatus(switch (String.valueOf(refund.getStatus())) {
+            case "succeeded" -> PaymentStatus.REFUNDED;
+            case "failed", "canceled" -> PaymentStatus.FAILED;
+            default -> PaymentStatus.PROCESSING;
+        });
+        JsonObject response = new JsonObject();
+        response.addProperty("id", refund.getId());
+        response.addProperty("status", refund.getStatus());
+        response.addProperty("amount", refund.getAmount());
+        response.addProperty("charge", refund.getCharge());
+        payment.setGatewayResponse(response.toString());
+        return payment;
+    }
+
     @Override
     public String generatePaymentMethodToken(PaymentRequestDTO request) {
 
         String token = "tok_" + System.currentTimeMillis();
-        log.info("Token gerado para teste: {}", token);
+        log.debug("Token gerado para teste: {}", token);
         return token;
     }
 
-    private Long convertToCents(BigDecimal amount) {
-        return amount.multiply(BigDecimal.valueOf(100)).longValue();
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private Charge findChargeByReference(String paymentReference) throws StripeException {
+        ChargeSearchParams params = ChargeSearchParams.builder()
+                .setQuery("metadata['" + PAYMENT_REFERENCE_METADATA + "']:'" + paymentReference + "'")
+                .setLimit(1L)
+                .build();
+
+        List<Charge> charges = Charge.search(params).getData();
+        return charges.isEmpty() ? null : charges.get(0);
+    }
+
+    // Falhas que não dependem da requisição: conexão, timeout de leitura, 5xx e rate limit.
+    // São as únicas que contam para o circuit breaker.
+    private boolean isTransient(StripeException e) {
+        return e instanceof ApiConnectionException
+                || e instanceof ApiException
+                || e instanceof RateLimitException
+                || (e.getStatusCode() != null && e.getStatusCode() >= 500);
+    }
+
+    // Campos da charge que o serviço usa; é só isso que vai para payment_gateway_responses,
+    // no lugar do JSON completo com cartão, endereço e outcome
+    private record ChargeSummary(String id, String status, boolean paid, long created, long amount,
+                                 String currency, long amountRefunded, boolean refunded, String failureCode) {
+
+        static ChargeSummary from(Charge charge) {
+            return new ChargeSummary(charge.getId(), charge.getStatus(), Boolean.TRUE.equals(charge.getPaid()),
+                    charge.getCreated() != null ? charge.getCreated() : 0,
+                    charge.getAmount() != null ? charge.getAmount() : 0,
+                    charge.getCurrency(),
+                    charge.getAmountRefunded() != null ? charge.getAmountRefunded() : 0,
+                    Boolean.TRUE.equals(charge.getRefunded()),
+                    charge.getFailureCode());
+        }
+
+        static ChargeSummary from(JsonObject json) {
+            return new ChargeSummary(string(json, "id"), string(json, "status"), bool(json, "paid"),
+                    number(json, "created"), number(json, "amount"), string(json, "currency"),
+                    number(json, "amount_refunded"), bool(json, "refunded"), string(json, "failure_code"));
+        }
+
+        String toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("id", id);
+            json.addProperty("status", status);
+            json.addProperty("paid", paid);
+            json.addProperty("amount", amount);
+            json.addProperty("currency", currency);
+            json.addProperty("amount_refunded", amountRefunded);
+            if (failureCode != null) {
+                json.addProperty("failure_code", failureCode);
+            }
+            return json.toString();
+        }
+
+        private static String string(JsonObject json, String field) {
+            JsonElement value = json.get(field);
+            return value == null || value.isJsonNull() ? null : value.getAsString();
+        }
+
+        private static long number(JsonObject json, String field) {
+            JsonElement value = json.get(field);
+            return value == null || value.isJsonNull() ? 0 : value.getAsLong();
+        }
+
+        private static boolean bool(JsonObject json, String field) {
+            JsonElement value = json.get(field);
+            return value != null && !value.isJsonNull() && value.getAsBoolean();
+        }
     }
 
     private String maskKey(String key) {
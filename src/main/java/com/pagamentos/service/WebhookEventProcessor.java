@@ -0,0 +1,228 @@
+package com.pagamentos.service;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.model.WebhookEvent;
+import com.pagamentos.model.WebhookEventStatus;
+import com.pagamentos.repository.PaymentRepository;
+import com.pagamentos.repository.WebhookEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Consome a fila webhook_events: cada partição é drenada por um worker, em lotes,
+// aplicando as transições de status com UPDATEs em batch
+@Service
+@Slf4j
+public class WebhookEventProcessor {
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final PaymentRepository paymentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService workers;
+
+    @Value("${app.webhook.partitions:4}")
+    private int partitions;
+
+    @Value("${app.webhook.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.webhook.max-attempts:20}")
+    private int maxAttempts;
+
+    @Value("${app.webhook.retry-delay:PT5S}")
+    private Duration retryDelay;
+
+    @Value("${app.webhook.retention:P7D}")
+    private Duration retention;
+
+    public WebhookEventProcessor(WebhookEventRepository webhookEventRepository,
+                                 PaymentRepository paymentRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 ApplicationEventPublisher eventPublisher) {
+        this.webhookEventRepository = webhookEventRepository;
+        this.paymentRepository = paymentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("webhook-worker-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhook.poll-interval-ms:250}")
+    public void drain() {
+        List<Future<?>> running = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            int current = partition;
+            running.add(workers.submit(() -> drainPartition(current)));
+        }
+
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("Erro ao processar webhooks: {}", e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.webhook.cleanup-interval-ms:3600000}")
+    public void purgeProcessed() {
+        int removed = webhookEventRepository.deleteProcessedBefore(LocalDateTime.now().minus(retention));
+        if (removed > 0) {
+            log.info("Removidos {} webhooks processados", removed);
+        }
+    }
+
+    private void drainPartition(int partition) {
+        Integer processed;
+        do {
+            processed = transactionTemplate.execute(status -> processBatch(partition));
+        } while (processed != null && processed == batchSize);
+    }
+
+    private int processBatch(int partition) {
+        LocalDateTime now = LocalDateTime.now();
+        List<WebhookEvent> events = webhookEventRepository.lockPending(partition, now, Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Payment> payments = paymentRepository.findByPaymentIdIn(
+                        events.stream().map(WebhookEvent::getPaymentId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Payment::getPaymentId, Function.identity()));
+
+        // Eventos chegam ordenados por criação no Stripe: o status final de cada pagamento
+        // é o resultado de aplicar todos em sequência. O desfecho de cada evento fica no mapa, não
+        // na entidade: as linhas são gravadas só pelos UPDATEs em batch
+        Map<String, PaymentStatus> finalStatus = new LinkedHashMap<>();
+        Map<String, WebhookEventStatus> handled = new LinkedHashMap<>();
+        List<WebhookEvent> retry = new ArrayList<>();
+
+        for (WebhookEvent event : events) {
+            Payment payment = payments.get(event.getPaymentId());
+            if (payment == null) {
+                // O pagamento pode ainda não ter recebido o ID da charge; tenta de novo mais tarde
+                if (event.getAttempts() + 1 >= maxAttempts) {
+                    handled.put(event.getEventId(), WebhookEventStatus.IGNORED);
+                } else {
+                    retry.add(event);
+                }
+                continue;
+            }
+
+            PaymentStatus current = finalStatus.getOrDefault(event.getPaymentId(), payment.getStatus());
+            if (current.canTransitionTo(event.getTargetStatus())) {
+                finalStatus.put(event.getPaymentId(), event.getTargetStatus());
+                handled.put(event.getEventId(), WebhookEventStatus.PROCESSED);
+            } else {
+                handled.put(event.getEventId(), WebhookEventStatus.IGNORED);
+            }
+        }
+
+        applyPaymentUpdates(payments, finalStatus, now);
+        markHandled(handled, now);
+        scheduleRetry(retry, now);
+
+        return events.size();
+    }
+
+    private void applyPaymentUpdates(Map<String, Payment> payments, Map<String, PaymentStatus> finalStatus,
+                                     LocalDateTime now) {
+        List<Payment> changed = finalStatus.entrySet().stream()
+                .map(entry -> payments.get(entry.getKey()))
+                .filter(payment -> payment.getStatus() != finalStatus.get(payment.getPaymentId()))
+                .toList();
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "UPDATE payments SET status = ?, updated_at = ?, version = version + 1, "
+                        + "refunded_amount = CASE WHEN ? THEN amount ELSE refunded_amount END "
+                        + "WHERE id = ? AND status = ?",
+                changed, changed.size(), (ps, payment) -> {
+                    PaymentStatus target = finalStatus.get(payment.getPaymentId());
+                    ps.setString(1, target.name());
+                    ps.setTimestamp(2, updatedAt);
+                    // Reembolso total feito fora da API (ex: dashboard do Stripe)
+                    ps.setBoolean(3, target == PaymentStatus.REFUNDED);
+                    ps.setLong(4, payment.getId());
+                    ps.setString(5, payment.getStatus().name());
+                });
+
+        // A condição no status protege contra escritas concorrentes; só publica o que mudou
+        int[] updated = counts[0];
+        for (int i = 0; i < changed.size(); i++) {
+            if (updated[i] == 0) {
+                continue;
+            }
+            Payment payment = changed.get(i);
+            PaymentStatus previous = payment.getStatus();
+            payment.setStatus(finalStatus.get(payment.getPaymentId()));
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, previous));
+        }
+
+        log.info("Webhooks aplicados: {} pagamentos atualizados em lote", changed.size());
+    }
+
+    private void markHandled(Map<String, WebhookEventStatus> handled, LocalDateTime now) {
+        if (handled.isEmpty()) {
+            return;
+        }
+        Timestamp processedAt = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(
+                "UPDATE webhook_events SET status = ?, processed_at = ?, attempts = attempts + 1 WHERE event_id = ?",
+                List.copyOf(handled.entrySet()), handled.size(), (ps, entry) -> {
+                    ps.setString(1, entry.getValue().name());
+                    ps.setTimestamp(2, processedAt);
+                    ps.setString(3, entry.getKey());
+                });
+    }
+
+    private void scheduleRetry(List<WebhookEvent> retry, LocalDateTime now) {
+        if (retry.isEmpty()) {
+            return;
+        }
+        Timestamp availableAt = Timestamp.valueOf(now.plus(retryDelay));
+        jdbcTemplate.batchUpdate(
+                "UPDATE webhook_events SET available_at = ?, attempts = attempts + 1 WHERE event_id = ?",
+                retry, retry.size(), (ps, event) -> {
+                    ps.setTimestamp(1, availableAt);
+                    ps.setString(2, event.getEventId());
+                });
+    }
+}
@@ -0,0 +1,61 @@
+package com.pagamentos.service;
+
+import com.pagamentos.journal.PaymentJournal;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.model.WebhookEvent;
+import com.pagamentos.model.WebhookEventStatus;
+import com.pagamentos.repository.WebhookEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Service
+@Slf4j
+public class WebhookIngestionService {
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final Optional<PaymentJournal> paymentJournal;
+    private final int partitions;
+
+    public WebhookIngestionService(WebhookEventRepository webhookEventRepository,
+                                   Optional<PaymentJournal> paymentJournal,
+                                   @Value("${app.webhook.partitions:4}") int partitions) {
+        this.webhookEventRepository = webhookEventRepository;
+        this.paymentJournal = paymentJournal;
+        this.partitions = partitions;
+    }
+
+    // Apenas um INSERT no caminho do ack; retorna false para eventos já recebidos
+    public boolean enqueue(String eventId, String eventType, long eventCreated,
+                           String paymentId, PaymentStatus targetStatus) {
+        LocalDateTime now = LocalDateTime.now();
+
+        WebhookEvent event = new WebhookEvent();
+        event.setEventId(eventId);
+        event.setEventType(eventType);
+        event.setEventCreated(eventCreated);
+        event.setPaymentId(paymentId);
+        event.setTargetStatus(targetStatus);
+        event.setPartitionKey(partitionOf(paymentId));
+        event.setStatus(WebhookEventStatus.RECEIVED);
+        event.setReceivedAt(now);
+        event.setAvailableAt(now);
+
+        try {
+            webhookEventRepository.saveAndFlush(event);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Evento {} já recebido, ignorando reenvio", eventId);
+            return false;
+        }
+        paymentJournal.ifPresent(journal -> journal.recordWebhook(eventId, eventType, paymentId, targetStatus));
+        return true;
+    }
+
+    private int partitionOf(String paymentId) {
+        return Math.floorMod(paymentId.hashCode(), partitions);
+    }
+}
@@ -0,0 +1,39 @@
+package com.pagamentos.subscription;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.model.PaymentStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+
+// Responde uma única vez: na primeira mudança ou, no timeout, com o estado que o cliente já conhecia
+class LongPollSubscriber extends PaymentSubscriber {
+
+    private final DeferredResult<ResponseEntity<PaymentResponseDTO>> result;
+
+    LongPollSubscriber(PaymentStatus knownStatus, PaymentResponseDTO current, Duration timeout) {
+        super(knownStatus);
+        this.result = new DeferredResult<>(timeout.toMillis(), () -> ResponseEntity.ok(current));
+    }
+
+    DeferredResult<ResponseEntity<PaymentResponseDTO>> getResult() {
+        return result;
+    }
+
+    @Override
+    boolean deliver(PaymentResponseDTO payment) {
+        result.setResult(ResponseEntity.ok(payment));
+        return true;
+    }
+
+    @Override
+    boolean keepAlive() {
+        return !result.isSetOrExpired();
+    }
+
+    @Override
+    void onClose(Runnable callback) {
+        result.onCompletion(callback);
+    }
+}
@@ -0,0 +1,36 @@
+package com.pagamentos.subscription;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.model.PaymentStatus;
+
+// Um cliente aguardando mudança de status de um pagamento. O listener e a varredura podem
+// enxergar o mesmo status; só o que difere do último status entregue chega ao cliente.
+abstract class PaymentSubscriber {
+
+    private PaymentStatus lastStatus;
+
+    PaymentSubscriber(PaymentStatus lastStatus) {
+        this.lastStatus = lastStatus;
+    }
+
+    // true quando a assinatura terminou e pode sair do registro
+    synchronized boolean offer(PaymentResponseDTO payment) {
+        if (payment.getStatus() == lastStatus) {
+            return false;
+        }
+        lastStatus = payment.getStatus();
+        return deliver(payment);
+    }
+
+    synchronized PaymentStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    abstract boolean deliver(PaymentResponseDTO payment);
+
+    // Chamado pela varredura quando nada mudou; false quando a conexão já acabou
+    abstract boolean keepAlive();
+
+    // Fim da requisição (entrega, timeout, erro ou desconexão)
+    abstract void onClose(Runnable callback);
+}
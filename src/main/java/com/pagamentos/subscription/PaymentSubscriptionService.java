@@ -0,0 +1,183 @@
+package com.pagamentos.subscription;
+
+import com.pagamentos.archive.PaymentArchive;
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.exception.InvalidSubscriptionRequestException;
+import com.pagamentos.exception.SubscriptionLimitExceededException;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.PaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Substitui o polling de GET /api/payments/payment/{paymentId} enquanto o pagamento aguarda o cliente
+// (PIX, boleto, 3DS): a requisição fica estacionada no servlet assíncrono, sem thread, e recebe o novo
+// estado quando a transição é efetivada. Registro limitado a max-open assinaturas por nó.
+@Service
+@Slf4j
+public class PaymentSubscriptionService {
+
+    private static final Set<PaymentStatus> AWAITING = EnumSet.of(
+            PaymentStatus.PENDING, PaymentStatus.PROCESSING, PaymentStatus.REQUIRES_ACTION);
+    private static final Executor DELIVERY_EXECUTOR = Thread::startVirtualThread;
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentArchive paymentArchive;
+    private final Map<Long, List<PaymentSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger open = new AtomicInteger();
+
+    @Value("${app.payment.subscriptions.max-open:50000}")
+    private int maxOpen;
+
+    @Value("${app.payment.subscriptions.long-poll-timeout:PT30S}")
+    private Duration longPollTimeout;
+
+    @Value("${app.payment.subscriptions.sse-timeout:PT5M}")
+    private Duration sseTimeout;
+
+    @Value("${app.payment.subscriptions.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    public PaymentSubscriptionService(PaymentRepository paymentRepository,
+                                      PaymentArchive paymentArchive,
+                                      PaymentMetrics paymentMetrics) {
+        this.paymentRepository = paymentRepository;
+        this.paymentArchive = paymentArchive;
+        paymentMetrics.registerSubscriptions(open::get);
+    }
+
+    static boolean isAwaiting(PaymentStatus status) {
+        return AWAITING.contains(status);
+    }
+
+    // Long-poll: responde assim que o status diferir de knownStatus (o último que o cliente viu;
+    // sem ele, o status atual). No timeout devolve o estado sem mudança e o cliente repete a chamada
+    public DeferredResult<ResponseEntity<PaymentResponseDTO>> awaitChange(String paymentId, String knownStatus) {
+        PaymentStatus parsed = knownStatus != null ? parseStatus(knownStatus) : null;
+        PaymentResponseDTO payment = find(paymentId);
+        PaymentStatus known = parsed != null ? parsed : payment.getStatus();
+
+        LongPollSubscriber subscriber = new LongPollSubscriber(known, payment, longPollTimeout);
+        register(payment.getId(), subscriber, payment);
+        return subscriber.getResult();
+    }
+
+    // SSE: o primeiro evento é o estado atual; a conexão fecha quando o pagamento sai da espera
+    public SseEmitter subscribe(String paymentId) {
+        PaymentResponseDTO payment = find(paymentId);
+        SseSubscriber subscriber = new SseSubscriber(sseTimeout);
+        register(payment.getId(), subscriber, payment);
+        return subscriber.getEmitter();
+    }
+
+    public int getOpenSubscriptions() {
+        return open.get();
+    }
+
+    // Depois do commit, fora da thread que efetivou a transição: a releitura não atrasa a resposta do pagamento
+    @TransactionalEventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        if (subscribers.containsKey(event.id())) {
+            DELIVERY_EXECUTOR.execute(() -> paymentRepository.findResponseById(event.id()).ifPresent(this::publish));
+        }
+    }
+
+    // Transições efetivadas em outro nó não passam pelo listener deste. Uma consulta em lote por
+    // varredura cobre todas as assinaturas abertas, e as conexões SSE ociosas recebem um keep-alive
+    @Scheduled(fixedDelayString = "${app.payment.subscriptions.sweep-interval-ms:5000}")
+    public void sweep() {
+        List<Long> ids = new ArrayList<>(subscribers.keySet());
+        for (int from = 0; from < ids.size(); from += sweepBatchSize) {
+            List<Long> batch = ids.subList(from, Math.min(from + sweepBatchSize, ids.size()));
+            Map<Long, PaymentResponseDTO> current = paymentRepository.findResponsesByIdIn(batch).stream()
+                    .collect(Collectors.toMap(PaymentResponseDTO::getId, Function.identity()));
+            for (Long id : batch) {
+                PaymentResponseDTO payment = current.get(id);
+                for (PaymentSubscriber subscriber : subscribers.getOrDefault(id, List.of())) {
+                    boolean closed = payment != null && payment.getStatus() != subscriber.getLastStatus()
+                            ? subscriber.offer(payment)
+                            : !subscriber.keepAlive();
+                    if (closed) {
+                        unregister(id, subscriber);
+                    }
+                }
+            }
+        }
+    }
+
+    private void publish(PaymentResponseDTO payment) {
+        for (PaymentSubscriber subscriber : subscribers.getOrDefault(payment.getId(), List.of())) {
+            if (subscriber.offer(payment)) {
+                unregister(payment.getId(), subscriber);
+            }
+        }
+    }
+
+    // Leitura no primário: réplica ou cache atrasados fariam o cliente esperar por uma mudança que já aconteceu
+    private PaymentResponseDTO find(String paymentId) {
+        return paymentRepository.findResponseByPaymentId(paymentId)
+                .or(() -> paymentArchive.findResponseByPaymentId(paymentId))
+                .orElseThrow(() -> new RuntimeException("Pagamento não encontrado"));
+    }
+
+    private static PaymentStatus parseStatus(String status) {
+        try {
+            return PaymentStatus.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSubscriptionRequestException("Status inválido: " + status);
+        }
+    }
+
+    private void register(Long id, PaymentSubscriber subscriber, PaymentResponseDTO payment) {
+        if (open.incrementAndGet() > maxOpen) {
+            open.decrementAndGet();
+            throw new SubscriptionLimitExceededException("Limite de assinaturas de status atingido neste nó");
+        }
+        subscribers.merge(id, List.of(subscriber), (current, added) -> {
+            List<PaymentSubscriber> merged = new ArrayList<>(current.size() + 1);
+            merged.addAll(current);
+            merged.addAll(added);
+            return merged;
+        });
+        subscriber.onClose(() -> unregister(id, subscriber));
+
+        // Releitura depois do registro: uma transição entre a primeira leitura e o registro não se perde
+        PaymentResponseDTO current = paymentRepository.findResponseById(id).orElse(payment);
+        if (subscriber.offer(current)) {
+            unregister(id, subscriber);
+        }
+    }
+
+    // Idempotente: entrega, timeout e erro podem chamar para a mesma assinatura
+    private void unregister(Long id, PaymentSubscriber subscriber) {
+        subscribers.computeIfPresent(id, (key, current) -> {
+            if (!current.contains(subscriber)) {
+                return current;
+            }
+            open.decrementAndGet();
+            List<PaymentSubscriber> remaining = new ArrayList<>(current);
+            remaining.remove(subscriber);
+            return remaining.isEmpty() ? null : remaining;
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.pagamentos.subscription;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// Evento "status" a cada mudança; a conexão é encerrada quando o pagamento sai dos status de espera
+class SseSubscriber extends PaymentSubscriber {
+
+    private final SseEmitter emitter;
+
+    SseSubscriber(Duration timeout) {
+        // Sem status anterior: a primeira oferta (estado atual) sempre é enviada
+        super(null);
+        this.emitter = new SseEmitter(timeout.toMillis());
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    @Override
+    boolean deliver(PaymentResponseDTO payment) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("status")
+                    .id(payment.getStatus().name())
+                    .data(payment, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return true;
+        }
+        if (!PaymentSubscriptionService.isAwaiting(payment.getStatus())) {
+            emitter.complete();
+            return true;
+        }
+        return false;
+    }
+
+    // Comentário SSE: mantém proxies sem fechar a conexão ociosa e detecta clientes que sumiram
+    @Override
+    boolean keepAlive() {
+        try {
+            emitter.send(SseEmitter.event().comment("keep-alive"));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    @Override
+    void onClose(Runnable callback) {
+        emitter.onCompletion(callback);
+        emitter.onTimeout(callback);
+        emitter.onError(e -> callback.run());
+    }
+}
@@ -0,0 +1,53 @@
+-- Conversão única de payments para partições mensais por created_at (MySQL).
+-- Passo manual, executado uma vez antes de ligar app.payment.partitioning.enabled; não faz parte
+-- de schema.sql, e bases não particionadas mantêm o UNIQUE de payment_id.
+--
+-- Toda chave única de uma tabela particionada precisa conter a coluna de partição: a PK passa a
+-- (id, created_at) e payment_id perde o UNIQUE, ficando só com idx_payment_id. A unicidade passa a
+-- depender da origem dos valores (UUID da referência, ID do gateway, ID do reembolso).
+-- Com a tabela convertida, use também
+--   spring.jpa.properties.hibernate.schema_update.unique_constraint_strategy=SKIP
+-- para o ddl-auto=update não tentar recriar o UNIQUE a cada inicialização.
+--
+-- Cada passo verifica o estado atual antes de alterar a tabela: executar de novo não muda nada.
+
+-- Remove os índices UNIQUE de payment_id (o nome gerado pelo Hibernate varia: UK_...)
+SET @ddl = (
+    SELECT IFNULL(CONCAT('ALTER TABLE payments ', GROUP_CONCAT(DISTINCT CONCAT('DROP INDEX `', INDEX_NAME, '`'))), 'SELECT 1')
+    FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payments' AND COLUMN_NAME = 'payment_id' AND NON_UNIQUE = 0
+);
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF(EXISTS (
+    SELECT 1 FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payments' AND INDEX_NAME = 'idx_payment_id'
+), 'SELECT 1', 'CREATE INDEX idx_payment_id ON payments(payment_id)');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- RANGE COLUMNS não aceita TIMESTAMP; DATETIME(6) é o tipo que o Hibernate gera para LocalDateTime
+SET @ddl = IF(EXISTS (
+    SELECT 1 FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payments' AND COLUMN_NAME = 'created_at' AND DATA_TYPE = 'datetime'
+), 'SELECT 1', 'ALTER TABLE payments MODIFY created_at DATETIME(6) NOT NULL');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF(EXISTS (
+    SELECT 1 FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payments' AND INDEX_NAME = 'PRIMARY' AND COLUMN_NAME = 'created_at'
+), 'SELECT 1', 'ALTER TABLE payments DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at)');
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
+
+-- p_history recebe tudo até o fim do mês corrente (ou do maior created_at, se for posterior).
+-- A partir daí o PaymentPartitionMaintainer divide p_future em partições mensais
+SET @boundary = (
+    SELECT DATE_FORMAT(GREATEST(COALESCE(MAX(created_at), NOW()), NOW()) + INTERVAL 1 MONTH, '%Y-%m-01')
+    FROM payments
+);
+SET @ddl = IF(EXISTS (
+    SELECT 1 FROM information_schema.PARTITIONS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payments' AND PARTITION_NAME IS NOT NULL
+), 'SELECT 1', CONCAT('ALTER TABLE payments PARTITION BY RANGE COLUMNS(created_at) (',
+    'PARTITION p_history VALUES LESS THAN (''', @boundary, '''), ',
+    'PARTITION p_future VALUES LESS THAN (MAXVALUE))'));
+PREPARE stmt FROM @ddl; EXECUTE stmt; DEALLOCATE PREPARE stmt;
@@ -1,22 +1,142 @@
 -- Criação das tabelas
+-- IDs alocados em blocos pela aplicação (permite INSERTs em batch)
+CREATE TABLE IF NOT EXISTS id_generators (
+    name VARCHAR(255) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
+
 CREATE TABLE IF NOT EXISTS payments (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    id BIGINT PRIMARY KEY,
     payment_id VARCHAR(255) NOT NULL,
     customer_id VARCHAR(255) NOT NULL,
     customer_email VARCHAR(255) NOT NULL,
     amount DECIMAL(19,2) NOT NULL,
+    refunded_amount DECIMAL(19,2) NOT NULL DEFAULT 0,
     currency VARCHAR(3) NOT NULL DEFAULT 'BRL',
     payment_method VARCHAR(50) NOT NULL,
     status VARCHAR(50) NOT NULL,
     gateway VARCHAR(50) NOT NULL,
     description VARCHAR(500),
-    gateway_response TEXT,
     created_at TIMESTAMP NOT NULL,
     updated_at TIMESTAMP,
-    processed_at TIMESTAMP
+    processed_at TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0
 );
 
+-- Bases existentes: o IdGeneratorInitializer ajusta id_generators acima do maior ID na inicialização
+
 -- Índices para melhor performance
 CREATE INDEX idx_payment_id ON payments(payment_id);
-CREATE INDEX idx_customer_id ON payments(customer_id);
-CREATE INDEX idx_status ON payments(status);
\ No newline at end of file
+CREATE INDEX idx_payments_customer_created ON payments(customer_id, created_at);
+CREATE INDEX idx_payments_status_created ON payments(status, created_at);
+-- Varredura do reconciliador; linhas antigas recebem updated_at para entrar no índice
+UPDATE payments SET updated_at = created_at WHERE updated_at IS NULL;
+CREATE INDEX idx_payments_status_updated ON payments(status, updated_at);
+
+-- Particionamento mensal de payments: conversão manual em db/partition-payments.sql
+
+-- Pagamentos finalizados movidos de payments pelo PaymentArchive (registro completo em gzip)
+CREATE TABLE IF NOT EXISTS payment_archive (
+    id BIGINT PRIMARY KEY,
+    payment_id VARCHAR(255) NOT NULL,
+    customer_id VARCHAR(255) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    gateway VARCHAR(50) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    payment_method VARCHAR(50) NOT NULL,
+    amount DECIMAL(19,2) NOT NULL,
+    refunded_amount DECIMAL(19,2) NOT NULL DEFAULT 0,
+    created_at DATETIME(6) NOT NULL,
+    archived_at DATETIME(6) NOT NULL,
+    payload MEDIUMBLOB NOT NULL,
+    gateway_response MEDIUMBLOB
+) ROW_FORMAT=COMPRESSED;
+
+CREATE UNIQUE INDEX idx_payment_archive_payment_id ON payment_archive(payment_id);
+CREATE INDEX idx_payment_archive_customer_created ON payment_archive(customer_id, created_at);
+CREATE INDEX idx_payment_archive_created ON payment_archive(created_at);
+
+-- Resposta bruta do gateway (gzip), lida apenas sob demanda
+CREATE TABLE IF NOT EXISTS payment_gateway_responses (
+    id BIGINT PRIMARY KEY,
+    payload MEDIUMBLOB NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+-- Chaves de idempotência do POST /api/payments
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_body TEXT,
+    payment_id BIGINT,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_idempotency_expires_at ON idempotency_keys(expires_at);
+
+-- Fila de webhooks do Stripe, consumida em lotes por partição
+CREATE TABLE IF NOT EXISTS webhook_events (
+    event_id VARCHAR(255) PRIMARY KEY,
+    event_type VARCHAR(100) NOT NULL,
+    payment_id VARCHAR(255) NOT NULL,
+    target_status VARCHAR(50) NOT NULL,
+    partition_key INT NOT NULL,
+    event_created BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL,
+    received_at TIMESTAMP NOT NULL,
+    available_at TIMESTAMP NOT NULL,
+    processed_at TIMESTAMP
+);
+
+CREATE INDEX idx_webhook_events_pending ON webhook_events(status, partition_key, available_at);
+
+-- Outbox das mudanças de status: uma linha por evento e consumidor, gravada na transação da mudança
+CREATE TABLE IF NOT EXISTS payment_outbox (
+    id BIGINT PRIMARY KEY,
+    event_id VARCHAR(36) NOT NULL,
+    consumer VARCHAR(100) NOT NULL,
+    event_type VARCHAR(100) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    aggregate_sequence BIGINT,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    published_at TIMESTAMP
+);
+
+CREATE INDEX idx_payment_outbox_pending ON payment_outbox(consumer, status, id);
+
+-- Razão de reembolsos: a reserva é gravada PENDING antes da chamada ao gateway
+CREATE TABLE IF NOT EXISTS payment_refunds (
+    id BIGINT PRIMARY KEY,
+    original_payment_id BIGINT NOT NULL,
+    charge_id VARCHAR(255) NOT NULL,
+    gateway VARCHAR(50) NOT NULL,
+    amount DECIMAL(19,2) NOT NULL,
+    currency VARCHAR(3) NOT NULL DEFAULT 'BRL',
+    reason VARCHAR(500),
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP
+);
+
+CREATE INDEX idx_payment_refunds_payment ON payment_refunds(original_payment_id, status);
+CREATE INDEX idx_payment_refunds_status_created ON payment_refunds(status, created_at);
+
+-- Posição da reconciliação em cada status
+CREATE TABLE IF NOT EXISTS reconciliation_cursors (
+    name VARCHAR(50) PRIMARY KEY,
+    last_updated_at TIMESTAMP NOT NULL,
+    last_id BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+-- Batida gravada no primário e lida na réplica para medir o atraso da replicação
+-- (criada também pelo ReplicaLagMonitor na subida)
+CREATE TABLE IF NOT EXISTS replication_heartbeat (
+    id INT PRIMARY KEY,
+    beat_at TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,24 @@
+package com.pagamentos;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.model.PaymentMethod;
+
+import java.math.BigDecimal;
+
+// Requisição de pagamento válida para os testes; cada teste ajusta só o que importa para ele
+public final class PaymentRequests {
+
+    private PaymentRequests() {
+    }
+
+    public static PaymentRequestDTO request(String customerId) {
+        PaymentRequestDTO request = new PaymentRequestDTO();
+        request.setCustomerId(customerId);
+        request.setCustomerEmail(customerId + "@example.com");
+        request.setAmount(new BigDecimal("10.00"));
+        request.setCurrency("BRL");
+        request.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+        request.setPaymentToken("tok_visa");
+        return request;
+    }
+}
@@ -0,0 +1,111 @@
+package com.pagamentos.archive;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentGatewayResponse;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.ArchivedPaymentRepository;
+import com.pagamentos.repository.PaymentGatewayResponseRepository;
+import com.pagamentos.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.payment.archive.min-age=P30D",
+        "app.payment.archive.batch-size=2"
+})
+@Import({PaymentArchive.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentArchiveTest {
+
+    @Autowired
+    private PaymentArchive paymentArchive;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentGatewayResponseRepository gatewayResponseRepository;
+
+    @Autowired
+    private ArchivedPaymentRepository archivedPaymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void reset() {
+        archivedPaymentRepository.deleteAllInBatch();
+        gatewayResponseRepository.deleteAllInBatch();
+        paymentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void movesOnlyOldSettledPaymentsAndKeepsThemReadable() {
+        LocalDateTime old = LocalDateTime.now().minusDays(90);
+        // Mais pagamentos antigos que o tamanho do lote: o arquivamento drena vários lotes
+        Payment settled = save("ch_old_1", PaymentStatus.SUCCESS, old);
+        save("ch_old_2", PaymentStatus.REFUNDED, old);
+        save("ch_old_3", PaymentStatus.SUCCESS, old);
+        Payment pending = save("ch_old_pending", PaymentStatus.PROCESSING, old);
+        Payment recent = save("ch_recent", PaymentStatus.SUCCESS, LocalDateTime.now());
+        gatewayResponseRepository.save(PaymentGatewayResponse.of(settled.getId(), "{\"id\":\"ch_old_1\"}"));
+        PaymentResponseDTO before = PaymentResponseDTO.from(paymentRepository.findById(settled.getId()).orElseThrow());
+
+        paymentArchive.archive();
+
+        assertThat(archivedPaymentRepository.count()).isEqualTo(3);
+        assertThat(paymentRepository.findAll()).extracting(Payment::getId)
+                .containsExactlyInAnyOrder(pending.getId(), recent.getId());
+        assertThat(gatewayResponseRepository.findById(settled.getId())).isEmpty();
+
+        assertThat(paymentArchive.findResponseById(settled.getId())).get()
+                .usingRecursiveComparison().isEqualTo(before);
+        assertThat(paymentArchive.findResponseByPaymentId("ch_old_1")).get()
+                .usingRecursiveComparison().isEqualTo(before);
+        assertThat(paymentArchive.findGatewayResponse(settled.getId())).contains("{\"id\":\"ch_old_1\"}");
+        assertThat(paymentArchive.findResponseById(pending.getId())).isEmpty();
+    }
+
+    @Test
+    void paymentIdStaysUniqueWithoutThePartitionMigration() {
+        save("ch_duplicate", PaymentStatus.SUCCESS, LocalDateTime.now());
+
+        assertThatThrownBy(() -> save("ch_duplicate", PaymentStatus.PROCESSING, LocalDateTime.now()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private Payment save(String paymentId, PaymentStatus status, LocalDateTime createdAt) {
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setCustomerId("cus_archive");
+        payment.setCustomerEmail("archive@example.com");
+        payment.setAmount(new BigDecimal("42.50"));
+        payment.setPaymentMethod("CREDIT_CARD");
+        payment.setStatus(status);
+        payment.setGateway("FAKE");
+        Payment saved = paymentRepository.save(payment);
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE id = ?", Timestamp.valueOf(createdAt), saved.getId());
+        return saved;
+    }
+}
@@ -0,0 +1,55 @@
+package com.pagamentos.benchmark;
+
+import com.pagamentos.PaymentRequests;
+import com.pagamentos.PaymentServiceApplication;
+import com.pagamentos.dto.PaymentRequestDTO;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+
+import java.math.BigDecimal;
+
+// Sobe a aplicação sem servidor web, com H2 em memória (modo MySQL) e o gateway stub.
+// Sem @Configuration de propósito: não deve ser encontrada pelo component scan dos testes.
+class BenchmarkContext {
+
+    @Bean
+    StubStripeService stripeService() {
+        return new StubStripeService();
+    }
+
+    static ConfigurableApplicationContext start(String database) {
+        return new SpringApplicationBuilder(PaymentServiceApplication.class, BenchmarkContext.class)
+                .web(WebApplicationType.NONE)
+                // Argumentos de linha de comando: precisam ter precedência sobre o application.properties
+                .run(
+                        "--spring.main.allow-bean-definition-overriding=true",
+                        "--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--stripe.secret.key=sk_test_benchmark",
+                        "--stripe.public.key=pk_test_benchmark",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                        "--app.rate-limit.enabled=false",
+                        "--app.payment.journal.directory=" + System.getProperty("java.io.tmpdir") + "/payment-journal-" + database,
+                        // Tarefas agendadas fora do caminho medido
+                        "--app.payment.reconciliation.interval-ms=3600000",
+                        "--app.webhook.poll-interval-ms=3600000",
+                        "--app.statistics.resync-interval-ms=3600000");
+    }
+
+    static PaymentRequestDTO request(String customerId) {
+        PaymentRequestDTO request = PaymentRequests.request(customerId);
+        request.setAmount(new BigDecimal("149.90"));
+        request.setDescription("Assinatura mensal");
+        request.setGateway("STRIPE");
+        return request;
+    }
+}
@@ -0,0 +1,60 @@
+package com.pagamentos.benchmark;
+
+import com.pagamentos.dto.RefundRequestDTO;
+import com.pagamentos.model.Payment;
+import com.pagamentos.service.PaymentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Latência do fluxo completo de escrita: três transações curtas + eventos, com o gateway em stub
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentFlowBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkContext.start("flow");
+        paymentService = context.getBean(PaymentService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Payment processPayment() {
+        return paymentService.processPayment(BenchmarkContext.request("cus_flow"));
+    }
+
+    // Cada invocação reembolsa um pagamento novo; a criação fica fora da medição
+    @State(Scope.Thread)
+    public static class RefundState {
+
+        private RefundRequestDTO request;
+
+        @Setup(Level.Invocation)
+        public void createPayment(PaymentFlowBenchmark benchmark) {
+            Payment payment = benchmark.paymentService.processPayment(BenchmarkContext.request("cus_refund"));
+            request = new RefundRequestDTO();
+            request.setPaymentId(payment.getPaymentId());
+            request.setAmount(payment.getAmount());
+            request.setReason("Benchmark");
+        }
+    }
+
+    @Benchmark
+    public Payment refundPayment(RefundState state) {
+        return paymentService.refundPayment(state.request);
+    }
+}
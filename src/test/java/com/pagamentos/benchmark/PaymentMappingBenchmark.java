@@ -0,0 +1,74 @@
+package com.pagamentos.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.model.CurrencyCode;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Custo por requisição fora do banco: entidade -> DTO -> JSON e conversão de valores
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentMappingBenchmark {
+
+    // Tamanho típico de uma página e de uma listagem completa por cliente
+    @Param({"50", "1000"})
+    private int listSize;
+
+    private ObjectMapper objectMapper;
+    private Payment payment;
+    private PaymentResponseDTO dto;
+    private List<PaymentResponseDTO> dtos;
+    private BigDecimal amount;
+
+    @Setup
+    public void setUp() {
+        // Mesma configuração do ObjectMapper da aplicação (JavaTimeModule etc.)
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        payment = new Payment(1L, "ch_3OqLzX2eZvKYlo2C0abcdefg", "cus_123", "cliente@exemplo.com",
+                new BigDecimal("149.90"), BigDecimal.ZERO, "BRL", "CREDIT_CARD", PaymentStatus.SUCCESS, "STRIPE",
+                "Assinatura mensal", null, LocalDateTime.now(), LocalDateTime.now(), LocalDateTime.now(), 0L);
+        dto = PaymentResponseDTO.from(payment);
+
+        dtos = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            dtos.add(PaymentResponseDTO.from(payment));
+        }
+        amount = new BigDecimal("149.90");
+    }
+
+    @Benchmark
+    public PaymentResponseDTO convertToDTO() {
+        return PaymentResponseDTO.from(payment);
+    }
+
+    @Benchmark
+    public byte[] serializePayment() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(dto);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(dtos);
+    }
+
+    @Benchmark
+    public Money convertToMinorUnits() {
+        return Money.of(amount, CurrencyCode.BRL);
+    }
+}
@@ -0,0 +1,98 @@
+package com.pagamentos.benchmark;
+
+import com.pagamentos.dto.PaymentPageDTO;
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.service.PaymentService;
+import com.pagamentos.service.PaymentStatisticsService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Leituras sobre uma base com volume realista: listagens, páginas, stream e estatísticas
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentQueryBenchmark {
+
+    private static final int CUSTOMERS = 200;
+    private static final String[] STATUSES = {"SUCCESS", "SUCCESS", "SUCCESS", "FAILED", "REFUNDED"};
+
+    // Pagamentos por cliente: total da base = CUSTOMERS * paymentsPerCustomer
+    @Param({"50", "500"})
+    private int paymentsPerCustomer;
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private PaymentStatisticsService statisticsService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkContext.start("query" + paymentsPerCustomer);
+        paymentService = context.getBean(PaymentService.class);
+        statisticsService = context.getBean(PaymentStatisticsService.class);
+        seed(context.getBean(JdbcTemplate.class));
+        statisticsService.reload();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<PaymentResponseDTO> listByCustomer() {
+        return paymentService.getPaymentsByCustomer("cus_7");
+    }
+
+    @Benchmark
+    public PaymentPageDTO firstPageByCustomer() {
+        return paymentService.getPaymentsByCustomer("cus_7", null, 50);
+    }
+
+    @Benchmark
+    public void streamByCustomer(Blackhole blackhole) {
+        paymentService.streamPaymentsByCustomer("cus_7", blackhole::consume);
+    }
+
+    @Benchmark
+    public PaymentPageDTO firstPageByStatus() {
+        return paymentService.getPaymentsByStatus("FAILED", null, 50);
+    }
+
+    @Benchmark
+    public Map<String, Object> statistics() {
+        return paymentService.getPaymentStatistics();
+    }
+
+    // Recarga completa a partir do banco (bootstrap e resync periódico)
+    @Benchmark
+    public void reloadStatistics() {
+        statisticsService.reload();
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(CUSTOMERS * paymentsPerCustomer);
+        long id = 1;
+        for (int customer = 0; customer < CUSTOMERS; customer++) {
+            for (int i = 0; i < paymentsPerCustomer; i++, id++) {
+                rows.add(new Object[]{id, "ch_seed_" + id, "cus_" + customer, "cliente@exemplo.com",
+                        100 + (id % 900), "BRL", "CREDIT_CARD", STATUSES[(int) (id % STATUSES.length)], "STRIPE",
+                        Timestamp.valueOf(now.minusMinutes(id % (60 * 24 * 30)))});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO payments (id, payment_id, customer_id, customer_email, amount, currency, " +
+                "payment_method, status, gateway, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
@@ -0,0 +1,49 @@
+package com.pagamentos.benchmark;
+
+import com.pagamentos.ratelimit.PaymentRateLimiter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Custo do limite por cliente no caminho de POST /api/payments. Taxa alta o bastante para
+// nunca rejeitar: mede só a busca do balde e o CAS, com uma chave quente e com muitas chaves.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "10000"})
+    private int customers;
+
+    private PaymentRateLimiter rateLimiter;
+    private String[] customerIds;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new PaymentRateLimiter(new MockEnvironment()
+                .withProperty("app.rate-limit.customer.requests-per-second", "1000000000")
+                .withProperty("app.rate-limit.customer.burst", "1000000"));
+        customerIds = new String[customers];
+        for (int i = 0; i < customers; i++) {
+            customerIds[i] = "cus_" + i;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void checkCustomer() {
+        rateLimiter.checkCustomer(customerIds[ThreadLocalRandom.current().nextInt(customers)]);
+    }
+
+    // Todas as threads disputando os mesmos baldes
+    @Benchmark
+    @Threads(4)
+    public void checkCustomerContended() {
+        rateLimiter.checkCustomer(customerIds[ThreadLocalRandom.current().nextInt(customers)]);
+    }
+}
@@ -0,0 +1,70 @@
+package com.pagamentos.benchmark;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.service.StripeService;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// Substitui o StripeService nos benchmarks: responde na hora, sem rede,
+// para que só o custo do serviço (banco, eventos, mapeamento) seja medido
+class StubStripeService extends StripeService {
+
+    private static final String CHARGE_JSON = "{\"id\":\"ch_stub\",\"object\":\"charge\",\"paid\":true,\"status\":\"succeeded\"}";
+
+    @Override
+    public Payment processPayment(PaymentRequestDTO request, String paymentReference) {
+        Payment payment = new Payment();
+        payment.setPaymentId("ch_" + UUID.randomUUID());
+        payment.setCustomerId(request.getCustomerId());
+        payment.setCustomerEmail(request.getCustomerEmail());
+        payment.setAmount(request.getAmount());
+        payment.setCurrency(request.getCurrency());
+        payment.setPaymentMethod(request.getPaymentMethod().toString());
+        payment.setGateway("STRIPE");
+        payment.setDescription(request.getDescription());
+        payment.setGatewayResponse(CHARGE_JSON);
+        payment.setStatus(PaymentStatus.SUCCESS);
+        payment.setProcessedAt(LocalDateTime.now());
+        return payment;
+    }
+
+    @Override
+    public CompletableFuture<Payment> processPaymentAsync(PaymentRequestDTO request, String paymentReference) {
+        return CompletableFuture.completedFuture(processPayment(request, paymentReference));
+    }
+
+    @Override
+    public Payment getPaymentStatus(String paymentId) {
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setStatus(PaymentStatus.SUCCESS);
+        return payment;
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason) {
+        Payment refund = new Payment();
+        refund.setPaymentId("re_" + UUID.randomUUID());
+        refund.setStatus(PaymentStatus.REFUNDED);
+        refund.setGatewayResponse(CHARGE_JSON);
+        return refund;
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason, String refundReference) {
+        return refundPayment(paymentId, amount, reason);
+    }
+
+    @Override
+    public Payment getRefundStatus(String paymentId, String refundReference) {
+        Payment refund = new Payment();
+        refund.setPaymentId(paymentId);
+        refund.setStatus(PaymentStatus.REFUNDED);
+        return refund;
+    }
+}
@@ -0,0 +1,40 @@
+package com.pagamentos.cache;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Implementação simples para testes, sem expiração nem limite de tamanho
+public class InMemoryPaymentCache implements PaymentCache {
+
+    private final Map<String, PaymentResponseDTO> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Override
+    public PaymentResponseDTO get(String key, Function<String, PaymentResponseDTO> loader) {
+        PaymentResponseDTO cached = entries.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        return entries.computeIfAbsent(key, loader);
+    }
+
+    @Override
+    public void evict(String key) {
+        if (entries.remove(key) != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    @Override
+    public PaymentCacheStatistics statistics() {
+        return new PaymentCacheStatistics(hits.get(), misses.get(), evictions.get(), entries.size());
+    }
+}
@@ -0,0 +1,49 @@
+package com.pagamentos.cache;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentCacheInvalidatorTest {
+
+    private final InMemoryPaymentCache cache = new InMemoryPaymentCache();
+    private final PaymentCacheInvalidator invalidator = new PaymentCacheInvalidator(cache);
+
+    @Test
+    void statusChangeEvictsBothLookupKeys() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(PaymentCache.byId(1L), key -> load(loads, PaymentStatus.PROCESSING));
+        cache.get(PaymentCache.byPaymentId("ch_1"), key -> load(loads, PaymentStatus.PROCESSING));
+        cache.get(PaymentCache.byId(1L), key -> load(loads, PaymentStatus.PROCESSING));
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.statistics().hits()).isEqualTo(1);
+
+        invalidator.onStatusChanged(new PaymentStatusChangedEvent(1L, "ch_1", "cust_1", "STRIPE", "BRL",
+                "PIX", BigDecimal.TEN, PaymentStatus.PROCESSING, PaymentStatus.SUCCESS,
+                LocalDateTime.now(), LocalDateTime.now(), 1));
+
+        PaymentResponseDTO byId = cache.get(PaymentCache.byId(1L), key -> load(loads, PaymentStatus.SUCCESS));
+        PaymentResponseDTO byPaymentId = cache.get(PaymentCache.byPaymentId("ch_1"), key -> load(loads, PaymentStatus.SUCCESS));
+
+        assertThat(byId.getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(byPaymentId.getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(cache.statistics().evictions()).isEqualTo(2);
+    }
+
+    private PaymentResponseDTO load(AtomicInteger loads, PaymentStatus status) {
+        loads.incrementAndGet();
+        PaymentResponseDTO dto = new PaymentResponseDTO();
+        dto.setId(1L);
+        dto.setPaymentId("ch_1");
+        dto.setStatus(status);
+        return dto;
+    }
+}
@@ -0,0 +1,73 @@
+package com.pagamentos.config;
+
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(IdGeneratorInitializer.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdGeneratorInitializerTest {
+
+    @Autowired
+    private IdGeneratorInitializer initializer;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void upgradedDatabaseAllocatesAboveTheExistingIds() {
+        // Base anterior ao gerador de tabela: IDs AUTO_INCREMENT e nenhuma linha em id_generators
+        jdbcTemplate.update("DELETE FROM id_generators");
+        jdbcTemplate.update("INSERT INTO payments (id, payment_id, customer_id, customer_email, amount, refunded_amount, "
+                + "currency, payment_method, status, gateway, created_at, version) "
+                + "VALUES (5000, 'ch_legacy', 'cus_legacy', 'legacy@example.com', 10.00, 0, 'BRL', 'PIX', 'SUCCESS', "
+                + "'STRIPE', CURRENT_TIMESTAMP, 0)");
+
+        initializer.seed();
+        Long seeded = nextValue();
+        // Uma nova inicialização não mexe no valor já ajustado
+        initializer.seed();
+        assertThat(nextValue()).isEqualTo(seeded);
+
+        Payment first = paymentRepository.save(payment("ch_after_upgrade_1"));
+        Payment second = paymentRepository.save(payment("ch_after_upgrade_2"));
+        assertThat(first.getId()).isGreaterThan(5000L);
+        assertThat(second.getId()).isGreaterThan(first.getId());
+        assertThat(paymentRepository.count()).isEqualTo(3);
+    }
+
+    private Long nextValue() {
+        return jdbcTemplate.queryForObject("SELECT next_value FROM id_generators WHERE name = 'payments'", Long.class);
+    }
+
+    private Payment payment(String paymentId) {
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setCustomerId("cus_upgrade");
+        payment.setCustomerEmail("upgrade@example.com");
+        payment.setAmount(new BigDecimal("20.00"));
+        payment.setPaymentMethod("PIX");
+        payment.setStatus(PaymentStatus.PROCESSING);
+        payment.setGateway("FAKE");
+        return payment;
+    }
+}
@@ -0,0 +1,47 @@
+package com.pagamentos.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamentos.export.PaymentExportService;
+import com.pagamentos.service.BulkPaymentService;
+import com.pagamentos.service.IdempotencyService;
+import com.pagamentos.service.PaymentService;
+import com.pagamentos.subscription.PaymentSubscriptionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PaymentControllerTest {
+
+    private final PaymentService paymentService = mock(PaymentService.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        PaymentController controller = new PaymentController(paymentService, mock(IdempotencyService.class),
+                mock(BulkPaymentService.class), mock(PaymentExportService.class),
+                mock(PaymentSubscriptionService.class), new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void refundsWithoutAPositiveAmountAreRejected() throws Exception {
+        for (String amount : new String[]{"0", "0.00", "-10.00"}) {
+            mockMvc.perform(post("/api/payments/refund")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"paymentId\":\"ch_1\",\"amount\":" + amount + "}"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        verify(paymentService, never()).refundPayment(any());
+    }
+}
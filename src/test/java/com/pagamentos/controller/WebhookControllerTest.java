@@ -0,0 +1,75 @@
+package com.pagamentos.controller;
+
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.service.WebhookIngestionService;
+import com.stripe.net.Webhook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WebhookControllerTest {
+
+    private static final String SECRET = "whsec_test";
+    // Versão diferente da do SDK: getObject() fica vazio
+    private static final String OTHER_API_VERSION = "2020-08-27";
+
+    private final WebhookIngestionService webhookIngestionService = mock(WebhookIngestionService.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        WebhookController controller = new WebhookController(webhookIngestionService);
+        ReflectionTestUtils.setField(controller, "webhookSecret", SECRET);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void eventsFromAnotherApiVersionAreStillApplied() throws Exception {
+        String payload = event("evt_refunded", "charge.refunded",
+                "{\"id\":\"ch_refunded\",\"object\":\"charge\",\"refunded\":true}");
+
+        send(payload).andExpect(status().isOk());
+
+        verify(webhookIngestionService).enqueue(eq("evt_refunded"), eq("charge.refunded"), anyLong(),
+                eq("ch_refunded"), eq(PaymentStatus.REFUNDED));
+    }
+
+    @Test
+    void unreadableObjectsAreNotAcknowledged() throws Exception {
+        String payload = event("evt_unreadable", "payment_intent.succeeded",
+                "{\"id\":\"pi_unreadable\",\"object\":\"payment_intent\",\"amount\":{\"value\":1}}");
+
+        send(payload).andExpect(status().is5xxServerError());
+
+        verify(webhookIngestionService, never()).enqueue(anyString(), anyString(), anyLong(), anyString(), any());
+    }
+
+    private ResultActions send(String payload) throws Exception {
+        long timestamp = Webhook.Util.getTimeNow();
+        String signature = Webhook.Util.computeHmacSha256(SECRET, timestamp + "." + payload);
+        return mockMvc.perform(post("/api/webhooks/stripe")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Stripe-Signature", "t=" + timestamp + ",v1=" + signature)
+                .content(payload));
+    }
+
+    private static String event(String id, String type, String object) {
+        return "{\"id\":\"" + id + "\",\"object\":\"event\",\"api_version\":\"" + OTHER_API_VERSION + "\","
+                + "\"created\":1700000000,\"type\":\"" + type + "\",\"data\":{\"object\":" + object + "}}";
+    }
+}
@@ -0,0 +1,152 @@
+package com.pagamentos.datasource;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Dois bancos H2 em memória no papel de primário e réplica; a "replicação" é a cópia manual da batida
+class ReplicaRoutingTest {
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaLagMonitor lagMonitor;
+    private ReadRouting readRouting;
+    private JdbcTemplate routed;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primaryDataSource = h2("primary");
+        DataSource replicaDataSource = h2("replica");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        for (JdbcTemplate database : new JdbcTemplate[] {primary, replica}) {
+            database.execute("CREATE TABLE origin (name VARCHAR(20))");
+        }
+        primary.update("INSERT INTO origin VALUES ('primary')");
+        replica.update("INSERT INTO origin VALUES ('replica')");
+        replica.execute("CREATE TABLE replication_heartbeat (id INT PRIMARY KEY, beat_at TIMESTAMP(6) NOT NULL)");
+
+        lagMonitor = new ReplicaLagMonitor(primaryDataSource, replicaDataSource,
+                new MockEnvironment().withProperty("app.datasource.replica.max-lag", "PT0.2S"),
+                new PaymentMetrics(new SimpleMeterRegistry()));
+        readRouting = new ReadRouting(Optional.of(lagMonitor));
+
+        DataSource routing = ReplicaDataSourceConfig.routingDataSource(primaryDataSource, replicaDataSource, lagMonitor);
+        routed = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void readOnlyReplicaReadsUseTheReplicaOnlyWhileItIsCaughtUp() throws Exception {
+        // Sem batida visível ainda: réplica considerada inacessível
+        assertThat(readOnReplica()).isEqualTo("primary");
+
+        replicate();
+        assertThat(readOnReplica()).isEqualTo("replica");
+        // Sem pedir a réplica, ou em transação de escrita, sempre o primário
+        assertThat(readOnly(this::origin)).isEqualTo("primary");
+        assertThat(readWrite(() -> readRouting.onReplica(this::origin))).isEqualTo("primary");
+
+        // Replicação parada: passado o max-lag, as leituras voltam ao primário
+        Thread.sleep(300);
+        lagMonitor.heartbeat();
+        assertThat(readOnReplica()).isEqualTo("primary");
+
+        replicate();
+        assertThat(readOnReplica()).isEqualTo("replica");
+    }
+
+    @Test
+    void recentWritesAreReadFromThePrimaryUntilReplicated() throws Exception {
+        replicate();
+        Thread.sleep(5);
+        readRouting.onStatusChanged(created("cus_writer"));
+
+        assertThat(readOnReplica(ReadRouting.byCustomer("cus_writer"))).isEqualTo("primary");
+        assertThat(readOnReplica(ReadRouting.byCustomer("cus_other"))).isEqualTo("replica");
+
+        // A batida gravada depois do commit chegou à réplica: a escrita também chegou
+        replicate();
+        assertThat(readOnReplica(ReadRouting.byCustomer("cus_writer"))).isEqualTo("replica");
+    }
+
+    @Test
+    void lookupMissesOnTheReplicaAreConfirmedOnThePrimary() {
+        // Pagamento criado em outro nó: este não registrou a escrita e a réplica ainda não o tem
+        primary.execute("CREATE TABLE created (payment_id VARCHAR(20))");
+        replica.execute("CREATE TABLE created (payment_id VARCHAR(20))");
+        primary.update("INSERT INTO created VALUES ('ch_other_node')");
+        replicate();
+
+        assertThat(readOnly(() -> readRouting.onReplica(() -> find("ch_other_node")))).isNull();
+        assertThat(readRouting.onReplicaOrPrimary(() -> readOnly(() -> find("ch_other_node")),
+                ReadRouting.byPaymentId("ch_other_node"))).isEqualTo("ch_other_node");
+        assertThat(readRouting.onReplicaOrPrimary(() -> readOnly(() -> find("ch_missing")))).isNull();
+    }
+
+    private String find(String paymentId) {
+        return routed.query("SELECT payment_id FROM created WHERE payment_id = ?",
+                rs -> rs.next() ? rs.getString(1) : null, paymentId);
+    }
+
+    private String readOnReplica(String... keys) {
+        return readOnly(() -> readRouting.onReplica(this::origin, keys));
+    }
+
+    private String readOnly(Supplier<String> read) {
+        return readOnly.execute(status -> read.get());
+    }
+
+    private String readWrite(Supplier<String> read) {
+        return readWrite.execute(status -> read.get());
+    }
+
+    private String origin() {
+        return routed.queryForObject("SELECT name FROM origin", String.class);
+    }
+
+    // Grava a batida no primário, copia para a réplica e deixa o monitor ler a réplica
+    private void replicate() {
+        lagMonitor.heartbeat();
+        replica.update("MERGE INTO replication_heartbeat (id, beat_at) KEY (id) VALUES (1, ?)",
+                primary.queryForObject("SELECT beat_at FROM replication_heartbeat WHERE id = 1", Timestamp.class));
+        lagMonitor.heartbeat();
+    }
+
+    private PaymentStatusChangedEvent created(String customerId) {
+        Payment payment = new Payment();
+        payment.setId(1L);
+        payment.setPaymentId("ch_" + customerId);
+        payment.setCustomerId(customerId);
+        payment.setStatus(PaymentStatus.SUCCESS);
+        return PaymentStatusChangedEvent.of(payment, null);
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
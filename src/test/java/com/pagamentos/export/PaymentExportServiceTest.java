@@ -0,0 +1,159 @@
+package com.pagamentos.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pagamentos.archive.PaymentArchive;
+import com.pagamentos.datasource.ReadRouting;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.ArchivedPaymentRepository;
+import com.pagamentos.repository.PaymentGatewayResponseRepository;
+import com.pagamentos.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.payment.archive.min-age=P30D",
+        "app.payment.export.fetch-size=2"
+})
+@Import({PaymentExportService.class, PaymentArchive.class, ReadRouting.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentExportServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final LocalDate OLD_DAY = TODAY.minusDays(60);
+
+    @Autowired
+    private PaymentExportService paymentExportService;
+
+    @Autowired
+    private PaymentArchive paymentArchive;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentGatewayResponseRepository gatewayResponseRepository;
+
+    @Autowired
+    private ArchivedPaymentRepository archivedPaymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void seed() {
+        archivedPaymentRepository.deleteAllInBatch();
+        gatewayResponseRepository.deleteAllInBatch();
+        paymentRepository.deleteAllInBatch();
+
+        save("ch_old", "FAKE", "BRL", "10.00", OLD_DAY.atTime(9, 0));
+        save("ch_today_1", "FAKE", "BRL", "20.00", TODAY.atTime(0, 0));
+        save("ch_today_2", "FAKE", "BRL", "30.50", TODAY.atTime(1, 0));
+        save("ch_usd", "FAKE", "USD", "99.00", TODAY.atTime(2, 0));
+        save("ch_other", "STRIPE", "BRL", "5.00", TODAY.atTime(3, 0));
+        save("ch_too_old", "FAKE", "BRL", "1.00", OLD_DAY.minusDays(1).atTime(23, 59));
+        // ch_old e ch_too_old vão para payment_archive: a exportação lê as duas tabelas
+        paymentArchive.archive();
+    }
+
+    @Test
+    void streamsFilteredPaymentsFromBothTablesWithDailySubtotals() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PaymentExportService.ExportSummary summary = paymentExportService.export(
+                PaymentExportQuery.of(OLD_DAY, TODAY, "success", "fake", "brl", ExportFormat.CSV), output);
+
+        List<String> lines = gunzip(output.toByteArray()).lines().toList();
+        assertThat(summary.rows()).isEqualTo(3);
+        assertThat(summary.subtotals()).isEqualTo(2);
+        assertThat(lines.get(0)).startsWith("record,date,status,gateway,currency,count,amount");
+        assertThat(lines.subList(1, 4)).allMatch(line -> line.startsWith("payment,"))
+                .anyMatch(line -> line.contains(",ch_old,"))
+                .noneMatch(line -> line.contains("ch_too_old") || line.contains("ch_usd") || line.contains("ch_other"));
+        assertThat(lines.subList(4, lines.size())).containsExactly(
+                "subtotal," + OLD_DAY + ",SUCCESS,FAKE,BRL,1,10.00,0.00,,,,,",
+                "subtotal," + TODAY + ",SUCCESS,FAKE,BRL,2,50.50,0.00,,,,,");
+    }
+
+    @Test
+    void writesNdjsonToAFileOnlyWhenComplete(@TempDir Path directory) throws IOException {
+        ReflectionTestUtils.setField(paymentExportService, "directory", directory);
+
+        PaymentExportService.ExportFile file = paymentExportService.exportToFile(
+                PaymentExportQuery.of(TODAY, TODAY, null, null, null, ExportFormat.NDJSON));
+
+        assertThat(file.path().getFileName().toString()).endsWith("payments_" + TODAY + "_" + TODAY + ".ndjson.gz");
+        try (var files = Files.list(directory)) {
+            assertThat(files).containsExactly(file.path());
+        }
+        String content = gunzip(Files.readAllBytes(file.path()));
+        assertThat(content).contains("\"amount\":50.50");
+        List<JsonNode> records = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            records.add(objectMapper.readTree(line));
+        }
+        assertThat(records).filteredOn(node -> node.get("record").asText().equals("payment")).hasSize(4);
+        assertThat(records).filteredOn(node -> node.get("record").asText().equals("subtotal"))
+                .extracting(node -> node.get("gateway").asText() + "/" + node.get("currency").asText()
+                        + "=" + node.get("count").asLong() + ":" + node.get("amount").asText())
+                .containsExactly("FAKE/BRL=2:50.5", "FAKE/USD=1:99.0", "STRIPE/BRL=1:5.0");
+
+        assertThatThrownBy(() -> PaymentExportQuery.of(TODAY, OLD_DAY, null, null, null, ExportFormat.CSV))
+                .hasMessageContaining("Período inválido");
+    }
+
+    private void save(String paymentId, String gateway, String currency, String amount, LocalDateTime createdAt) {
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setCustomerId("cus_export, ltda");
+        payment.setCustomerEmail("export@example.com");
+        payment.setAmount(new BigDecimal(amount));
+        payment.setCurrency(currency);
+        payment.setPaymentMethod("CREDIT_CARD");
+        payment.setStatus(PaymentStatus.SUCCESS);
+        payment.setGateway(gateway);
+        Long id = paymentRepository.save(payment).getId();
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE id = ?", Timestamp.valueOf(createdAt), id);
+    }
+
+    private String gunzip(byte[] bytes) throws IOException {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.pagamentos.journal;
+
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentJournalTest {
+
+    private static final int PAYMENTS = 200;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void concurrentTransitionsRollSegmentsAndReplayIntoPerPaymentState() throws Exception {
+        PaymentJournal journal = open();
+        // Cada pagamento: criação, confirmação com o ID do gateway, webhook e reembolso
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long id = 1; id <= PAYMENTS; id++) {
+                long paymentId = id;
+                executor.submit(() -> {
+                    journal.onStatusChanged(event(paymentId, "pending_" + paymentId, null, PaymentStatus.PROCESSING));
+                    journal.onStatusChanged(event(paymentId, "ch_" + paymentId, PaymentStatus.PROCESSING, PaymentStatus.SUCCESS));
+                    journal.recordWebhook("evt_" + paymentId, "charge.refunded", "ch_" + paymentId, PaymentStatus.REFUNDED);
+                    journal.onStatusChanged(event(paymentId, "ch_" + paymentId, PaymentStatus.SUCCESS, PaymentStatus.REFUNDED));
+                });
+            }
+        }
+        journal.close();
+
+        assertThat(segments()).hasSizeGreaterThan(1);
+
+        PaymentJournal reopened = open();
+        List<Long> sequences = new ArrayList<>();
+        reopened.replay(1, entry -> sequences.add(entry.sequence()));
+        assertThat(sequences).hasSize(PAYMENTS * 4);
+        assertThat(sequences).isSorted().first().isEqualTo(1L);
+
+        Map<Long, JournalPaymentState> states = reopened.rebuildState();
+        assertThat(states).hasSize(PAYMENTS);
+        JournalPaymentState state = states.get(42L);
+        assertThat(state.paymentId()).isEqualTo("ch_42");
+        assertThat(state.status()).isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(state.amount()).isEqualByComparingTo("10.42");
+        assertThat(state.transitions()).isEqualTo(3);
+        assertThat(state.webhooksReceived()).isEqualTo(1);
+        assertThat(reopened.history(42L)).extracting(JournalEntry::type).containsExactly(
+                JournalEntryType.CREATED, JournalEntryType.SUCCEEDED,
+                JournalEntryType.WEBHOOK_RECEIVED, JournalEntryType.REFUNDED);
+
+        // A sequência continua depois da reabertura
+        assertThat(reopened.append(JournalEntry.transition(event(1, "ch_1", PaymentStatus.REFUNDED, PaymentStatus.REFUNDED))))
+                .isEqualTo(PAYMENTS * 4 + 1);
+        reopened.close();
+    }
+
+    @Test
+    void recoveryDiscardsATornTailAndContinuesAfterTheLastIntactRecord() throws IOException {
+        PaymentJournal journal = open();
+        for (long id = 1; id <= 3; id++) {
+            journal.onStatusChanged(event(id, "pending_" + id, null, PaymentStatus.PROCESSING));
+        }
+        journal.close();
+
+        // Simula uma queda no meio da escrita do terceiro registro
+        Path segment = segments().get(segments().size() - 1);
+        List<Integer> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            for (int offset = 0; buffer.getInt(offset) != 0; offset += JournalEntry.HEADER_SIZE + buffer.getInt(offset)) {
+                offsets.add(offset);
+            }
+            buffer.put(offsets.get(2) + JournalEntry.HEADER_SIZE + 20, (byte) 0x7f);
+        }
+
+        PaymentJournal recovered = open();
+        assertThat(recovered.rebuildState()).containsOnlyKeys(1L, 2L);
+        assertThat(recovered.append(JournalEntry.transition(event(4, "pending_4", null, PaymentStatus.PROCESSING))))
+                .isEqualTo(3);
+        recovered.close();
+
+        PaymentJournal reopened = open();
+        assertThat(reopened.rebuildState()).containsOnlyKeys(1L, 2L, 4L);
+        reopened.close();
+    }
+
+    @Test
+    void transitionsOfATransactionAreWrittenTogetherOnlyAfterCommit() throws IOException {
+        PaymentJournal journal = open();
+
+        inTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, () ->
+                journal.onStatusChanged(event(1, "pending_1", null, PaymentStatus.PROCESSING)));
+        assertThat(sequences(journal)).isEmpty();
+
+        inTransaction(TransactionSynchronization.STATUS_COMMITTED, () -> {
+            for (long id = 2; id <= 4; id++) {
+                journal.onStatusChanged(event(id, "pending_" + id, null, PaymentStatus.PROCESSING));
+            }
+            // Nada é gravado antes do commit
+            assertThat(sequences(journal)).isEmpty();
+        });
+
+        assertThat(sequences(journal)).containsExactly(1L, 2L, 3L);
+        assertThat(journal.rebuildState()).containsOnlyKeys(2L, 3L, 4L);
+        journal.close();
+    }
+
+    @Test
+    void retentionDeletesOnlyTheOldestExpiredSealedSegments() throws IOException {
+        PaymentJournal journal = open();
+        for (long id = 1; id <= PAYMENTS * 3; id++) {
+            journal.onStatusChanged(event(id, "pending_" + id, null, PaymentStatus.PROCESSING));
+        }
+        List<Path> segments = segments();
+        assertThat(segments).hasSizeGreaterThan(3);
+
+        // Os dois primeiros fora da retenção; o terceiro, recente, segura os seguintes
+        FileTime expired = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+        Files.setLastModifiedTime(segments.get(0), expired);
+        Files.setLastModifiedTime(segments.get(1), expired);
+        Files.setLastModifiedTime(segments.get(3), expired);
+        journal.purgeExpired();
+
+        assertThat(segments()).isEqualTo(segments.subList(2, segments.size()));
+        long firstRetained = JournalSegment.firstSequence(segments.get(2));
+        assertThat(sequences(journal)).first().isEqualTo(firstRetained);
+        assertThat(sequences(journal)).last().isEqualTo(PAYMENTS * 3L);
+        journal.close();
+
+        PaymentJournal reopened = open();
+        assertThat(reopened.append(JournalEntry.transition(event(1, "ch_1", PaymentStatus.PROCESSING, PaymentStatus.SUCCESS))))
+                .isEqualTo(PAYMENTS * 3 + 1);
+        reopened.close();
+    }
+
+    private PaymentJournal open() throws IOException {
+        return new PaymentJournal(directory, DataSize.ofKilobytes(8), true, Duration.ofDays(1));
+    }
+
+    private void inTransaction(int status, Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        } finally {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+    }
+
+    private List<Long> sequences(PaymentJournal journal) {
+        List<Long> sequences = new ArrayList<>();
+        journal.replay(1, entry -> sequences.add(entry.sequence()));
+        return sequences;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(JournalSegment::isSegment).sorted().toList();
+        }
+    }
+
+    private PaymentStatusChangedEvent event(long id, String paymentId, PaymentStatus previous, PaymentStatus next) {
+        return new PaymentStatusChangedEvent(id, paymentId, "cus_journal", "STRIPE", "BRL", "CREDIT_CARD",
+                new BigDecimal("10." + String.format("%02d", id % 100)), previous, next,
+                LocalDateTime.now(), LocalDateTime.now(), 0);
+    }
+}
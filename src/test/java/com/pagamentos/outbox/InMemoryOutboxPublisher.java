@@ -0,0 +1,50 @@
+package com.pagamentos.outbox;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Consumidor de teste: deduplica por eventId como um consumidor real faria
+class InMemoryOutboxPublisher implements OutboxPublisher {
+
+    private final String name;
+    private final Map<String, OutboxMessage> received = new LinkedHashMap<>();
+    private int deliveries;
+    private volatile boolean failing;
+
+    InMemoryOutboxPublisher(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxMessage> messages) {
+        if (failing) {
+            throw new IllegalStateException("Consumidor " + name + " indisponível");
+        }
+        deliveries += messages.size();
+        messages.forEach(message -> received.putIfAbsent(message.eventId(), message));
+    }
+
+    synchronized List<OutboxMessage> received() {
+        return new ArrayList<>(received.values());
+    }
+
+    synchronized int deliveries() {
+        return deliveries;
+    }
+
+    synchronized void clear() {
+        received.clear();
+        deliveries = 0;
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+}
@@ -0,0 +1,139 @@
+package com.pagamentos.outbox;
+
+import com.pagamentos.model.OutboxStatus;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.OutboxEventRepository;
+import com.pagamentos.service.PaymentStateService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.pagamentos.PaymentRequests.request;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.outbox.batch-size=50",
+        "app.outbox.retry-delay=PT0S"
+})
+@Import({PaymentStateService.class, OutboxWriter.class, OutboxRelay.class, JacksonAutoConfiguration.class,
+        OutboxRelayTest.Publishers.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest {
+
+    @Autowired
+    private PaymentStateService paymentStateService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private InMemoryOutboxPublisher ledger;
+
+    @Autowired
+    private InMemoryOutboxPublisher notifications;
+
+    @BeforeEach
+    void reset() {
+        outboxEventRepository.deleteAll();
+        ledger.clear();
+        notifications.clear();
+        ledger.setFailing(false);
+        notifications.setFailing(false);
+    }
+
+    @Test
+    void everyConsumerReceivesEachStatusChangeOnceInOrder() {
+        Payment payment = paymentStateService.createProcessing(request("cus_outbox"), "FAKE");
+        Payment result = new Payment();
+        result.setPaymentId("ch_outbox");
+        result.setStatus(PaymentStatus.SUCCESS);
+        paymentStateService.complete(payment.getId(), result);
+
+        // Mais eventos que o tamanho do lote: o relay drena vários lotes na mesma rodada
+        paymentStateService.createProcessingBatch(
+                Collections.nCopies(120, request("cus_outbox")), Collections.nCopies(120, "FAKE"));
+
+        assertThat(outboxEventRepository.count()).isEqualTo(2 * 122);
+
+        outboxRelay.relay();
+        outboxRelay.relay();
+
+        for (InMemoryOutboxPublisher consumer : List.of(ledger, notifications)) {
+            assertThat(consumer.deliveries()).isEqualTo(122);
+            List<OutboxMessage> messages = consumer.received();
+            assertThat(messages.get(0).payload()).contains("\"newStatus\":\"PROCESSING\"");
+            assertThat(messages.get(1).payload()).contains("\"previousStatus\":\"PROCESSING\"", "\"newStatus\":\"SUCCESS\"");
+            assertThat(messages.get(1).aggregateId()).isEqualTo(payment.getId());
+            // A ordem de entrega não é garantida entre nós: a sequência por pagamento é que ordena
+            assertThat(messages.get(0).aggregateSequence()).isZero();
+            assertThat(messages.get(1).aggregateSequence()).isGreaterThan(messages.get(0).aggregateSequence());
+        }
+        assertThat(ledger.received().get(1).eventId()).isEqualTo(notifications.received().get(1).eventId());
+        assertThat(outboxEventRepository.findAll())
+                .allSatisfy(event -> assertThat(event.getStatus()).isEqualTo(OutboxStatus.PUBLISHED));
+    }
+
+    @Test
+    void failingConsumerRetriesWithoutHoldingBackTheOthers() {
+        ledger.setFailing(true);
+        paymentStateService.createProcessing(request("cus_outbox"), "FAKE");
+        paymentStateService.createProcessing(request("cus_outbox"), "FAKE");
+
+        outboxRelay.relay();
+        assertThat(ledger.deliveries()).isZero();
+        assertThat(notifications.deliveries()).isEqualTo(2);
+
+        ledger.setFailing(false);
+        outboxRelay.relay();
+        assertThat(ledger.deliveries()).isEqualTo(2);
+        assertThat(notifications.deliveries()).isEqualTo(2);
+    }
+
+    @Test
+    void rolledBackChangeLeavesNothingInTheOutbox() {
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            paymentStateService.createProcessing(request("cus_outbox"), "FAKE");
+            throw new IllegalStateException("falha depois da mudança de status");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @TestConfiguration
+    static class Publishers {
+
+        @Bean
+        InMemoryOutboxPublisher ledger() {
+            return new InMemoryOutboxPublisher("ledger");
+        }
+
+        @Bean
+        InMemoryOutboxPublisher notifications() {
+            return new InMemoryOutboxPublisher("notifications");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pagamentos.ratelimit;
+
+import com.pagamentos.exception.RateLimitExceededException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyedRateLimiterTest {
+
+    @Test
+    void contendedBucketNeverAdmitsMoreThanBurstPlusRefill() throws Exception {
+        double rate = 1_000;
+        int burst = 50;
+        KeyedRateLimiter limiter = new KeyedRateLimiter(key -> new TokenBucket(rate, burst), 1_000, Duration.ofMinutes(1));
+        int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+        AtomicLong admitted = new AtomicLong();
+        AtomicLong attempts = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        Duration window = Duration.ofMillis(300);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + window.toNanos();
+                while (System.nanoTime() < deadline) {
+                    attempts.incrementAndGet();
+                    if (limiter.tryAcquire("cus_hot") == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - begin) / 1e9;
+
+        // Limite superior exato do GCRA (rajada + reabastecimento); inferior folgado para máquinas lentas
+        assertThat(admitted.get()).isLessThanOrEqualTo((long) (burst + rate * elapsedSeconds) + 1);
+        assertThat(admitted.get()).isGreaterThanOrEqualTo(burst + (long) (rate * window.toMillis() / 1000 / 2));
+        assertThat(attempts.get()).isGreaterThan(admitted.get() * 10);
+    }
+
+    @Test
+    void keysAreIndependentAndMemoryIsBounded() {
+        KeyedRateLimiter limiter = new KeyedRateLimiter(key -> new TokenBucket(1, 2), 100, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(limiter.tryAcquire("cus_" + i)).isZero();
+        }
+        assertThat(limiter.size()).isLessThanOrEqualTo(100);
+
+        assertThat(limiter.tryAcquire("cus_a")).isZero();
+        assertThat(limiter.tryAcquire("cus_a")).isZero();
+        assertThat(limiter.tryAcquire("cus_a")).isPositive();
+        assertThat(limiter.tryAcquire("cus_b")).isZero();
+    }
+
+    @Test
+    void rejectionCarriesRetryAfter() {
+        PaymentRateLimiter rateLimiter = new PaymentRateLimiter(new MockEnvironment()
+                .withProperty("app.rate-limit.customer.requests-per-second", "0.5")
+                .withProperty("app.rate-limit.customer.burst", "1"));
+
+        rateLimiter.checkCustomer("cus_1");
+        assertThatThrownBy(() -> rateLimiter.checkCustomer("cus_1"))
+                .isInstanceOfSatisfying(RateLimitExceededException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+                });
+    }
+}
@@ -0,0 +1,28 @@
+package com.pagamentos.repository;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Mesmas colunas de Payment com a geração de ID antiga, só para comparação
+@Entity
+@Table(name = "payments_identity_benchmark")
+@Data
+class IdentityPayment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String paymentId;
+    private String customerId;
+    private String customerEmail;
+    private BigDecimal amount;
+    private String currency;
+    private String paymentMethod;
+    private String status;
+    private String gateway;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,121 @@
+package com.pagamentos.repository;
+
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compara o INSERT com IDENTITY (um round trip por linha) com o gerador pooled + batch.
+// Grava ~22 mil linhas: fora do mvn test padrão (grupo benchmark no pom)
+@Tag("benchmark")
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.SQL=INFO",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=INFO",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentInsertBenchmarkTest {
+
+    private static final int ROWS = 10_000;
+    private static final int ROWS_PER_TRANSACTION = 500;
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void pooledIdsBatchInsertsThatIdentityExecutesOneByOne() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Aquecimento: JIT e alocação dos primeiros blocos de IDs
+        insert(1_000, this::identityPayment);
+        insert(1_000, this::payment);
+
+        statistics.clear();
+        insert(ROWS, this::identityPayment);
+        long identityStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        insert(ROWS, this::payment);
+        long pooledStatements = statistics.getPrepareStatementCount();
+
+        // IDENTITY executa um INSERT por linha; o pooled agrupa em batches e reserva IDs em blocos
+        assertThat(identityStatements).isGreaterThanOrEqualTo(ROWS);
+        assertThat(pooledStatements).isLessThan(ROWS / BATCH_SIZE * 3L);
+    }
+
+    private void insert(int rows, IntFunction<Object> factory) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int from = 0; from < rows; from += ROWS_PER_TRANSACTION) {
+            int to = Math.min(from + ROWS_PER_TRANSACTION, rows);
+            int first = from;
+            transaction.executeWithoutResult(status -> {
+                List<Object> entities = new ArrayList<>(to - first);
+                for (int i = first; i < to; i++) {
+                    entities.add(factory.apply(i));
+                }
+                entities.forEach(entityManager::persist);
+                entityManager.flush();
+                entityManager.clear();
+            });
+        }
+    }
+
+    private Payment payment(int i) {
+        Payment payment = new Payment();
+        payment.setPaymentId("ch_" + UUID.randomUUID());
+        payment.setCustomerId("cus_" + (i % 1000));
+        payment.setCustomerEmail("cliente@exemplo.com");
+        payment.setAmount(BigDecimal.valueOf(100));
+        payment.setCurrency("BRL");
+        payment.setPaymentMethod("CREDIT_CARD");
+        payment.setStatus(PaymentStatus.SUCCESS);
+        payment.setGateway("STRIPE");
+        return payment;
+    }
+
+    private IdentityPayment identityPayment(int i) {
+        IdentityPayment payment = new IdentityPayment();
+        payment.setPaymentId("ch_" + UUID.randomUUID());
+        payment.setCustomerId("cus_" + (i % 1000));
+        payment.setCustomerEmail("cliente@exemplo.com");
+        payment.setAmount(BigDecimal.valueOf(100));
+        payment.setCurrency("BRL");
+        payment.setPaymentMethod("CREDIT_CARD");
+        payment.setStatus(PaymentStatus.SUCCESS.name());
+        payment.setGateway("STRIPE");
+        payment.setCreatedAt(LocalDateTime.now());
+        return payment;
+    }
+}
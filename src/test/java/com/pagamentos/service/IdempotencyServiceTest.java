@@ -0,0 +1,154 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.GatewayUnavailableException;
+import com.pagamentos.exception.IdempotencyConflictException;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentMethod;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.IdempotencyRecordRepository;
+import com.pagamentos.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static com.pagamentos.PaymentRequests.request;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({IdempotencyService.class, PaymentStateService.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private PaymentStateService paymentStateService;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void reset() {
+        idempotencyRecordRepository.deleteAllInBatch();
+        paymentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void retryAfterGatewayTimeoutNeverChargesAgain() {
+        AtomicReference<Payment> created = new AtomicReference<>();
+        AtomicInteger charges = new AtomicInteger();
+        Supplier<PaymentResponseDTO> timeout = () -> {
+            charges.incrementAndGet();
+            created.set(paymentStateService.createProcessing(request("cus_idempotency"), "STRIPE", "key-timeout"));
+            throw new GatewayTimeoutException("Stripe sem resposta", created.get().getId());
+        };
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-timeout", request("cus_idempotency"), timeout))
+                .isInstanceOf(GatewayTimeoutException.class);
+
+        // Enquanto a conciliação não decide, a chave continua ocupada
+        assertThatThrownBy(() -> idempotencyService.execute("key-timeout", request("cus_idempotency"), timeout))
+                .isInstanceOf(IdempotencyConflictException.class);
+
+        settle(created.get(), "ch_settled");
+
+        PaymentResponseDTO replayed = idempotencyService.execute("key-timeout", request("cus_idempotency"), timeout);
+        assertThat(replayed.getId()).isEqualTo(created.get().getId());
+        assertThat(replayed.getPaymentId()).isEqualTo("ch_settled");
+        assertThat(replayed.getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(charges).hasValue(1);
+    }
+
+    @Test
+    void retryAfterNodeDiesMidRequestFollowsThePayment() {
+        AtomicReference<Payment> created = new AtomicReference<>();
+        AtomicInteger charges = new AtomicInteger();
+        Supplier<PaymentResponseDTO> crash = () -> {
+            charges.incrementAndGet();
+            created.set(paymentStateService.createProcessing(request("cus_idempotency"), "STRIPE", "key-crash"));
+            // Nada depois de createProcessing roda: nem o catch do timeout, nem complete()
+            throw new NodeCrash();
+        };
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-crash", request("cus_idempotency"), crash))
+                .isInstanceOf(NodeCrash.class);
+        assertThat(idempotencyRecordRepository.findById("key-crash"))
+                .hasValueSatisfying(record -> assertThat(record.getPaymentId()).isEqualTo(created.get().getId()));
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-crash", request("cus_idempotency"), crash))
+                .isInstanceOf(IdempotencyConflictException.class);
+
+        settle(created.get(), "ch_recovered");
+
+        PaymentResponseDTO replayed = idempotencyService.execute("key-crash", request("cus_idempotency"), crash);
+        assertThat(replayed.getId()).isEqualTo(created.get().getId());
+        assertThat(replayed.getPaymentId()).isEqualTo("ch_recovered");
+        assertThat(replayed.getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(charges).hasValue(1);
+    }
+
+    @Test
+    void rejectionBeforeTheGatewayReleasesTheKey() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> idempotencyService.execute("key-rejected", request("cus_idempotency"), () -> {
+            attempts.incrementAndGet();
+            throw new GatewayUnavailableException("Nenhum gateway disponível para o pagamento");
+        })).isInstanceOf(GatewayUnavailableException.class);
+
+        Payment payment = pending("ch_retried");
+        PaymentResponseDTO response = idempotencyService.execute("key-rejected", request("cus_idempotency"), () -> {
+            attempts.incrementAndGet();
+            return PaymentResponseDTO.from(payment);
+        });
+
+        assertThat(response.getPaymentId()).isEqualTo("ch_retried");
+        assertThat(attempts).hasValue(2);
+    }
+
+    // Conciliação tirando o pagamento de PROCESSING
+    private void settle(Payment payment, String paymentId) {
+        jdbcTemplate.update("UPDATE payments SET payment_id = ?, status = 'SUCCESS' WHERE id = ?",
+                paymentId, payment.getId());
+    }
+
+    private Payment pending(String paymentId) {
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setCustomerId("cus_idempotency");
+        payment.setCustomerEmail("idempotency@example.com");
+        payment.setAmount(new BigDecimal("30.00"));
+        payment.setPaymentMethod("CREDIT_CARD");
+        payment.setStatus(PaymentStatus.PROCESSING);
+        payment.setGateway("STRIPE");
+        return paymentRepository.save(payment);
+    }
+
+    private static class NodeCrash extends Error {
+    }
+}
@@ -0,0 +1,107 @@
+package com.pagamentos.service;
+
+import com.pagamentos.PaymentRequests;
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.PaymentMethod;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentGatewayRouterTest {
+
+    @Test
+    void routesOnlyToGatewaysWhoseRulesMatch() {
+        MockEnvironment environment = environment()
+                .withProperty("app.gateway.routing.alpha.currencies", "USD,EUR")
+                .withProperty("app.gateway.routing.beta.payment-methods", "PIX,BOLETO")
+                .withProperty("app.gateway.routing.beta.max-amount", "5000");
+        PaymentGatewayRouter router = router(environment, fake(Duration.ZERO, 0), fake(Duration.ZERO, 0));
+
+        assertThat(gateways(router.route(request("BRL", PaymentMethod.PIX, "100")))).containsExactly("BETA");
+        assertThat(gateways(router.route(request("USD", PaymentMethod.CREDIT_CARD, "100")))).containsExactly("ALPHA");
+        assertThatThrownBy(() -> router.route(request("BRL", PaymentMethod.PIX, "9000")))
+                .hasMessageContaining("Nenhum gateway atende");
+    }
+
+    @Test
+    void failsOverWhenThePreferredGatewayCircuitOpens() {
+        MockEnvironment environment = environment()
+                .withProperty("app.gateway.routing.alpha.priority", "1")
+                .withProperty("app.gateway.routing.beta.priority", "2");
+        PaymentGatewayRouter router = router(environment, fake(Duration.ZERO, 1), fake(Duration.ZERO, 0));
+        PaymentRequestDTO request = request("BRL", PaymentMethod.CREDIT_CARD, "100");
+
+        assertThat(gateways(router.route(request))).containsExactly("ALPHA", "BETA");
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> router.getGateway("ALPHA").processPayment(request, "pending_" + System.nanoTime()));
+        }
+
+        assertThat(router.getGateway("ALPHA").getCircuitState()).isEqualTo(GatewayCircuitBreaker.State.OPEN);
+        assertThat(gateways(router.route(request))).containsExactly("BETA");
+    }
+
+    @Test
+    void demotesGatewaysWhoseLatencyDegrades() {
+        MockEnvironment environment = environment()
+                .withProperty("app.gateway.routing.alpha.priority", "1")
+                .withProperty("app.gateway.routing.beta.priority", "2")
+                .withProperty("app.gateway.routing.max-latency", "PT0.02S")
+                .withProperty("app.gateway.routing.min-samples", "5");
+        PaymentGatewayRouter router = router(environment, fake(Duration.ofMillis(40), 0), fake(Duration.ofMillis(1), 0));
+        PaymentRequestDTO request = request("BRL", PaymentMethod.CREDIT_CARD, "100");
+
+        for (int i = 0; i < 5; i++) {
+            router.getGateway("ALPHA").processPayment(request, "pending_a" + i);
+            router.getGateway("BETA").processPayment(request, "pending_b" + i);
+        }
+
+        assertThat(gateways(router.route(request))).containsExactly("BETA", "ALPHA");
+    }
+
+    @Test
+    void explicitGatewayBypassesRouting() {
+        PaymentGatewayRouter router = router(environment(), fake(Duration.ZERO, 0), fake(Duration.ZERO, 0));
+        PaymentRequestDTO request = request("BRL", PaymentMethod.CREDIT_CARD, "100");
+        request.setGateway("beta");
+
+        assertThat(gateways(router.route(request))).containsExactly("BETA");
+    }
+
+    private PaymentGatewayRouter router(MockEnvironment environment, PaymentGatewayService alpha, PaymentGatewayService beta) {
+        return new PaymentGatewayRouter(Map.of("alphaService", alpha, "betaService", beta), environment,
+                new PaymentMetrics(new SimpleMeterRegistry()));
+    }
+
+    private MockEnvironment environment() {
+        return new MockEnvironment()
+                .withProperty("app.gateway.resilience.circuit-breaker.minimum-calls", "5")
+                .withProperty("app.gateway.resilience.circuit-breaker.sliding-window-size", "10")
+                .withProperty("app.gateway.resilience.circuit-breaker.open-duration", "PT1M");
+    }
+
+    private FakeGatewayService fake(Duration latency, double failureRate) {
+        return new FakeGatewayService(latency, failureRate, 0);
+    }
+
+    private PaymentRequestDTO request(String currency, PaymentMethod method, String amount) {
+        PaymentRequestDTO request = PaymentRequests.request("cus_router");
+        request.setAmount(new BigDecimal(amount));
+        request.setCurrency(currency);
+        request.setPaymentMethod(method);
+        return request;
+    }
+
+    private List<String> gateways(List<ResilientPaymentGatewayService> candidates) {
+        return candidates.stream().map(ResilientPaymentGatewayService::getGateway).toList();
+    }
+}
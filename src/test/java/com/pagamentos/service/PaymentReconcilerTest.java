@@ -0,0 +1,217 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentMethod;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.PaymentRepository;
+import com.pagamentos.repository.ReconciliationCursorRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.pagamentos.PaymentRequests.request;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.payment.reconciliation.statuses=PROCESSING,SUCCESS",
+        "app.payment.reconciliation.stale-after=PT0S",
+        "app.payment.reconciliation.fail-after=PT0S",
+        "app.payment.reconciliation.batch-size=2",
+        "app.payment.reconciliation.max-batches-per-run=1",
+        "app.payment.reconciliation.max-lookups-per-second=1000"
+})
+@Import({PaymentStateService.class, PaymentReconciler.class, PaymentReconcilerTest.Gateways.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentReconcilerTest {
+
+    private static final ScriptedGateway GATEWAY = new ScriptedGateway();
+
+    @Autowired
+    private PaymentReconciler reconciler;
+
+    @Autowired
+    private PaymentStateService paymentStateService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private ReconciliationCursorRepository cursorRepository;
+
+    @BeforeEach
+    void reset() {
+        paymentRepository.deleteAll();
+        cursorRepository.deleteAll();
+        GATEWAY.statuses.clear();
+        GATEWAY.lookups.clear();
+        GATEWAY.errors.clear();
+    }
+
+    @Test
+    void correctsStuckPaymentsAndLostWebhooks() {
+        Payment confirmed = processing();
+        GATEWAY.statuses.put(confirmed.getPaymentId(), gatewayStatus("ch_confirmed", PaymentStatus.SUCCESS));
+
+        // Sem nada no gateway e além do fail-after
+        Payment abandoned = processing();
+
+        Payment refundedOutside = succeeded("ch_refunded");
+        GATEWAY.statuses.put("ch_refunded", gatewayStatus("ch_refunded", PaymentStatus.REFUNDED));
+
+        reconciler.reconcile();
+
+        Payment first = paymentRepository.findById(confirmed.getId()).orElseThrow();
+        assertThat(first.getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(first.getPaymentId()).isEqualTo("ch_confirmed");
+        assertThat(first.getProcessedAt()).isNotNull();
+        assertThat(first.getVersion()).isGreaterThan(confirmed.getVersion());
+
+        assertThat(paymentRepository.findById(abandoned.getId()).orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.FAILED);
+
+        Payment refunded = paymentRepository.findById(refundedOutside.getId()).orElseThrow();
+        assertThat(refunded.getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(refunded.getRefundedAmount()).isEqualByComparingTo(refunded.getAmount());
+    }
+
+    @Test
+    void lookupErrorsAreNotTakenAsMissingCharges() {
+        // Ex.: chave sem permissão depois de uma rotação; a charge pode existir
+        Payment unreadable = processing();
+        GATEWAY.errors.add(unreadable.getPaymentId());
+        Payment abandoned = processing();
+
+        reconciler.reconcile();
+
+        assertThat(paymentRepository.findById(unreadable.getId()).orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.PROCESSING);
+        assertThat(paymentRepository.findById(abandoned.getId()).orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.FAILED);
+        // O cursor não passa do pagamento sem resposta: a próxima rodada consulta de novo
+        assertThat(cursorRepository.findById("PROCESSING")).isEmpty();
+
+        GATEWAY.errors.clear();
+        reconciler.reconcile();
+        assertThat(GATEWAY.lookups).containsExactly(unreadable.getPaymentId(), abandoned.getPaymentId(),
+                unreadable.getPaymentId());
+    }
+
+    @Test
+    void resumesFromThePersistedCursorAndWrapsAround() {
+        List<String> references = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Payment payment = processing();
+            references.add(payment.getPaymentId());
+            // Ainda pendente no gateway: nada muda e a varredura só avança
+            GATEWAY.statuses.put(payment.getPaymentId(), gatewayStatus(payment.getPaymentId(), PaymentStatus.PROCESSING));
+        }
+
+        reconciler.reconcile();
+        assertThat(GATEWAY.lookups).containsExactlyElementsOf(references.subList(0, 2));
+        assertThat(cursorRepository.findById("PROCESSING")).isPresent();
+
+        reconciler.reconcile();
+        reconciler.reconcile();
+        assertThat(GATEWAY.lookups).containsExactlyElementsOf(references);
+
+        // Fim da varredura: o cursor volta ao início e a rodada seguinte recomeça
+        reconciler.reconcile();
+        reconciler.reconcile();
+        assertThat(GATEWAY.lookups.subList(5, GATEWAY.lookups.size())).containsExactlyElementsOf(references.subList(0, 2));
+    }
+
+    private Payment processing() {
+        return paymentStateService.createProcessing(request("cus_reconcile"), "SCRIPTED");
+    }
+
+    private Payment succeeded(String chargeId) {
+        Payment pending = processing();
+        return paymentStateService.complete(pending.getId(), gatewayStatus(chargeId, PaymentStatus.SUCCESS));
+    }
+
+    private static Payment gatewayStatus(String chargeId, PaymentStatus status) {
+        Payment payment = new Payment();
+        payment.setPaymentId(chargeId);
+        payment.setStatus(status);
+        return payment;
+    }
+
+    // Responde a consulta de status com o que o teste configurou; null quando não há charge
+    private static class ScriptedGateway implements PaymentGatewayService {
+
+        private final Map<String, Payment> statuses = new ConcurrentHashMap<>();
+        private final List<String> lookups = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> errors = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public Payment processPayment(PaymentRequestDTO request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Payment getPaymentStatus(String paymentId) {
+            lookups.add(paymentId);
+            if (errors.contains(paymentId)) {
+                throw new IllegalStateException("Erro ao buscar status do pagamento " + paymentId);
+            }
+            return statuses.get(paymentId);
+        }
+
+        @Override
+        public Payment refundPayment(String paymentId, Money amount, String reason) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Payment refundPayment(String paymentId, Money amount, String reason, String refundReference) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Payment getRefundStatus(String paymentId, String refundReference) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String generatePaymentMethodToken(PaymentRequestDTO request) {
+            return "tok_scripted";
+        }
+    }
+
+    @TestConfiguration
+    static class Gateways {
+
+        @Bean
+        PaymentMetrics paymentMetrics() {
+            return new PaymentMetrics(new SimpleMeterRegistry());
+        }
+
+        @Bean
+        PaymentGatewayRouter paymentGatewayRouter(PaymentMetrics paymentMetrics) {
+            return new PaymentGatewayRouter(Map.of("scriptedService", GATEWAY), new MockEnvironment(), paymentMetrics);
+        }
+    }
+}
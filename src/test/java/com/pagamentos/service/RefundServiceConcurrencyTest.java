@@ -0,0 +1,206 @@
+package com.pagamentos.service;
+
+import com.pagamentos.PaymentRequests;
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.dto.RefundRequestDTO;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentRefund;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.model.RefundStatus;
+import com.pagamentos.ratelimit.PaymentRateLimiter;
+import com.pagamentos.repository.PaymentRefundRepository;
+import com.pagamentos.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.payment.refund.max-lock-attempts=100",
+        "app.payment.refund.reconciliation.stale-after=PT0S"
+})
+@Import({PaymentStateService.class, RefundService.class, RefundServiceConcurrencyTest.Gateways.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RefundServiceConcurrencyTest {
+
+    private static final StubPaymentGateway GATEWAY = new StubPaymentGateway(Duration.ofMillis(5));
+
+    @Autowired
+    private RefundService refundService;
+
+    @Autowired
+    private PaymentStateService paymentStateService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentRefundRepository refundRepository;
+
+    @Test
+    void concurrentRefundsNeverExceedTheChargedAmount() throws Exception {
+        Payment payment = succeededPayment("100.00");
+        int refundsBefore = GATEWAY.getRefunds();
+
+        // 40 reembolsos de 5,00 disputando um saldo de 100,00
+        List<Future<Payment>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 40; i++) {
+                results.add(executor.submit(() -> refundService.refundPayment(refund(payment, "5.00"))));
+            }
+        }
+
+        int succeeded = 0;
+        int rejected = 0;
+        for (Future<Payment> result : results) {
+            try {
+                result.get();
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).hasMessageContaining("excede o saldo disponível");
+                rejected++;
+            }
+        }
+
+        Payment refunded = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertThat(succeeded).isEqualTo(20);
+        assertThat(rejected).isEqualTo(20);
+        assertThat(GATEWAY.getRefunds() - refundsBefore).isEqualTo(20);
+        assertThat(refunded.getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        assertThat(refunded.getRefundedAmount()).isEqualByComparingTo("100.00");
+        assertThat(refundRepository.sumSucceeded(payment.getId())).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void partialRefundsAccumulateUntilThePaymentIsFullyRefunded() {
+        Payment payment = succeededPayment("100.00");
+
+        Payment first = refundService.refundPayment(refund(payment, "30.00"));
+        assertThat(first.getAmount()).isEqualByComparingTo("-30.00");
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.PARTIALLY_REFUNDED);
+
+        assertThatThrownBy(() -> refundService.refundPayment(refund(payment, "70.01")))
+                .hasMessageContaining("excede o saldo disponível");
+
+        refundService.refundPayment(refund(payment, "70.00"));
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.REFUNDED);
+
+        assertThatThrownBy(() -> refundService.refundPayment(refund(payment, "1.00")))
+                .hasMessageContaining("Somente pagamentos");
+    }
+
+    @Test
+    void reconciliationSettlesReservationsLeftPendingByTheGatewayCall() {
+        Payment payment = succeededPayment("100.00");
+        PaymentRefund refunded = paymentStateService.reserveRefund(payment.getPaymentId(), new BigDecimal("30.00"), "timeout");
+        PaymentRefund lost = paymentStateService.reserveRefund(payment.getPaymentId(), new BigDecimal("20.00"), "timeout");
+
+        // O gateway recebeu só o primeiro, mas a resposta não chegou
+        GATEWAY.refundPayment(payment.getPaymentId(), refunded.toMoney(), "timeout", "refund_" + refunded.getId());
+        int refundsBefore = GATEWAY.getRefunds();
+
+        refundService.reconcilePending();
+
+        assertThat(refundRepository.findById(refunded.getId()).orElseThrow().getStatus()).isEqualTo(RefundStatus.SUCCEEDED);
+        assertThat(refundRepository.findById(lost.getId()).orElseThrow().getStatus()).isEqualTo(RefundStatus.FAILED);
+        Payment reconciled = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertThat(reconciled.getStatus()).isEqualTo(PaymentStatus.PARTIALLY_REFUNDED);
+        assertThat(reconciled.getRefundedAmount()).isEqualByComparingTo("30.00");
+
+        // A mesma referência nunca gera um segundo reembolso no gateway
+        GATEWAY.refundPayment(payment.getPaymentId(), refunded.toMoney(), "timeout", "refund_" + refunded.getId());
+        assertThat(GATEWAY.getRefunds()).isEqualTo(refundsBefore);
+    }
+
+    @Test
+    void refundsOfDifferentPaymentsRunInParallel() throws Exception {
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            payments.add(succeededPayment("10.00"));
+        }
+
+        List<Future<Payment>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Payment payment : payments) {
+                results.add(executor.submit(() -> refundService.refundPayment(refund(payment, "10.00"))));
+            }
+        }
+        for (Future<Payment> result : results) {
+            result.get();
+        }
+
+        assertThat(paymentRepository.findAllById(payments.stream().map(Payment::getId).toList()))
+                .allSatisfy(payment -> assertThat(payment.getStatus()).isEqualTo(PaymentStatus.REFUNDED));
+    }
+
+    private Payment succeededPayment(String amount) {
+        PaymentRequestDTO request = PaymentRequests.request("cus_refund");
+        request.setAmount(new BigDecimal(amount));
+
+        Payment pending = paymentStateService.createProcessing(request, "STUB");
+        return paymentStateService.complete(pending.getId(), GATEWAY.processPayment(request));
+    }
+
+    private RefundRequestDTO refund(Payment payment, String amount) {
+        RefundRequestDTO request = new RefundRequestDTO();
+        request.setPaymentId(payment.getPaymentId());
+        request.setAmount(new BigDecimal(amount));
+        request.setReason("teste");
+        return request;
+    }
+
+    @TestConfiguration
+    static class Gateways {
+
+        @Bean
+        PaymentMetrics paymentMetrics() {
+            return new PaymentMetrics(new SimpleMeterRegistry());
+        }
+
+        @Bean
+        PaymentRateLimiter paymentRateLimiter() {
+            return new PaymentRateLimiter(new MockEnvironment().withProperty("app.rate-limit.enabled", "false"));
+        }
+
+        @Bean
+        GatewayBulkhead gatewayBulkhead() {
+            return new GatewayBulkhead(new MockEnvironment());
+        }
+
+        @Bean
+        PaymentGatewayRouter paymentGatewayRouter(PaymentMetrics paymentMetrics) {
+            // O teste mede o lock do pagamento, não o limite de concorrência do gateway
+            MockEnvironment environment = new MockEnvironment()
+                    .withProperty("app.gateway.resilience.concurrency.initial-limit", "200")
+                    .withProperty("app.gateway.resilience.concurrency.min-limit", "200");
+            return new PaymentGatewayRouter(Map.of("stubService", GATEWAY), environment, paymentMetrics);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.exception.GatewayUnavailableException;
+import com.pagamentos.model.CurrencyCode;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientPaymentGatewayServiceTest {
+
+    private static final Money TEN_REAIS = Money.ofMinor(1000, CurrencyCode.BRL);
+
+    @Test
+    void circuitOpensAfterFailuresAndRejectsWithoutCallingTheGateway() {
+        FlakyGateway gateway = new FlakyGateway();
+        gateway.failing = true;
+        ResilientPaymentGatewayService service = resilient(gateway, Duration.ofMinutes(1), 1);
+
+        // minimumCalls = 5 com 100% de falhas
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> service.refundPayment("ch_1", TEN_REAIS, null))
+                    .isInstanceOf(GatewayTimeoutException.class);
+        }
+        assertThat(service.getCircuitState()).isEqualTo(GatewayCircuitBreaker.State.OPEN);
+
+        int callsBefore = gateway.calls.get();
+        assertThatThrownBy(() -> service.refundPayment("ch_1", TEN_REAIS, null))
+                .isInstanceOf(GatewayUnavailableException.class);
+        assertThat(gateway.calls.get()).isEqualTo(callsBefore);
+    }
+
+    @Test
+    void halfOpenProbesCloseTheCircuitWhenTheGatewayRecovers() throws Exception {
+        FlakyGateway gateway = new FlakyGateway();
+        gateway.failing = true;
+        ResilientPaymentGatewayService service = resilient(gateway, Duration.ofMillis(50), 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> service.refundPayment("ch_1", TEN_REAIS, null));
+        }
+        assertThat(service.getCircuitState()).isEqualTo(GatewayCircuitBreaker.State.OPEN);
+
+        Thread.sleep(60);
+        gateway.failing = false;
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.refundPayment("ch_1", TEN_REAIS, null).getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        }
+        assertThat(service.getCircuitState()).isEqualTo(GatewayCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void onlyStatusQueriesAreRetried() {
+        FlakyGateway gateway = new FlakyGateway();
+        gateway.failuresBeforeSuccess.set(2);
+        ResilientPaymentGatewayService service = resilient(gateway, Duration.ofMinutes(1), 3);
+
+        assertThat(service.getPaymentStatus("ch_1").getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(gateway.calls.get()).isEqualTo(3);
+
+        gateway.calls.set(0);
+        gateway.failuresBeforeSuccess.set(1);
+        assertThatThrownBy(() -> service.refundPayment("ch_1", TEN_REAIS, null))
+                .isInstanceOf(GatewayTimeoutException.class);
+        assertThat(gateway.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrencyLimitShrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 5, 200, 2.0);
+        long fast = Duration.ofMillis(10).toNanos();
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire();
+            limit.onSample(fast, false);
+        }
+        int healthyLimit = limit.getLimit();
+
+        long slow = Duration.ofMillis(200).toNanos();
+        for (int i = 0; i < 200; i++) {
+            limit.tryAcquire();
+            limit.onSample(slow, false);
+            if (i % 20 == 0) {
+                // Respeita o intervalo mínimo entre reduções
+                sleep(Duration.ofMillis(200));
+            }
+        }
+
+        assertThat(limit.getLimit()).isLessThan(healthyLimit);
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(5);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    private ResilientPaymentGatewayService resilient(PaymentGatewayService gateway, Duration openDuration,
+                                                     int statusMaxAttempts) {
+        return new ResilientPaymentGatewayService("STUB", gateway,
+                new GatewayCircuitBreaker(50, 10, 5, openDuration, 3),
+                new AdaptiveConcurrencyLimit(20, 5, 200, 2.0),
+                statusMaxAttempts, Duration.ofMillis(1));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FlakyGateway implements PaymentGatewayService {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failuresBeforeSuccess = new AtomicInteger();
+        private volatile boolean failing;
+
+        @Override
+        public Payment processPayment(PaymentRequestDTO request) {
+            return respond(PaymentStatus.SUCCESS);
+        }
+
+        @Override
+        public Payment getPaymentStatus(String paymentId) {
+            return respond(PaymentStatus.SUCCESS);
+        }
+
+        @Override
+        public Payment refundPayment(String paymentId, Money amount, String reason) {
+            return respond(PaymentStatus.REFUNDED);
+        }
+
+        @Override
+        public Payment refundPayment(String paymentId, Money amount, String reason, String refundReference) {
+            return respond(PaymentStatus.REFUNDED);
+        }
+
+        @Override
+        public Payment getRefundStatus(String paymentId, String refundReference) {
+            return respond(PaymentStatus.REFUNDED);
+        }
+
+        @Override
+        public String generatePaymentMethodToken(PaymentRequestDTO request) {
+            return "tok_stub";
+        }
+
+        private Payment respond(PaymentStatus status) {
+            calls.incrementAndGet();
+            if (failing || failuresBeforeSuccess.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new GatewayTimeoutException("Gateway sem resposta");
+            }
+            Payment payment = new Payment();
+            payment.setStatus(status);
+            return payment;
+        }
+    }
+}
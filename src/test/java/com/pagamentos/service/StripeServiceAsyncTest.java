@@ -0,0 +1,216 @@
+package com.pagamentos.service;
+
+import com.pagamentos.PaymentRequests;
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.exception.GatewayTimeoutException;
+import com.pagamentos.model.CurrencyCode;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.stripe.Stripe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Stub HTTP local no lugar da API do Stripe, com latência fixa por charge
+class StripeServiceAsyncTest {
+
+    private static final int CHARGES = 500;
+    private static final Duration STRIPE_LATENCY = Duration.ofSeconds(1);
+    private static final String CHARGE_JSON = "{\"id\":\"ch_stub\",\"object\":\"charge\",\"amount\":1000,"
+            + "\"currency\":\"brl\",\"paid\":true,\"status\":\"succeeded\",\"created\":1700000000}";
+    private static final String DECLINE_JSON = "{\"error\":{\"type\":\"card_error\",\"code\":\"card_declined\","
+            + "\"charge\":\"ch_declined\",\"message\":\"Your card was declined.\"}}";
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private volatile String lastBody;
+
+    private HttpServer stripeStub;
+    private StripeService stripeService;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        stripeStub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 2048);
+        stripeStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stripeStub.createContext("/v1/charges", this::handleCharge);
+        stripeStub.start();
+
+        String apiBase = "http://127.0.0.1:" + stripeStub.getAddress().getPort();
+        Stripe.overrideApiBase(apiBase);
+
+        stripeService = new StripeService();
+        ReflectionTestUtils.setField(stripeService, "stripeSecretKey", "sk_test_stub");
+        ReflectionTestUtils.setField(stripeService, "apiBase", apiBase);
+        ReflectionTestUtils.setField(stripeService, "connectTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(stripeService, "readTimeout", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(stripeService, "asyncThreads", 4);
+        stripeService.init();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stripeService.shutdown();
+        stripeStub.stop(0);
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+    }
+
+    @Test
+    void asyncChargesNeedFarFewerThreadsThanInFlightCharges() throws Exception {
+        // Aquecimento: cria seletor, pool de respostas e carriers antes da medição
+        runAsync(50);
+
+        ThreadUsage blocking;
+        try (ExecutorService executor = Executors.newFixedThreadPool(CHARGES)) {
+            blocking = measure(() -> {
+                List<CompletableFuture<Payment>> charges = new ArrayList<>(CHARGES);
+                for (int i = 0; i < CHARGES; i++) {
+                    String reference = "pending_sync_" + i;
+                    charges.add(CompletableFuture.supplyAsync(() -> stripeService.processPayment(request("tok_visa"), reference), executor));
+                }
+                return charges;
+            });
+        }
+
+        ThreadUsage async = measure(() -> runAsync(CHARGES));
+
+        assertThat(blocking.ratio()).isGreaterThan(0.9);
+        assertThat(async.peakInFlight).isGreaterThan(CHARGES / 2);
+        assertThat(async.ratio()).isLessThan(0.1);
+        assertThat(async.extraThreads).isLessThan(blocking.extraThreads);
+    }
+
+    @Test
+    void mapsDeclinesToFailedAndServerErrorsToTimeouts() {
+        Payment declined = stripeService.processPaymentAsync(request("tok_chargeDeclined"), "pending_declined").join();
+        assertThat(declined.getStatus()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(declined.getPaymentId()).isEqualTo("ch_declined");
+
+        assertThatThrownBy(() -> stripeService.processPaymentAsync(request("tok_serverError"), "pending_error").get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(GatewayTimeoutException.class);
+    }
+
+    @Test
+    void sendsExactMinorUnitsAndKeepsOnlyTheChargeSummary() {
+        PaymentRequestDTO request = request("tok_visa");
+        request.setAmount(new BigDecimal("19.99"));
+        request.setDescription("Pedido #1 & cia");
+
+        Payment payment = stripeService.processPaymentAsync(request, "pending_form").join();
+
+        assertThat(lastBody).startsWith("amount=1999&currency=brl&source=tok_visa&")
+                .contains("description=Pedido+%231+%26+cia")
+                .contains("metadata%5Bpayment_ref%5D=pending_form");
+        assertThat(payment.getAmount()).isEqualByComparingTo("19.99");
+        assertThat(payment.getCurrency()).isSameAs(CurrencyCode.BRL.name());
+        assertThat(payment.getGatewayResponse()).contains("\"id\":\"ch_stub\"").doesNotContain("\"object\"");
+
+        // Frações abaixo do centavo eram truncadas na conversão; agora são recusadas
+        assertThatThrownBy(() -> Money.of(new BigDecimal("19.999"), CurrencyCode.BRL))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(Money.of(new BigDecimal("19.990"), CurrencyCode.BRL).minorUnits()).isEqualTo(1999);
+    }
+
+    private List<CompletableFuture<Payment>> runAsync(int charges) {
+        List<CompletableFuture<Payment>> futures = new ArrayList<>(charges);
+        for (int i = 0; i < charges; i++) {
+            futures.add(stripeService.processPaymentAsync(request("tok_visa"), "pending_async_" + i));
+        }
+        futures.forEach(CompletableFuture::join);
+        return futures;
+    }
+
+    private ThreadUsage measure(Supplier<List<CompletableFuture<Payment>>> charges) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        peakInFlight.set(0);
+        int baseline = threads.getThreadCount();
+
+        AtomicInteger peakThreads = new AtomicInteger(baseline);
+        Thread sampler = Thread.ofVirtual().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        for (CompletableFuture<Payment> charge : charges.get()) {
+            assertThat(charge.get().getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        }
+        sampler.interrupt();
+        sampler.join();
+
+        return new ThreadUsage(Math.max(0, peakThreads.get() - baseline), peakInFlight.get());
+    }
+
+    private void handleCharge(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        lastBody = body;
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+        try {
+            Thread.sleep(STRIPE_LATENCY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        if (body.contains("tok_chargeDeclined")) {
+            respond(exchange, 402, DECLINE_JSON);
+        } else if (body.contains("tok_serverError")) {
+            respond(exchange, 500, "{\"error\":{\"type\":\"api_error\"}}");
+        } else {
+            respond(exchange, 200, CHARGE_JSON);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private PaymentRequestDTO request(String token) {
+        PaymentRequestDTO request = PaymentRequests.request("cus_async");
+        request.setPaymentToken(token);
+        return request;
+    }
+
+    private record ThreadUsage(int extraThreads, int peakInFlight) {
+
+        double ratio() {
+            return peakInFlight == 0 ? 0 : (double) extraThreads / peakInFlight;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import com.pagamentos.model.Money;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Gateway local que simula a latência do Stripe e mede a concorrência observada
+class StubPaymentGateway implements PaymentGatewayService {
+
+    private final Duration latency;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicInteger refunds = new AtomicInteger();
+    private final Map<String, Payment> refundsByReference = new ConcurrentHashMap<>();
+
+    StubPaymentGateway(Duration latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public Payment processPayment(PaymentRequestDTO request) {
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        Payment payment = new Payment();
+        payment.setPaymentId("ch_stub_" + UUID.randomUUID());
+        payment.setCustomerId(request.getCustomerId());
+        payment.setAmount(request.getAmount());
+        payment.setCurrency(request.getCurrency());
+        payment.setGateway("STUB");
+        payment.setStatus(PaymentStatus.SUCCESS);
+        return payment;
+    }
+
+    @Override
+    public Payment getPaymentStatus(String paymentId) {
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setStatus(PaymentStatus.SUCCESS);
+        return payment;
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason) {
+        refunds.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setStatus(PaymentStatus.REFUNDED);
+        return payment;
+    }
+
+    @Override
+    public Payment refundPayment(String paymentId, Money amount, String reason, String refundReference) {
+        return refundsByReference.computeIfAbsent(refundReference, reference -> refundPayment(paymentId, amount, reason));
+    }
+
+    @Override
+    public Payment getRefundStatus(String paymentId, String refundReference) {
+        return refundsByReference.get(refundReference);
+    }
+
+    @Override
+    public String generatePaymentMethodToken(PaymentRequestDTO request) {
+        return "tok_stub";
+    }
+
+    int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    int getRefunds() {
+        return refunds.get();
+    }
+}
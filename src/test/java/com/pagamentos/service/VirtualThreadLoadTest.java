@@ -0,0 +1,78 @@
+package com.pagamentos.service;
+
+import com.pagamentos.dto.PaymentRequestDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.pagamentos.PaymentRequests.request;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final Duration GATEWAY_LATENCY = Duration.ofMillis(50);
+
+    @Test
+    void virtualThreadsRaiseConcurrencyAboveThePlatformThreadPool() throws Exception {
+        GatewayBulkhead bulkhead = bulkhead(REQUESTS);
+
+        StubPaymentGateway platformGateway = new StubPaymentGateway(GATEWAY_LATENCY);
+        long platformMillis;
+        try (ExecutorService executor = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS)) {
+            platformMillis = run(executor, bulkhead, platformGateway);
+        }
+
+        StubPaymentGateway virtualGateway = new StubPaymentGateway(GATEWAY_LATENCY);
+        long virtualMillis;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            virtualMillis = run(executor, bulkhead, virtualGateway);
+        }
+
+        assertThat(platformGateway.getPeakInFlight()).isLessThanOrEqualTo(TOMCAT_MAX_THREADS);
+        assertThat(virtualGateway.getPeakInFlight()).isGreaterThan(TOMCAT_MAX_THREADS);
+        assertThat(virtualMillis).isLessThan(platformMillis);
+    }
+
+    @Test
+    void bulkheadCapsGatewayConcurrencyUnderVirtualThreads() throws Exception {
+        int limit = 100;
+        GatewayBulkhead bulkhead = bulkhead(limit);
+        StubPaymentGateway gateway = new StubPaymentGateway(Duration.ofMillis(20));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            run(executor, bulkhead, gateway);
+        }
+
+        assertThat(gateway.getPeakInFlight()).isLessThanOrEqualTo(limit);
+    }
+
+    private long run(ExecutorService executor, GatewayBulkhead bulkhead, StubPaymentGateway gateway) throws Exception {
+        PaymentRequestDTO request = request("cust_load");
+        long start = System.nanoTime();
+
+        List<Future<?>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(() -> bulkhead.execute("STUB", () -> gateway.processPayment(request))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+    }
+
+    private GatewayBulkhead bulkhead(int maxConcurrentCalls) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.gateway.bulkhead.stub.max-concurrent-calls", String.valueOf(maxConcurrentCalls))
+                .withProperty("app.gateway.bulkhead.max-wait", "PT30S");
+        return new GatewayBulkhead(environment);
+    }
+}
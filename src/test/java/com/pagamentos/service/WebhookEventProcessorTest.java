@@ -0,0 +1,107 @@
+package com.pagamentos.service;
+
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.model.WebhookEvent;
+import com.pagamentos.model.WebhookEventStatus;
+import com.pagamentos.repository.PaymentRepository;
+import com.pagamentos.repository.WebhookEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.webhook.partitions=1",
+        "app.webhook.max-attempts=1",
+        "app.webhook.retention=PT0S"
+})
+@Import(WebhookEventProcessor.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WebhookEventProcessorTest {
+
+    @Autowired
+    private WebhookEventProcessor processor;
+
+    @Autowired
+    private WebhookEventRepository webhookEventRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void reset() {
+        webhookEventRepository.deleteAllInBatch();
+        paymentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void drainRecordsTheOutcomeOnceAndPurgeRemovesHandledEvents() throws InterruptedException {
+        Payment payment = new Payment();
+        payment.setPaymentId("ch_webhook");
+        payment.setCustomerId("cus_webhook");
+        payment.setCustomerEmail("webhook@example.com");
+        payment.setAmount(new BigDecimal("40.00"));
+        payment.setPaymentMethod("CREDIT_CARD");
+        payment.setStatus(PaymentStatus.PROCESSING);
+        payment.setGateway("STRIPE");
+        paymentRepository.save(payment);
+
+        webhookEventRepository.save(event("evt_succeeded", "ch_webhook"));
+        // Sem pagamento e sem tentativas restantes: descartado
+        webhookEventRepository.save(event("evt_orphan", "ch_unknown"));
+
+        processor.drain();
+
+        assertThat(paymentRepository.findByPaymentId("ch_webhook").orElseThrow().getStatus())
+                .isEqualTo(PaymentStatus.SUCCESS);
+        assertHandled("evt_succeeded", WebhookEventStatus.PROCESSED);
+        assertHandled("evt_orphan", WebhookEventStatus.IGNORED);
+
+        Thread.sleep(5);
+        processor.purgeProcessed();
+
+        assertThat(webhookEventRepository.count()).isZero();
+    }
+
+    private void assertHandled(String eventId, WebhookEventStatus status) {
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT status, attempts, processed_at FROM webhook_events WHERE event_id = ?", eventId);
+        assertThat(row.get("STATUS")).isEqualTo(status.name());
+        assertThat(((Number) row.get("ATTEMPTS")).intValue()).isEqualTo(1);
+        assertThat(row.get("PROCESSED_AT")).isNotNull();
+    }
+
+    private WebhookEvent event(String eventId, String paymentId) {
+        LocalDateTime now = LocalDateTime.now().minusSeconds(1);
+        WebhookEvent event = new WebhookEvent();
+        event.setEventId(eventId);
+        event.setEventType("charge.succeeded");
+        event.setPaymentId(paymentId);
+        event.setTargetStatus(PaymentStatus.SUCCESS);
+        event.setPartitionKey(0);
+        event.setEventCreated(1L);
+        event.setStatus(WebhookEventStatus.RECEIVED);
+        event.setReceivedAt(now);
+        event.setAvailableAt(now);
+        return event;
+    }
+}
@@ -0,0 +1,155 @@
+package com.pagamentos.subscription;
+
+import com.pagamentos.archive.PaymentArchive;
+import com.pagamentos.dto.PaymentResponseDTO;
+import com.pagamentos.event.PaymentStatusChangedEvent;
+import com.pagamentos.exception.InvalidSubscriptionRequestException;
+import com.pagamentos.exception.SubscriptionLimitExceededException;
+import com.pagamentos.metrics.PaymentMetrics;
+import com.pagamentos.model.Payment;
+import com.pagamentos.model.PaymentStatus;
+import com.pagamentos.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "app.payment.subscriptions.max-open=2"
+})
+@Import({PaymentSubscriptionService.class, PaymentArchive.class, JacksonAutoConfiguration.class,
+        PaymentSubscriptionServiceTest.Metrics.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentSubscriptionServiceTest {
+
+    @Autowired
+    private PaymentSubscriptionService subscriptions;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void reset() {
+        paymentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void longPollIsParkedUntilTheTransitionCommits() throws InterruptedException {
+        Payment payment = save("pix_1", PaymentStatus.PROCESSING);
+
+        DeferredResult<ResponseEntity<PaymentResponseDTO>> result = subscriptions.awaitChange("pix_1", null);
+        assertThat(result.hasResult()).isFalse();
+        assertThat(subscriptions.getOpenSubscriptions()).isEqualTo(1);
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            Payment current = paymentRepository.findById(payment.getId()).orElseThrow();
+            current.setStatus(PaymentStatus.SUCCESS);
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(current, PaymentStatus.PROCESSING));
+        });
+
+        assertThat(awaitResult(result).getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(subscriptions.getOpenSubscriptions()).isZero();
+
+        // O cliente já tinha visto PROCESSING: responde na hora com o estado atual
+        DeferredResult<ResponseEntity<PaymentResponseDTO>> stale = subscriptions.awaitChange("pix_1", "processing");
+        assertThat(awaitResult(stale).getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+    }
+
+    @Test
+    void sweepDeliversChangesMadeByOtherNodesAndTheRegistryIsBounded() throws InterruptedException {
+        Payment first = save("boleto_1", PaymentStatus.REQUIRES_ACTION);
+        Payment second = save("boleto_2", PaymentStatus.PENDING);
+        save("boleto_3", PaymentStatus.PENDING);
+
+        DeferredResult<ResponseEntity<PaymentResponseDTO>> result = subscriptions.awaitChange("boleto_1", null);
+        DeferredResult<ResponseEntity<PaymentResponseDTO>> other = subscriptions.awaitChange("boleto_2", null);
+        assertThatThrownBy(() -> subscriptions.awaitChange("boleto_3", null))
+                .isInstanceOf(SubscriptionLimitExceededException.class);
+
+        // Transição feita em outro nó: nenhum evento chega a este
+        jdbcTemplate.update("UPDATE payments SET status = 'SUCCESS' WHERE id = ?", first.getId());
+        subscriptions.sweep();
+
+        assertThat(awaitResult(result).getStatus()).isEqualTo(PaymentStatus.SUCCESS);
+        assertThat(other.hasResult()).isFalse();
+        assertThat(subscriptions.getOpenSubscriptions()).isEqualTo(1);
+
+        jdbcTemplate.update("UPDATE payments SET status = 'FAILED' WHERE id = ?", second.getId());
+        subscriptions.sweep();
+
+        assertThat(awaitResult(other).getStatus()).isEqualTo(PaymentStatus.FAILED);
+        assertThat(subscriptions.getOpenSubscriptions()).isZero();
+    }
+
+    @Test
+    void unknownKnownStatusIsRejectedWithoutOpeningASubscription() {
+        save("pix_invalid", PaymentStatus.PROCESSING);
+
+        assertThatThrownBy(() -> subscriptions.awaitChange("pix_invalid", "pago"))
+                .isInstanceOf(InvalidSubscriptionRequestException.class);
+        assertThat(subscriptions.getOpenSubscriptions()).isZero();
+    }
+
+    private PaymentResponseDTO awaitResult(DeferredResult<ResponseEntity<PaymentResponseDTO>> result)
+            throws InterruptedException {
+        for (int i = 0; i < 100 && !result.hasResult(); i++) {
+            Thread.sleep(20);
+        }
+        @SuppressWarnings("unchecked")
+        ResponseEntity<PaymentResponseDTO> response = (ResponseEntity<PaymentResponseDTO>) result.getResult();
+        assertThat(response).isNotNull();
+        return response.getBody();
+    }
+
+    private Payment save(String paymentId, PaymentStatus status) {
+        Payment payment = new Payment();
+        payment.setPaymentId(paymentId);
+        payment.setCustomerId("cus_subscription");
+        payment.setCustomerEmail("subscription@example.com");
+        payment.setAmount(new BigDecimal("75.00"));
+        payment.setPaymentMethod("PIX");
+        payment.setStatus(status);
+        payment.setGateway("FAKE");
+        return paymentRepository.save(payment);
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        PaymentMetrics paymentMetrics() {
+            return new PaymentMetrics(new SimpleMeterRegistry());
+        }
+    }
+}